@@ -0,0 +1,145 @@
+package com.cgvsu.animation;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.model.PackedModel;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Много экземпляров одной модели с разными преобразованиями. Вершины модели хранятся один раз,
+// а при обновлении кадра каждый экземпляр пересчитывает свое преобразование и записывает
+// преобразованные вершины в собственный буфер. Экземпляры обновляются параллельно на ForkJoinPool.
+// Число вершин модели после добавления экземпляров меняться не должно: буферы экземпляров выделены под него
+public class InstancedModel {
+    // Примерное число вершин на одну задачу, чтобы мелкие модели не дробились на слишком много задач
+    private static final int VERTICES_PER_TASK = 1 << 15;
+
+    private final PackedModel model;
+    private final List<ModelInstance> instances = new ArrayList<>();
+    private float[] sourcePositions;
+
+    public InstancedModel(PackedModel model) {
+        this.model = model;
+    }
+
+    public PackedModel getModel() {
+        return model;
+    }
+
+    /**
+     * Добавляет экземпляр с постоянным преобразованием
+     * @param transformations преобразование экземпляра, копируется
+     * @return новый экземпляр
+     */
+    public ModelInstance addInstance(AffineTransformations transformations) {
+        return addInstance(null, 0, transformations.build());
+    }
+
+    /**
+     * Добавляет анимированный экземпляр
+     * @param track анимация экземпляра
+     * @param timeOffset сдвиг времени экземпляра относительно общего, чтобы экземпляры двигались не синхронно
+     * @return новый экземпляр
+     */
+    public ModelInstance addInstance(KeyframeTrack track, float timeOffset) {
+        return addInstance(track, timeOffset, new AffineTransformations());
+    }
+
+    private ModelInstance addInstance(KeyframeTrack track, float timeOffset, AffineTransformations transformations) {
+        checkVertexCount();
+        ModelInstance instance = new ModelInstance(track, timeOffset, transformations, model.getVertexCount());
+        instances.add(instance);
+        return instance;
+    }
+
+    public List<ModelInstance> getInstances() {
+        return Collections.unmodifiableList(instances);
+    }
+
+    /**
+     * Обновляет все экземпляры на момент time в общем ForkJoinPool
+     * @param time время кадра
+     */
+    public void update(float time) {
+        update(time, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Обновляет все экземпляры на момент time. Если вершины модели изменились, их нужно заново
+     * подхватить через invalidateVertices
+     * @param time время кадра
+     * @param pool пул потоков
+     */
+    public void update(float time, ForkJoinPool pool) {
+        checkVertexCount();
+        final float[] source = getSourcePositions();
+        final int instancesPerTask = Math.max(1, VERTICES_PER_TASK / Math.max(1, model.getVertexCount()));
+        if (instances.size() <= instancesPerTask || pool.getParallelism() == 1) {
+            for (ModelInstance instance : instances) {
+                instance.update(time, source);
+            }
+            return;
+        }
+        pool.invoke(new UpdateTask(0, instances.size(), instancesPerTask, time, source));
+    }
+
+    private void checkVertexCount() {
+        if (!instances.isEmpty() && instances.get(0).getPositions().length != model.getVertexCount() * 3) {
+            throw new IllegalStateException("Число вершин модели изменилось после добавления экземпляров: было "
+                    + instances.get(0).getPositions().length / 3 + ", стало " + model.getVertexCount());
+        }
+    }
+
+    /**
+     * Сообщает, что вершины модели изменились и их нужно заново скопировать перед следующим кадром
+     */
+    public void invalidateVertices() {
+        sourcePositions = null;
+    }
+
+    // Вершины копируются в обычный массив один раз, так как буфер модели может лежать вне кучи
+    private float[] getSourcePositions() {
+        if (sourcePositions == null || sourcePositions.length != model.vertices.size()) {
+            FloatBuffer vertices = model.vertices.buffer();
+            sourcePositions = new float[model.vertices.size()];
+            vertices.get(0, sourcePositions);
+        }
+        return sourcePositions;
+    }
+
+    private class UpdateTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final float time;
+        private final float[] source;
+
+        private UpdateTask(int from, int to, int threshold, float time, float[] source) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Порог разбиения на задачи должен быть положительным");
+            }
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.time = time;
+            this.source = source;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    instances.get(i).update(time, source);
+                }
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new UpdateTask(from, middle, threshold, time, source),
+                    new UpdateTask(middle, to, threshold, time, source));
+        }
+    }
+}
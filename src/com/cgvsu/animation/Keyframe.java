@@ -0,0 +1,36 @@
+package com.cgvsu.animation;
+
+import com.cgvsu.math.Quaternion;
+import com.cgvsu.math.Vector3f;
+
+// Положение объекта в момент времени: перемещение, поворот и масштаб.
+// Преобразование собирается в порядке масштаб, поворот, перемещение
+public class Keyframe {
+    private final float time;
+    private final Vector3f translation;
+    private final Quaternion rotation;
+    private final Vector3f scale;
+
+    public Keyframe(float time, Vector3f translation, Quaternion rotation, Vector3f scale) {
+        this.time = time;
+        this.translation = translation;
+        this.rotation = rotation;
+        this.scale = scale;
+    }
+
+    public float getTime() {
+        return time;
+    }
+
+    public Vector3f getTranslation() {
+        return translation;
+    }
+
+    public Quaternion getRotation() {
+        return rotation;
+    }
+
+    public Vector3f getScale() {
+        return scale;
+    }
+}
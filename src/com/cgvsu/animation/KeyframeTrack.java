@@ -0,0 +1,104 @@
+package com.cgvsu.animation;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.math.Quaternion;
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Последовательность ключевых кадров. Между кадрами перемещение и масштаб интерполируются линейно,
+// поворот - сферически. До первого и после последнего кадра положение не меняется
+public class KeyframeTrack {
+    private final List<Keyframe> keyframes;
+    private final boolean looped;
+
+    /**
+     * @param keyframes кадры в порядке возрастания времени
+     * @param looped повторять ли анимацию после последнего кадра
+     */
+    public KeyframeTrack(List<Keyframe> keyframes, boolean looped) {
+        if (keyframes.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один ключевой кадр");
+        }
+        for (int i = 1; i < keyframes.size(); i++) {
+            if (keyframes.get(i).getTime() <= keyframes.get(i - 1).getTime()) {
+                throw new IllegalArgumentException("Время ключевых кадров должно возрастать, кадр " + i);
+            }
+        }
+        this.keyframes = new ArrayList<>(keyframes);
+        this.looped = looped;
+    }
+
+    public float getStartTime() {
+        return keyframes.get(0).getTime();
+    }
+
+    public float getDuration() {
+        return keyframes.get(keyframes.size() - 1).getTime() - getStartTime();
+    }
+
+    /**
+     * Вычисляет положение в момент time и записывает его в dest вместо прежнего преобразования
+     * @param time момент времени
+     * @param dest преобразование, в которое записывается результат
+     */
+    public void evaluate(float time, AffineTransformations dest) {
+        time = normalizeTime(time);
+        final int next = findNextKeyframe(time);
+        dest.reset();
+        if (next == 0 || next == keyframes.size()) {
+            Keyframe keyframe = keyframes.get(Math.min(next, keyframes.size() - 1));
+            apply(dest, keyframe.getTranslation(), keyframe.getRotation(), keyframe.getScale());
+            return;
+        }
+
+        Keyframe from = keyframes.get(next - 1);
+        Keyframe to = keyframes.get(next);
+        final float t = (time - from.getTime()) / (to.getTime() - from.getTime());
+        dest.translation(
+                lerp(from.getTranslation().getX(), to.getTranslation().getX(), t),
+                lerp(from.getTranslation().getY(), to.getTranslation().getY(), t),
+                lerp(from.getTranslation().getZ(), to.getTranslation().getZ(), t));
+        dest.rotation(from.getRotation().slerp(to.getRotation(), t));
+        dest.scaling(
+                lerp(from.getScale().getX(), to.getScale().getX(), t),
+                lerp(from.getScale().getY(), to.getScale().getY(), t),
+                lerp(from.getScale().getZ(), to.getScale().getZ(), t));
+    }
+
+    private float normalizeTime(float time) {
+        final float duration = getDuration();
+        if (!looped || duration == 0) {
+            return time;
+        }
+        float local = (time - getStartTime()) % duration;
+        if (local < 0) {
+            local += duration;
+        }
+        return getStartTime() + local;
+    }
+
+    // Номер первого кадра, время которого больше time, или размер списка, если такого нет
+    private int findNextKeyframe(float time) {
+        int low = 0;
+        int high = keyframes.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (keyframes.get(middle).getTime() <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static void apply(AffineTransformations dest, Vector3f translation, Quaternion rotation, Vector3f scale) {
+        dest.translation(translation).rotation(rotation).scaleByVector(scale);
+    }
+
+    private static float lerp(float from, float to, float t) {
+        return from + (to - from) * t;
+    }
+}
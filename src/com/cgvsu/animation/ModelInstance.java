@@ -0,0 +1,49 @@
+package com.cgvsu.animation;
+
+import com.cgvsu.math.AffineTransformations;
+
+// Экземпляр общей модели со своим преобразованием и своим буфером преобразованных вершин.
+// Буфер выделяется один раз и переписывается при каждом обновлении кадра
+public class ModelInstance {
+    private final KeyframeTrack track;
+    private final float timeOffset;
+    private final AffineTransformations transformations;
+    private final float[] positions;
+
+    ModelInstance(KeyframeTrack track, float timeOffset, AffineTransformations transformations, int vertexCount) {
+        this.track = track;
+        this.timeOffset = timeOffset;
+        this.transformations = transformations;
+        this.positions = new float[vertexCount * 3];
+    }
+
+    /**
+     * Возвращает преобразование экземпляра. У экземпляра без анимации его можно менять между кадрами,
+     * у анимированного оно пересчитывается при каждом обновлении
+     * @return преобразование экземпляра
+     */
+    public AffineTransformations getTransformations() {
+        return transformations;
+    }
+
+    public KeyframeTrack getTrack() {
+        return track;
+    }
+
+    /**
+     * Возвращает преобразованные координаты вершин (x, y, z подряд) на момент последнего обновления.
+     * Массив один и тот же от кадра к кадру и не должен изменяться снаружи
+     * @return координаты вершин экземпляра
+     */
+    public float[] getPositions() {
+        return positions;
+    }
+
+    void update(float time, float[] sourcePositions) {
+        if (track != null) {
+            track.evaluate(time + timeOffset, transformations);
+        }
+        System.arraycopy(sourcePositions, 0, positions, 0, positions.length);
+        transformations.applyToPoints(positions, 0, positions.length / 3);
+    }
+}
@@ -1,40 +1,69 @@
 package com.cgvsu.math;
 
+import com.cgvsu.model.FloatArray;
 import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class AffineTransformations {
-    private Matrix4f matrix;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+
+    private final Matrix4f matrix;
+    private Kind kind;
+    private boolean normalizeNormals = true;
+    private NormalTransform normalTransform;
+    private final float[] normalTransformSource = new float[Matrix4f.SIZE * Matrix4f.SIZE];
+    // Последний угол поворота и его синус и косинус: повороты на один и тот же угол повторяются часто
+    private float cachedAngle = 0;
+    private float cachedSin = 0;
+    private float cachedCos = 1;
 
     public AffineTransformations() {
         matrix = new Matrix4f();
+        kind = Kind.IDENTITY;
     }
 
+    /**
+     * Создает преобразование с копией указанной матрицы, поэтому дальнейшие изменения
+     * преобразования не затрагивают переданную матрицу
+     * @param matrix матрица преобразования
+     */
     public AffineTransformations(Matrix4f matrix) {
-        this.matrix = matrix;
+        this.matrix = new Matrix4f(matrix);
+        this.kind = classify(matrix);
     }
 
     public enum Axis {
         X, Y, Z
     }
 
+    /**
+     * Вид матрицы преобразования, по которому применение преобразования пропускает лишнюю работу.
+     * Виды упорядочены от частного к общему
+     */
+    public enum Kind {
+        /** Единичная матрица, преобразование ничего не меняет */
+        IDENTITY,
+        /** Только перемещение */
+        TRANSLATION,
+        /** Последняя строка равна (0, 0, 0, 1), делить на w не нужно */
+        AFFINE,
+        /** Произвольная матрица */
+        PROJECTIVE
+    }
+
     /**
      * Применяет вращение вокруг оси X на указанный угол
      * @param angle угол поворота
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations rotationX(float angle) {
-        float rad = (float) Math.toRadians(angle);
-        float sin = (float) Math.sin(rad);
-        float cos = (float) Math.cos(rad);
-
-        Matrix4f rotation = new Matrix4f(new float[][] {
-                {1, 0, 0, 0,},
-                {0, cos, -sin, 0},
-                {0, sin, cos, 0},
-                {0, 0, 0, 1}
-        });
-
-        matrix = matrix.matrixMultiplication(rotation);
+        updateSinCos(angle);
+        matrix.mulRotationX(cachedSin, cachedCos);
+        kind = widen(kind, Kind.AFFINE);
         return this;
     }
 
@@ -44,17 +73,9 @@ public class AffineTransformations {
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations rotationY(float angle) {
-        float rad = (float) Math.toRadians(angle);
-        float sin = (float) Math.sin(rad);
-        float cos = (float) Math.cos(rad);
-
-        Matrix4f rotation = new Matrix4f(new float[][] {
-                {cos, 0, sin, 0,},
-                {0, 1, 0, 0},
-                {-sin, 0, cos, 0},
-                {0, 0, 0, 1}
-        });
-        matrix = matrix.matrixMultiplication(rotation);
+        updateSinCos(angle);
+        matrix.mulRotationY(cachedSin, cachedCos);
+        kind = widen(kind, Kind.AFFINE);
         return this;
     }
 
@@ -64,17 +85,9 @@ public class AffineTransformations {
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations rotationZ(float angle) {
-        float rad = (float) Math.toRadians(angle);
-        float sin = (float) Math.sin(rad);
-        float cos = (float) Math.cos(rad);
-
-        Matrix4f rotation = new Matrix4f(new float[][] {
-                {cos, -sin, 0, 0},
-                {sin, cos, 0, 0},
-                {0, 0, 1, 0},
-                {0, 0, 0, 1}
-        });
-        matrix = matrix.matrixMultiplication(rotation);
+        updateSinCos(angle);
+        matrix.mulRotationZ(cachedSin, cachedCos);
+        kind = widen(kind, Kind.AFFINE);
         return this;
     }
 
@@ -92,6 +105,28 @@ public class AffineTransformations {
         };
     }
 
+    /**
+     * Применяет вращение, заданное кватернионом. Для цепочки поворотов выгоднее сначала перемножить
+     * кватернионы и применить результат один раз
+     * @param rotation кватернион поворота
+     * @return этот объект для цепочки вызовов
+     */
+    public AffineTransformations rotation(Quaternion rotation) {
+        matrix.mulRotation(rotation);
+        kind = widen(kind, Kind.AFFINE);
+        return this;
+    }
+
+    /**
+     * Применяет вращение вокруг произвольной оси на заданный угол
+     * @param axis ось вращения
+     * @param angle угол вращения
+     * @return этот объект для цепочки вызовов
+     */
+    public AffineTransformations rotation(Vector3f axis, float angle) {
+        return rotation(Quaternion.fromAxisAngle(axis, angle));
+    }
+
     /**
      * Применяет перемещение на указанные расстояния по осям
      * @param tx смещение по оси X
@@ -100,13 +135,8 @@ public class AffineTransformations {
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations translation(float tx, float ty, float tz) {
-        Matrix4f translation = new Matrix4f(new float[][]{
-                {1, 0, 0, tx},
-                {0, 1, 0, ty},
-                {0, 0, 1, tz},
-                {0, 0, 0, 1}
-        });
-        matrix = matrix.matrixMultiplication(translation);
+        matrix.mulTranslation(tx, ty, tz);
+        kind = widen(kind, Kind.TRANSLATION);
         return this;
     }
 
@@ -168,13 +198,8 @@ public class AffineTransformations {
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations scaling(float sx, float sy, float sz) {
-        Matrix4f scaling = new Matrix4f(new float[][] {
-                {sx, 0, 0, 0},
-                {0, sy, 0, 0},
-                {0, 0, sz, 0},
-                {0, 0, 0, 1}
-        });
-        matrix = matrix.matrixMultiplication(scaling);
+        matrix.mulScaling(sx, sy, sz);
+        kind = widen(kind, Kind.AFFINE);
         return this;
     }
 
@@ -243,20 +268,179 @@ public class AffineTransformations {
      * @return этот объект для цепочки вызовов
      */
     public AffineTransformations apply(AffineTransformations other) {
-        this.matrix = this.matrix.matrixMultiplication(other.getMatrix());
+        matrix.mul(other.matrix);
+        kind = widen(kind, other.kind);
+        return this;
+    }
+
+    /**
+     * Включает или выключает приведение нормалей к единичной длине после преобразования. По умолчанию включено
+     * @param normalize нормировать ли нормали
+     * @return этот объект для цепочки вызовов
+     */
+    public AffineTransformations normalizeNormals(boolean normalize) {
+        this.normalizeNormals = normalize;
         return this;
     }
 
     /**
-     * Применяет текущее преобразование ко всем вершинам модели
+     * Применяет текущее преобразование ко всем вершинам и нормалям модели. Нормали умножаются
+     * на обратную транспонированную матрицу, поэтому остаются верными и после неравномерного масштабирования
      * @param model модель для преобразования
      */
     public void applyToModel(Model model) {
-        for (int i = 0; i < model.vertices.size(); i++) {
-            Vector3f vertex = model.vertices.get(i);
-            Vector3f transform = matrix.multiplyMatrixByVector(vertex);
-            model.vertices.set(i, transform);
+        if (kind == Kind.IDENTITY) {
+            return;
+        }
+        transformRange(model, getNormalTransform(), 0, getTransformedCount(model.vertices.size(), model.normals.size()));
+    }
+
+    /**
+     * Применяет текущее преобразование ко всем вершинам и нормалям компактной модели, не создавая объектов
+     * @param model модель для преобразования
+     */
+    public void applyToModel(PackedModel model) {
+        if (kind == Kind.IDENTITY) {
+            return;
+        }
+        transformRange(model, getNormalTransform(), 0, getTransformedCount(model.getVertexCount(), model.getNormalCount()));
+    }
+
+    /**
+     * Применяет текущее преобразование к подряд лежащим точкам (x, y, z) на месте, не создавая объектов
+     * @param points массив координат
+     * @param offset индекс первой координаты первой точки
+     * @param count количество точек
+     */
+    public void applyToPoints(float[] points, int offset, int count) {
+        switch (kind) {
+            case IDENTITY:
+                break;
+            case TRANSLATION:
+                final float[] m = matrix.values;
+                for (int i = offset; i < offset + count * 3; i += 3) {
+                    points[i] += m[3];
+                    points[i + 1] += m[7];
+                    points[i + 2] += m[11];
+                }
+                break;
+            default:
+                matrix.transformPoints(points, offset, count);
+        }
+    }
+
+    /**
+     * Применяет текущее преобразование ко всем вершинам и нормалям модели параллельно, разбивая их
+     * на диапазоны не больше DEFAULT_PARALLEL_THRESHOLD
+     * @param model модель для преобразования
+     * @param pool пул потоков
+     */
+    public void applyToModel(Model model, ForkJoinPool pool) {
+        applyToModel(model, pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Применяет текущее преобразование ко всем вершинам и нормалям модели параллельно.
+     * Модели, в которых вершин и нормалей вместе не больше threshold, преобразуются последовательно
+     * @param model модель для преобразования
+     * @param pool пул потоков
+     * @param threshold наибольшее число вершин и нормалей, которое обрабатывается одной задачей
+     */
+    public void applyToModel(Model model, ForkJoinPool pool, int threshold) {
+        checkThreshold(threshold);
+        final int count = getTransformedCount(model.vertices.size(), model.normals.size());
+        if (count <= threshold || pool.getParallelism() == 1 || kind == Kind.IDENTITY) {
+            applyToModel(model);
+            return;
         }
+        final NormalTransform normalTransform = getNormalTransform();
+        pool.invoke(new TransformRangeTask(0, count, threshold,
+                (from, to) -> transformRange(model, normalTransform, from, to)));
+    }
+
+    public void applyToModel(PackedModel model, ForkJoinPool pool) {
+        applyToModel(model, pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public void applyToModel(PackedModel model, ForkJoinPool pool, int threshold) {
+        checkThreshold(threshold);
+        final int count = getTransformedCount(model.getVertexCount(), model.getNormalCount());
+        if (count <= threshold || pool.getParallelism() == 1 || kind == Kind.IDENTITY) {
+            applyToModel(model);
+            return;
+        }
+        final NormalTransform normalTransform = getNormalTransform();
+        // Массивы из файла кэша копируются до запуска задач, а не каждой задачей одновременно
+        model.vertices.writableBuffer();
+        model.normals.writableBuffer();
+        pool.invoke(new TransformRangeTask(0, count, threshold,
+                (from, to) -> transformRange(model, normalTransform, from, to)));
+    }
+
+    // При нулевом пороге задача делила бы диапазон из одного элемента без конца
+    private static void checkThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Порог разбиения на задачи должен быть положительным");
+        }
+    }
+
+    // Вершины и нормали обходятся как один диапазон: сначала все вершины, за ними все нормали.
+    // Так одна задача обрабатывает и те, и другие, а модель проходится один раз
+    private void transformRange(Model model, NormalTransform normalTransform, int from, int to) {
+        final int vertexCount = model.vertices.size();
+        final int vertexEnd = Math.min(to, vertexCount);
+        if (kind == Kind.TRANSLATION) {
+            final float[] m = matrix.values;
+            for (int i = from; i < vertexEnd; i++) {
+                Vector3f vertex = model.vertices.get(i);
+                model.vertices.set(i, new Vector3f(vertex.x + m[3], vertex.y + m[7], vertex.z + m[11]));
+            }
+            return;
+        }
+        for (int i = from; i < vertexEnd; i++) {
+            model.vertices.set(i, matrix.multiplyMatrixByVector(model.vertices.get(i)));
+        }
+        for (int i = Math.max(from, vertexCount); i < to; i++) {
+            final int normalIndex = i - vertexCount;
+            model.normals.set(normalIndex, normalTransform.transform(model.normals.get(normalIndex), normalizeNormals));
+        }
+    }
+
+    private void transformRange(PackedModel model, NormalTransform normalTransform, int from, int to) {
+        final int vertexCount = model.getVertexCount();
+        final int vertexEnd = Math.min(to, vertexCount);
+        if (kind == Kind.TRANSLATION) {
+            final float[] m = matrix.values;
+            final FloatArray vertices = model.vertices;
+            for (int i = from * PackedModel.VERTEX_STRIDE; i < vertexEnd * PackedModel.VERTEX_STRIDE; i += PackedModel.VERTEX_STRIDE) {
+                vertices.set(i, vertices.get(i) + m[3]);
+                vertices.set(i + 1, vertices.get(i + 1) + m[7]);
+                vertices.set(i + 2, vertices.get(i + 2) + m[11]);
+            }
+            return;
+        }
+        if (from < vertexEnd) {
+            matrix.transformPoints(model.vertices.writableBuffer(), from * PackedModel.VERTEX_STRIDE, vertexEnd - from);
+        }
+        final int normalStart = Math.max(from, vertexCount);
+        if (normalStart < to) {
+            normalTransform.transform(model.normals.writableBuffer(),
+                    (normalStart - vertexCount) * PackedModel.NORMAL_STRIDE, to - normalStart, normalizeNormals);
+        }
+    }
+
+    // Перемещение не меняет нормали, поэтому для него обходятся только вершины
+    private int getTransformedCount(int vertexCount, int normalCount) {
+        return kind == Kind.TRANSLATION ? vertexCount : vertexCount + normalCount;
+    }
+
+    // Матрица меняется на месте, поэтому кэш сверяется со снимком значений, по которым он был посчитан
+    private NormalTransform getNormalTransform() {
+        if (normalTransform == null || !Arrays.equals(normalTransformSource, matrix.values)) {
+            normalTransform = new NormalTransform(matrix);
+            System.arraycopy(matrix.values, 0, normalTransformSource, 0, normalTransformSource.length);
+        }
+        return normalTransform;
     }
 
     /**
@@ -265,7 +449,7 @@ public class AffineTransformations {
      * @return новая копия этого преобразования
      */
     public AffineTransformations build() {
-        return new AffineTransformations(new Matrix4f(this.matrix));
+        return new AffineTransformations(this.matrix).normalizeNormals(normalizeNormals);
     }
 
     /**
@@ -274,8 +458,10 @@ public class AffineTransformations {
      * @return новое преобразование, являющееся комбинацией текущего и другого
      */
     public AffineTransformations combination(AffineTransformations other) {
-        Matrix4f result = this.matrix.matrixMultiplication((other.getMatrix()));
-        return new AffineTransformations(result);
+        AffineTransformations result = new AffineTransformations().normalizeNormals(normalizeNormals);
+        Matrix4f.mulInto(this.matrix, other.matrix, result.matrix);
+        result.kind = widen(kind, other.kind);
+        return result;
     }
 
     /**
@@ -284,7 +470,21 @@ public class AffineTransformations {
      * @return преобразованный вектор
      */
     public Vector3f applyToVector(Vector3f vector) {
-        return matrix.multiplyMatrixByVector(vector);
+        final float[] m = matrix.values;
+        return switch (kind) {
+            case IDENTITY -> new Vector3f(vector.x, vector.y, vector.z);
+            case TRANSLATION -> new Vector3f(vector.x + m[3], vector.y + m[7], vector.z + m[11]);
+            default -> matrix.multiplyMatrixByVector(vector);
+        };
+    }
+
+    /**
+     * Применяет текущее преобразование к нормали
+     * @param normal нормаль для преобразования
+     * @return преобразованная нормаль
+     */
+    public Vector3f applyToNormal(Vector3f normal) {
+        return getNormalTransform().transform(normal, normalizeNormals);
     }
 
     /**
@@ -292,6 +492,41 @@ public class AffineTransformations {
      */
     public void reset() {
         matrix.createUnitMatrix();
+        kind = Kind.IDENTITY;
+    }
+
+    /**
+     * Возвращает вид матрицы преобразования. Вид отслеживается по примененным преобразованиям,
+     * поэтому может быть общее, чем сама матрица, например после поворота на 0 градусов
+     * @return вид матрицы
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    private void updateSinCos(float angle) {
+        if (angle != cachedAngle) {
+            float rad = (float) Math.toRadians(angle);
+            cachedSin = (float) Math.sin(rad);
+            cachedCos = (float) Math.cos(rad);
+            cachedAngle = angle;
+        }
+    }
+
+    private static Kind widen(Kind first, Kind second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private static Kind classify(Matrix4f matrix) {
+        final float[] m = matrix.values;
+        if (!matrix.isAffine()) {
+            return Kind.PROJECTIVE;
+        }
+        if (m[0] != 1 || m[1] != 0 || m[2] != 0 || m[4] != 0 || m[5] != 1 || m[6] != 0
+                || m[8] != 0 || m[9] != 0 || m[10] != 1) {
+            return Kind.AFFINE;
+        }
+        return m[3] == 0 && m[7] == 0 && m[11] == 0 ? Kind.IDENTITY : Kind.TRANSLATION;
     }
 
     /**
@@ -301,4 +536,35 @@ public class AffineTransformations {
     protected Matrix4f getMatrix() {
         return matrix;
     }
+
+    private interface RangeTransform {
+        void apply(int from, int to);
+    }
+
+    // Делит диапазон вершин пополам, пока он не станет меньше порога. Диапазоны не пересекаются,
+    // поэтому задачи пишут в модель без синхронизации
+    private static class TransformRangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final RangeTransform transform;
+
+        private TransformRangeTask(int from, int to, int threshold, RangeTransform transform) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.transform = transform;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                transform.apply(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new TransformRangeTask(from, middle, threshold, transform),
+                    new TransformRangeTask(middle, to, threshold, transform));
+        }
+    }
 }
@@ -1,12 +1,14 @@
 package com.cgvsu.math;
 
-import java.util.Arrays;
+import java.nio.FloatBuffer;
 
+// Матрица хранится одним массивом по строкам: элемент (row, col) лежит в values[row * 4 + col]
 public class Matrix4f {
-    private float[][] matrix;
+    static final int SIZE = 4;
+
+    final float[] values = new float[SIZE * SIZE];
 
     public Matrix4f() {
-        matrix = new float[4][4];
         createUnitMatrix();
     }
 
@@ -21,59 +23,298 @@ public class Matrix4f {
             }
         }
 
-        this.matrix = new float[4][4];
         for (int i = 0; i < 4; i++) {
-            this.matrix[i] = Arrays.copyOf(values[i], 4);
+            System.arraycopy(values[i], 0, this.values, i * SIZE, SIZE);
         }
     }
 
     public Matrix4f(Matrix4f other) {
-        this.matrix = new float[4][4];
-        for (int i = 0; i < 4; i++) {
-            this.matrix[i] = Arrays.copyOf(other.matrix[i], 4);
-        }
+        set(other);
     }
 
     public void createUnitMatrix() {
         for (int i = 0; i < 4; i++) {
             for (int j = 0; j < 4; j++) {
                 if (i == j) {
-                    matrix[i][j] = 1.0f;
+                    values[i * SIZE + j] = 1.0f;
                 } else {
-                    matrix[i][j] = 0.0f;
+                    values[i * SIZE + j] = 0.0f;
                 }
             }
         }
     }
 
     public Matrix4f matrixMultiplication(Matrix4f other) {
-        float[][] result = new float[4][4];
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                for (int k = 0; k < 4; k++) {
-                    result[i][j] += this.matrix[i][k] * other.matrix[k][j];
-                }
-            }
+        Matrix4f result = new Matrix4f();
+        mulInto(this, other, result);
+        return result;
+    }
+
+    /**
+     * Умножает эту матрицу справа на другую, результат записывается в эту матрицу
+     * @param other правый множитель
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mul(Matrix4f other) {
+        mulInto(this, other, this);
+        return this;
+    }
+
+    /**
+     * Записывает произведение a * b в dest, не создавая объектов. dest может совпадать с a или b
+     * @param a левый множитель
+     * @param b правый множитель
+     * @param dest матрица для результата
+     */
+    public static void mulInto(Matrix4f a, Matrix4f b, Matrix4f dest) {
+        final float[] l = a.values;
+        final float[] r = b.values;
+        // Строка результата зависит только от той же строки a, поэтому строку a можно перезаписывать сразу,
+        // а если dest совпадает с b, столбцы b читаются до записи из локальных копий
+        final float r00 = r[0], r01 = r[1], r02 = r[2], r03 = r[3];
+        final float r10 = r[4], r11 = r[5], r12 = r[6], r13 = r[7];
+        final float r20 = r[8], r21 = r[9], r22 = r[10], r23 = r[11];
+        final float r30 = r[12], r31 = r[13], r32 = r[14], r33 = r[15];
+        final float[] d = dest.values;
+        for (int i = 0; i < SIZE * SIZE; i += SIZE) {
+            final float l0 = l[i], l1 = l[i + 1], l2 = l[i + 2], l3 = l[i + 3];
+            // Сумма начинается с нуля, как в исходном умножении, чтобы знак нулевых элементов не менялся
+            d[i] = 0f + l0 * r00 + l1 * r10 + l2 * r20 + l3 * r30;
+            d[i + 1] = 0f + l0 * r01 + l1 * r11 + l2 * r21 + l3 * r31;
+            d[i + 2] = 0f + l0 * r02 + l1 * r12 + l2 * r22 + l3 * r32;
+            d[i + 3] = 0f + l0 * r03 + l1 * r13 + l2 * r23 + l3 * r33;
+        }
+    }
+
+    // Умножение справа на матрицы простых преобразований. Такие матрицы почти пустые,
+    // поэтому вместо полного произведения меняются только затронутые столбцы
+
+    /**
+     * Умножает эту матрицу справа на матрицу перемещения. Меняется только последний столбец
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulTranslation(float tx, float ty, float tz) {
+        final float[] m = values;
+        for (int i = 0; i < SIZE * SIZE; i += SIZE) {
+            m[i + 3] = m[i] * tx + m[i + 1] * ty + m[i + 2] * tz + m[i + 3];
+        }
+        return this;
+    }
+
+    /**
+     * Умножает эту матрицу справа на матрицу масштабирования. Первые три столбца умножаются на коэффициенты
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulScaling(float sx, float sy, float sz) {
+        final float[] m = values;
+        for (int i = 0; i < SIZE * SIZE; i += SIZE) {
+            m[i] *= sx;
+            m[i + 1] *= sy;
+            m[i + 2] *= sz;
+        }
+        return this;
+    }
+
+    /**
+     * Умножает эту матрицу справа на матрицу поворота вокруг оси X. Меняются только столбцы Y и Z
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulRotationX(float sin, float cos) {
+        mulRotation(1, 2, sin, cos);
+        return this;
+    }
+
+    /**
+     * Умножает эту матрицу справа на матрицу поворота вокруг оси Y. Меняются только столбцы X и Z
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulRotationY(float sin, float cos) {
+        mulRotation(2, 0, sin, cos);
+        return this;
+    }
+
+    /**
+     * Умножает эту матрицу справа на матрицу поворота вокруг оси Z. Меняются только столбцы X и Y
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulRotationZ(float sin, float cos) {
+        mulRotation(0, 1, sin, cos);
+        return this;
+    }
+
+    /**
+     * Умножает эту матрицу справа на матрицу поворота, заданного кватернионом. Меняются первые три столбца
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f mulRotation(Quaternion rotation) {
+        // Элементы поворота 3x3 считаются в локальных переменных, чтобы не заводить временный массив
+        // на каждый кадр. Деление на квадрат длины дает чистый поворот и для не совсем единичного
+        // кватерниона, поэтому перенормировка не требуется
+        final float w = rotation.w, x = rotation.x, y = rotation.y, z = rotation.z;
+        final float lengthSquared = w * w + x * x + y * y + z * z;
+        final float s = lengthSquared == 0 ? 0 : 2 / lengthSquared;
+        final float xx = x * x * s, yy = y * y * s, zz = z * z * s;
+        final float xy = x * y * s, xz = x * z * s, yz = y * z * s;
+        final float wx = w * x * s, wy = w * y * s, wz = w * z * s;
+        final float r00 = 1 - yy - zz, r01 = xy - wz, r02 = xz + wy;
+        final float r10 = xy + wz, r11 = 1 - xx - zz, r12 = yz - wx;
+        final float r20 = xz - wy, r21 = yz + wx, r22 = 1 - xx - yy;
+
+        final float[] m = values;
+        for (int i = 0; i < SIZE * SIZE; i += SIZE) {
+            final float a = m[i], b = m[i + 1], c = m[i + 2];
+            m[i] = a * r00 + b * r10 + c * r20;
+            m[i + 1] = a * r01 + b * r11 + c * r21;
+            m[i + 2] = a * r02 + b * r12 + c * r22;
+        }
+        return this;
+    }
+
+    // Поворот в плоскости столбцов first и second: first' = cos * first + sin * second,
+    // second' = cos * second - sin * first
+    private void mulRotation(int first, int second, float sin, float cos) {
+        final float[] m = values;
+        for (int i = 0; i < SIZE * SIZE; i += SIZE) {
+            final float a = m[i + first];
+            final float b = m[i + second];
+            m[i + first] = a * cos + b * sin;
+            m[i + second] = b * cos - a * sin;
         }
-        return new Matrix4f(result);
     }
 
     public Vector3f multiplyMatrixByVector(Vector3f vector) {
-        float[] result = new float[4];
+        Vector3f result = new Vector3f(0, 0, 0);
+        transform(vector.x, vector.y, vector.z, result);
+        return result;
+    }
 
-        for (int i = 0; i < 4; i++) {
-            result[i] = matrix[i][0] * vector.x + matrix[i][1] * vector.y +
-                    matrix[i][2] * vector.z + matrix[i][3];
+    /**
+     * Преобразует точку (x, y, z, 1) и записывает результат в dest. Если w отлично от 0 и 1,
+     * координаты делятся на w
+     * @param dest вектор для результата
+     */
+    public void transform(float x, float y, float z, Vector3f dest) {
+        final float[] m = values;
+        float resultX = m[0] * x + m[1] * y + m[2] * z + m[3];
+        float resultY = m[4] * x + m[5] * y + m[6] * z + m[7];
+        float resultZ = m[8] * x + m[9] * y + m[10] * z + m[11];
+        final float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+        if (w != 0 && w != 1) {
+            resultX /= w;
+            resultY /= w;
+            resultZ /= w;
         }
+        dest.x = resultX;
+        dest.y = resultY;
+        dest.z = resultZ;
+    }
 
-        if (result[3] != 0 && result[3] != 1) {
-            return new Vector3f(result[0] / result[3], result[1] / result[3], result[2] / result[3]);
+    /**
+     * Преобразует точку (x, y, z, 1) и записывает три координаты результата в dest начиная с offset
+     */
+    public void transform(float x, float y, float z, float[] dest, int offset) {
+        final float[] m = values;
+        float resultX = m[0] * x + m[1] * y + m[2] * z + m[3];
+        float resultY = m[4] * x + m[5] * y + m[6] * z + m[7];
+        float resultZ = m[8] * x + m[9] * y + m[10] * z + m[11];
+        final float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+        if (w != 0 && w != 1) {
+            resultX /= w;
+            resultY /= w;
+            resultZ /= w;
         }
+        dest[offset] = resultX;
+        dest[offset + 1] = resultY;
+        dest[offset + 2] = resultZ;
+    }
 
-        return new Vector3f(result[0], result[1], result[2]);
+    /**
+     * Проверяет, что последняя строка матрицы равна (0, 0, 0, 1), то есть делить на w не нужно
+     */
+    public boolean isAffine() {
+        return values[12] == 0 && values[13] == 0 && values[14] == 0 && values[15] == 1;
+    }
+
+    /**
+     * Преобразует подряд лежащие точки (x, y, z) на месте. Для конечных координат результат совпадает
+     * с transform для каждой точки, но проверка на аффинность делается один раз на весь массив
+     * @param points массив координат
+     * @param offset индекс первой координаты первой точки
+     * @param count количество точек
+     */
+    public void transformPoints(float[] points, int offset, int count) {
+        final float[] m = values;
+        final float m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+        final float m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+        final float m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+        final int end = offset + count * 3;
+        if (isAffine()) {
+            for (int i = offset; i < end; i += 3) {
+                final float x = points[i];
+                final float y = points[i + 1];
+                final float z = points[i + 2];
+                points[i] = m00 * x + m01 * y + m02 * z + m03;
+                points[i + 1] = m10 * x + m11 * y + m12 * z + m13;
+                points[i + 2] = m20 * x + m21 * y + m22 * z + m23;
+            }
+        } else {
+            for (int i = offset; i < end; i += 3) {
+                transform(points[i], points[i + 1], points[i + 2], points, i);
+            }
+        }
+    }
+
+    /**
+     * То же, что transformPoints для массива, но для буфера. Буфер в куче обрабатывается через его массив
+     * @param points буфер координат
+     * @param offset индекс первой координаты первой точки
+     * @param count количество точек
+     */
+    public void transformPoints(FloatBuffer points, int offset, int count) {
+        if (points.hasArray()) {
+            transformPoints(points.array(), points.arrayOffset() + offset, count);
+            return;
+        }
+        final float[] m = values;
+        final float m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+        final float m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+        final float m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+        final int end = offset + count * 3;
+        if (isAffine()) {
+            for (int i = offset; i < end; i += 3) {
+                final float x = points.get(i);
+                final float y = points.get(i + 1);
+                final float z = points.get(i + 2);
+                points.put(i, m00 * x + m01 * y + m02 * z + m03);
+                points.put(i + 1, m10 * x + m11 * y + m12 * z + m13);
+                points.put(i + 2, m20 * x + m21 * y + m22 * z + m23);
+            }
+        } else {
+            final float[] result = new float[3];
+            for (int i = offset; i < end; i += 3) {
+                transform(points.get(i), points.get(i + 1), points.get(i + 2), result, 0);
+                points.put(i, result[0]);
+                points.put(i + 1, result[1]);
+                points.put(i + 2, result[2]);
+            }
+        }
     }
 
     public float get(int row, int col) {
-        return matrix[row][col];
+        return values[row * SIZE + col];
+    }
+
+    public void set(int row, int col, float value) {
+        values[row * SIZE + col] = value;
+    }
+
+    /**
+     * Копирует в эту матрицу значения другой
+     * @param other матрица-источник
+     * @return эта матрица для цепочки вызовов
+     */
+    public Matrix4f set(Matrix4f other) {
+        System.arraycopy(other.values, 0, values, 0, SIZE * SIZE);
+        return this;
     }
 }
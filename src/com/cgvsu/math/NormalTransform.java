@@ -0,0 +1,85 @@
+package com.cgvsu.math;
+
+import java.nio.FloatBuffer;
+
+// Преобразование нормалей: обратная транспонированная к левой верхней части 3x3 матрицы преобразования.
+// Сдвиг на нормали не влияет, а при неравномерном масштабировании нормали остаются перпендикулярными к граням.
+// Обратная транспонированная равна матрице алгебраических дополнений, деленной на определитель
+final class NormalTransform {
+    private final float[] values = new float[9];
+
+    NormalTransform(Matrix4f matrix) {
+        final float[] m = matrix.values;
+        final float a = m[0], b = m[1], c = m[2];
+        final float d = m[4], e = m[5], f = m[6];
+        final float g = m[8], h = m[9], i = m[10];
+
+        final float c00 = e * i - f * h, c01 = f * g - d * i, c02 = d * h - e * g;
+        final float c10 = c * h - b * i, c11 = a * i - c * g, c12 = b * g - a * h;
+        final float c20 = b * f - c * e, c21 = c * d - a * f, c22 = a * e - b * d;
+        final float determinant = a * c00 + b * c01 + c * c02;
+        // У вырожденной матрицы обратной нет, но дополнения все равно дают верные направления,
+        // которые остается только нормировать
+        final float scale = determinant != 0 ? 1 / determinant : 1;
+
+        values[0] = c00 * scale;
+        values[1] = c01 * scale;
+        values[2] = c02 * scale;
+        values[3] = c10 * scale;
+        values[4] = c11 * scale;
+        values[5] = c12 * scale;
+        values[6] = c20 * scale;
+        values[7] = c21 * scale;
+        values[8] = c22 * scale;
+    }
+
+    Vector3f transform(Vector3f normal, boolean normalize) {
+        final float[] n = values;
+        float x = n[0] * normal.x + n[1] * normal.y + n[2] * normal.z;
+        float y = n[3] * normal.x + n[4] * normal.y + n[5] * normal.z;
+        float z = n[6] * normal.x + n[7] * normal.y + n[8] * normal.z;
+        if (normalize) {
+            final float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0) {
+                x /= length;
+                y /= length;
+                z /= length;
+            }
+        }
+        return new Vector3f(x, y, z);
+    }
+
+    /**
+     * Преобразует подряд лежащие нормали (x, y, z) на месте
+     * @param normals буфер нормалей
+     * @param offset индекс первой координаты первой нормали
+     * @param count количество нормалей
+     * @param normalize приводить ли нормали к единичной длине
+     */
+    void transform(FloatBuffer normals, int offset, int count, boolean normalize) {
+        final float[] n = values;
+        final float n00 = n[0], n01 = n[1], n02 = n[2];
+        final float n10 = n[3], n11 = n[4], n12 = n[5];
+        final float n20 = n[6], n21 = n[7], n22 = n[8];
+        final int end = offset + count * 3;
+        for (int i = offset; i < end; i += 3) {
+            final float x = normals.get(i);
+            final float y = normals.get(i + 1);
+            final float z = normals.get(i + 2);
+            float resultX = n00 * x + n01 * y + n02 * z;
+            float resultY = n10 * x + n11 * y + n12 * z;
+            float resultZ = n20 * x + n21 * y + n22 * z;
+            if (normalize) {
+                final float length = (float) Math.sqrt(resultX * resultX + resultY * resultY + resultZ * resultZ);
+                if (length > 0) {
+                    resultX /= length;
+                    resultY /= length;
+                    resultZ /= length;
+                }
+            }
+            normals.put(i, resultX);
+            normals.put(i + 1, resultY);
+            normals.put(i + 2, resultZ);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cgvsu.math;
+
+// Кватернион w + xi + yj + zk для представления поворотов. Композиция поворотов стоит 16 умножений
+// вместо 64 для матриц, а накопленная погрешность меняет только длину кватерниона, которую toMatrix4f учитывает
+public class Quaternion {
+    // Ближе этого кватернионы интерполируются линейно: угол между ними слишком мал для деления на его синус
+    private static final float SLERP_LINEAR_THRESHOLD = 0.9995f;
+
+    final float w, x, y, z;
+
+    public Quaternion(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static Quaternion identity() {
+        return new Quaternion(1, 0, 0, 0);
+    }
+
+    /**
+     * Создает поворот вокруг произвольной оси
+     * @param axis ось поворота, длина не важна
+     * @param angle угол поворота в градусах
+     * @return единичный кватернион поворота
+     */
+    public static Quaternion fromAxisAngle(Vector3f axis, float angle) {
+        final float length = (float) Math.sqrt(axis.x * axis.x + axis.y * axis.y + axis.z * axis.z);
+        if (length == 0) {
+            throw new IllegalArgumentException("Ось поворота не может быть нулевой");
+        }
+        final double halfAngle = Math.toRadians(angle) / 2;
+        final float scale = (float) Math.sin(halfAngle) / length;
+        return new Quaternion((float) Math.cos(halfAngle), axis.x * scale, axis.y * scale, axis.z * scale);
+    }
+
+    public float getW() {
+        return w;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getZ() {
+        return z;
+    }
+
+    /**
+     * Возвращает произведение this * other - поворот, при котором сначала выполняется other, а затем this
+     * @param other правый множитель
+     * @return новый кватернион
+     */
+    public Quaternion multiply(Quaternion other) {
+        return new Quaternion(
+                w * other.w - x * other.x - y * other.y - z * other.z,
+                w * other.x + x * other.w + y * other.z - z * other.y,
+                w * other.y - x * other.z + y * other.w + z * other.x,
+                w * other.z + x * other.y - y * other.x + z * other.w);
+    }
+
+    public Quaternion conjugate() {
+        return new Quaternion(w, -x, -y, -z);
+    }
+
+    public float length() {
+        return (float) Math.sqrt(w * w + x * x + y * y + z * z);
+    }
+
+    public Quaternion normalize() {
+        final float length = length();
+        return new Quaternion(w / length, x / length, y / length, z / length);
+    }
+
+    /**
+     * Сферическая интерполяция по кратчайшей дуге
+     * @param to конечный поворот
+     * @param t параметр от 0 (этот поворот) до 1 (конечный поворот)
+     * @return промежуточный единичный кватернион
+     */
+    public Quaternion slerp(Quaternion to, float t) {
+        float dot = w * to.w + x * to.x + y * to.y + z * to.z;
+        // q и -q задают один и тот же поворот, берем тот, что ближе, чтобы идти по короткой дуге
+        float sign = 1;
+        if (dot < 0) {
+            dot = -dot;
+            sign = -1;
+        }
+
+        float fromWeight;
+        float toWeight;
+        if (dot > SLERP_LINEAR_THRESHOLD) {
+            fromWeight = 1 - t;
+            toWeight = t;
+        } else {
+            final double angle = Math.acos(dot);
+            final double sin = Math.sin(angle);
+            fromWeight = (float) (Math.sin((1 - t) * angle) / sin);
+            toWeight = (float) (Math.sin(t * angle) / sin);
+        }
+        toWeight *= sign;
+        return new Quaternion(
+                fromWeight * w + toWeight * to.w,
+                fromWeight * x + toWeight * to.x,
+                fromWeight * y + toWeight * to.y,
+                fromWeight * z + toWeight * to.z).normalize();
+    }
+
+    /**
+     * Поворачивает вектор этим кватернионом
+     * @param vector исходный вектор
+     * @return повернутый вектор
+     */
+    public Vector3f rotate(Vector3f vector) {
+        // v' = v + s * w * (q x v) + s * q x (q x v), где s = 2 / |q|^2; для единичного кватерниона s = 2.
+        // Деление на квадрат длины, как и в матрице поворота, дает чистый поворот без перенормировки
+        final float lengthSquared = w * w + x * x + y * y + z * z;
+        final float s = lengthSquared == 0 ? 0 : 2 / lengthSquared;
+        final float crossX = y * vector.z - z * vector.y;
+        final float crossY = z * vector.x - x * vector.z;
+        final float crossZ = x * vector.y - y * vector.x;
+        return new Vector3f(
+                vector.x + s * (w * crossX + y * crossZ - z * crossY),
+                vector.y + s * (w * crossY + z * crossX - x * crossZ),
+                vector.z + s * (w * crossZ + x * crossY - y * crossX));
+    }
+
+    // Единичная матрица, умноженная на поворот: коэффициенты поворота считаются только в Matrix4f.mulRotation
+    public Matrix4f toMatrix4f() {
+        return new Matrix4f().mulRotation(this);
+    }
+}
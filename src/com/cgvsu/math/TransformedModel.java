@@ -0,0 +1,90 @@
+package com.cgvsu.math;
+
+import com.cgvsu.model.Model;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Модель с отложенным преобразованием. Цепочка преобразований копится в одной матрице,
+// а вершины переписываются один раз - при bake() или при обращении к модели через getModel()
+public class TransformedModel {
+    private final Model model;
+    private final Matrix4f pending = new Matrix4f();
+    private boolean hasPending;
+
+    public TransformedModel(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Добавляет преобразование после уже накопленных. Вершины не изменяются до bake()
+     * @param transformations преобразование, которое применится после накопленных
+     * @return этот объект для цепочки вызовов
+     */
+    public TransformedModel apply(AffineTransformations transformations) {
+        // Новое преобразование действует на результат накопленных, поэтому умножаем слева
+        Matrix4f.mulInto(transformations.getMatrix(), pending, pending);
+        hasPending = true;
+        return this;
+    }
+
+    /**
+     * Возвращает накопленное преобразование, которое еще не применено к вершинам
+     * @return копия накопленного преобразования
+     */
+    public AffineTransformations getPendingTransformations() {
+        return new AffineTransformations(new Matrix4f(pending));
+    }
+
+    public boolean hasPendingTransformations() {
+        return hasPending;
+    }
+
+    public int getVertexCount() {
+        return model.vertices.size();
+    }
+
+    /**
+     * Возвращает вершину с учетом накопленного преобразования, не изменяя модель
+     * @param index номер вершины
+     * @return преобразованная вершина
+     */
+    public Vector3f getVertex(int index) {
+        Vector3f vertex = model.vertices.get(index);
+        return hasPending ? pending.multiplyMatrixByVector(vertex) : vertex;
+    }
+
+    /**
+     * Применяет накопленное преобразование к вершинам и возвращает модель
+     * @return модель с преобразованными вершинами
+     */
+    public Model getModel() {
+        bake();
+        return model;
+    }
+
+    /**
+     * Применяет накопленное преобразование ко всем вершинам за один проход и сбрасывает его
+     */
+    public void bake() {
+        if (hasPending) {
+            new AffineTransformations(pending).applyToModel(model);
+            reset();
+        }
+    }
+
+    /**
+     * То же, что bake(), но большие модели преобразуются параллельно в указанном пуле
+     * @param pool пул потоков
+     */
+    public void bake(ForkJoinPool pool) {
+        if (hasPending) {
+            new AffineTransformations(pending).applyToModel(model, pool);
+            reset();
+        }
+    }
+
+    private void reset() {
+        pending.createUnitMatrix();
+        hasPending = false;
+    }
+}
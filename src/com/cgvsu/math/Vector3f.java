@@ -2,6 +2,11 @@ package com.cgvsu.math;
 
 // Это заготовка для собственной библиотеки для работы с линейной алгеброй
 public class Vector3f {
+    /**
+     * Допуск, в пределах которого координаты векторов считаются равными
+     */
+    public static final float EPS = 1e-7f;
+
     public Vector3f(float x, float y, float z) {
         this.x = x;
         this.y = y;
@@ -9,8 +14,16 @@ public class Vector3f {
     }
 
     public boolean equals(Vector3f other) {
-        // todo: желательно, чтобы это была глобальная константа
-        final float eps = 1e-7f;
+        return equals(other, EPS);
+    }
+
+    /**
+     * Сравнивает векторы покоординатно с заданным допуском
+     * @param other другой вектор
+     * @param eps допуск для каждой координаты
+     * @return true, если все координаты отличаются меньше чем на eps
+     */
+    public boolean equals(Vector3f other, float eps) {
         return Math.abs(x - other.x) < eps && Math.abs(y - other.y) < eps && Math.abs(z - other.z) < eps;
     }
 
@@ -0,0 +1,22 @@
+package com.cgvsu.meshcache;
+
+import java.nio.ByteOrder;
+
+// Описание бинарного формата компактной модели.
+// Заголовок: сигнатура, версия, размер и время изменения исходного файла и количество элементов
+// в каждом из блоков. Время хранится в наносекундах, для файла без источника оба поля равны NO_SOURCE.
+// Дальше без промежутков идут блоки в порядке BLOCK_COUNT: float координаты и int индексы,
+// все числа в little-endian. Все элементы по 4 байта, поэтому блоки всегда выровнены
+final class BinaryMeshFormat {
+    static final long MAGIC = 0x48534D5553564743L; // "CGVSUMSH" в little-endian
+    static final int VERSION = 2;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int BLOCK_COUNT = 9;
+    static final int ELEMENT_SIZE = 4;
+    static final int HEADER_SIZE = Long.BYTES + Integer.BYTES + 2 * Long.BYTES + BLOCK_COUNT * Integer.BYTES;
+    static final long NO_SOURCE = -1;
+
+    private BinaryMeshFormat() {
+    }
+}
@@ -0,0 +1,99 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.model.FloatArray;
+import com.cgvsu.model.IntArray;
+import com.cgvsu.model.PackedModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryMeshReader {
+
+    /**
+     * Загружает модель из бинарного файла, отображая блоки данных в память без поэлементного разбора.
+     * Файл отображается только для чтения: при первом изменении массив модели копируется в память,
+     * а файл остается прежним
+     * @param path путь к бинарному файлу
+     * @return модель, массивы которой смотрят прямо в отображенный файл
+     * @throws IOException если файл не читается или не является бинарной моделью этой версии
+     */
+    public static PackedModel read(Path path) throws IOException {
+        return read(path, false, 0, 0);
+    }
+
+    /**
+     * Загружает модель, только если она записана из файла с этими размером и временем изменения
+     * @param sourceSize размер исходного файла в байтах
+     * @param sourceModifiedTime время изменения исходного файла в наносекундах
+     * @throws IOException если файл не читается или записан из другой версии исходного файла
+     */
+    static PackedModel read(Path path, long sourceSize, long sourceModifiedTime) throws IOException {
+        return read(path, true, sourceSize, sourceModifiedTime);
+    }
+
+    private static PackedModel read(Path path, boolean checkSource, long sourceSize, long sourceModifiedTime)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryMeshFormat.HEADER_SIZE).order(BinaryMeshFormat.BYTE_ORDER);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Binary mesh file is truncated: " + path);
+                }
+            }
+            header.flip();
+            if (header.getLong() != BinaryMeshFormat.MAGIC) {
+                throw new IOException("Not a binary mesh file: " + path);
+            }
+            final int version = header.getInt();
+            if (version != BinaryMeshFormat.VERSION) {
+                throw new IOException("Unsupported binary mesh version " + version + ": " + path);
+            }
+            final long storedSourceSize = header.getLong();
+            final long storedSourceModifiedTime = header.getLong();
+            if (checkSource && (storedSourceSize != sourceSize || storedSourceModifiedTime != sourceModifiedTime)) {
+                throw new IOException("Binary mesh file doesn't match its source: " + path);
+            }
+
+            int[] counts = new int[BinaryMeshFormat.BLOCK_COUNT];
+            long expectedSize = BinaryMeshFormat.HEADER_SIZE;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = header.getInt();
+                if (counts[i] < 0) {
+                    throw new IOException("Binary mesh file is corrupted: " + path);
+                }
+                expectedSize += (long) counts[i] * BinaryMeshFormat.ELEMENT_SIZE;
+            }
+            if (channel.size() != expectedSize) {
+                throw new IOException("Binary mesh file has wrong size: " + path);
+            }
+
+            long offset = BinaryMeshFormat.HEADER_SIZE;
+            FloatArray[] floatBlocks = new FloatArray[3];
+            for (int i = 0; i < floatBlocks.length; i++) {
+                floatBlocks[i] = new FloatArray(mapBlock(channel, offset, counts[i]).asFloatBuffer());
+                offset += (long) counts[i] * BinaryMeshFormat.ELEMENT_SIZE;
+            }
+            IntArray[] intBlocks = new IntArray[BinaryMeshFormat.BLOCK_COUNT - floatBlocks.length];
+            for (int i = 0; i < intBlocks.length; i++) {
+                final int count = counts[floatBlocks.length + i];
+                intBlocks[i] = new IntArray(mapBlock(channel, offset, count).asIntBuffer());
+                offset += (long) count * BinaryMeshFormat.ELEMENT_SIZE;
+            }
+
+            return new PackedModel(floatBlocks[0], floatBlocks[1], floatBlocks[2],
+                    intBlocks[0], intBlocks[1], intBlocks[2], intBlocks[3], intBlocks[4], intBlocks[5]);
+        }
+    }
+
+    // Каждый блок отображается отдельно, так что ограничение в 2 ГБ действует на блок, а не на весь файл
+    private static ByteBuffer mapBlock(FileChannel channel, long offset, int count) throws IOException {
+        final long size = (long) count * BinaryMeshFormat.ELEMENT_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Binary mesh block is larger than 2 GB");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(BinaryMeshFormat.BYTE_ORDER);
+    }
+}
@@ -0,0 +1,87 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.model.FloatArray;
+import com.cgvsu.model.IntArray;
+import com.cgvsu.model.PackedModel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryMeshWriter {
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Записывает компактную модель в бинарный файл, который потом можно загрузить без разбора
+     * @param model модель для записи
+     * @param path путь к файлу, существующий файл перезаписывается
+     */
+    public static void write(PackedModel model, Path path) throws IOException {
+        write(model, path, BinaryMeshFormat.NO_SOURCE, BinaryMeshFormat.NO_SOURCE);
+    }
+
+    /**
+     * Записывает модель вместе с размером и временем изменения файла, из которого она прочитана
+     * @param sourceSize размер исходного файла в байтах
+     * @param sourceModifiedTime время изменения исходного файла в наносекундах
+     */
+    static void write(PackedModel model, Path path, long sourceSize, long sourceModifiedTime) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(BinaryMeshFormat.BYTE_ORDER);
+
+            buffer.putLong(BinaryMeshFormat.MAGIC);
+            buffer.putInt(BinaryMeshFormat.VERSION);
+            buffer.putLong(sourceSize);
+            buffer.putLong(sourceModifiedTime);
+            buffer.putInt(model.vertices.size());
+            buffer.putInt(model.textureVertices.size());
+            buffer.putInt(model.normals.size());
+            buffer.putInt(model.polygonVertexOffsets.size());
+            buffer.putInt(model.polygonVertexIndices.size());
+            buffer.putInt(model.polygonTextureVertexOffsets.size());
+            buffer.putInt(model.polygonTextureVertexIndices.size());
+            buffer.putInt(model.polygonNormalOffsets.size());
+            buffer.putInt(model.polygonNormalIndices.size());
+
+            writeBlock(channel, buffer, model.vertices);
+            writeBlock(channel, buffer, model.textureVertices);
+            writeBlock(channel, buffer, model.normals);
+            writeBlock(channel, buffer, model.polygonVertexOffsets);
+            writeBlock(channel, buffer, model.polygonVertexIndices);
+            writeBlock(channel, buffer, model.polygonTextureVertexOffsets);
+            writeBlock(channel, buffer, model.polygonTextureVertexIndices);
+            writeBlock(channel, buffer, model.polygonNormalOffsets);
+            writeBlock(channel, buffer, model.polygonNormalIndices);
+            flush(channel, buffer);
+        }
+    }
+
+    private static void writeBlock(FileChannel channel, ByteBuffer buffer, FloatArray values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (buffer.remaining() < BinaryMeshFormat.ELEMENT_SIZE) {
+                flush(channel, buffer);
+            }
+            buffer.putFloat(values.get(i));
+        }
+    }
+
+    private static void writeBlock(FileChannel channel, ByteBuffer buffer, IntArray values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (buffer.remaining() < BinaryMeshFormat.ELEMENT_SIZE) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(values.get(i));
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.model.PackedModel;
+import com.cgvsu.objreader.ObjReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Прозрачный кэш разобранных OBJ файлов. Рядом с model.obj хранится model.obj.mesh
+// в бинарном формате. В заголовке кэша записаны размер и время изменения OBJ файла, по которым он
+// построен. Если они совпадают с текущими, модель загружается из кэша, иначе OBJ разбирается заново
+// и кэш перезаписывается. Размер и время берутся до разбора, поэтому правка OBJ во время разбора
+// не дает кэшу со старым содержимым выглядеть актуальным
+public class MeshCache {
+    private static final Logger LOGGER = Logger.getLogger(MeshCache.class.getName());
+    private static final String CACHE_SUFFIX = ".mesh";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Загружает модель, используя бинарный кэш, если он актуален
+     * @param objPath путь к OBJ файлу
+     * @return прочитанная модель
+     */
+    public static PackedModel load(Path objPath) throws IOException {
+        Path cachePath = getCachePath(objPath);
+        final BasicFileAttributes source = Files.readAttributes(objPath, BasicFileAttributes.class);
+        final long sourceModifiedTime = source.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (Files.isRegularFile(cachePath)) {
+            try {
+                return BinaryMeshReader.read(cachePath, source.size(), sourceModifiedTime);
+            } catch (IOException e) {
+                // Поврежденный, старый или построенный по другой версии OBJ кэш просто пересобираем
+            }
+        }
+
+        PackedModel model = ObjReader.readPacked(objPath);
+        writeCache(model, cachePath, source.size(), sourceModifiedTime);
+        return model;
+    }
+
+    /**
+     * Возвращает путь к файлу кэша для OBJ файла
+     * @param objPath путь к OBJ файлу
+     * @return путь к бинарному файлу рядом с ним
+     */
+    public static Path getCachePath(Path objPath) {
+        return objPath.resolveSibling(objPath.getFileName() + CACHE_SUFFIX);
+    }
+
+    // Кэш пишется во временный файл и переименовывается, чтобы параллельный запуск
+    // не увидел наполовину записанный файл. У каждого запуска свой временный файл,
+    // иначе два запуска писали бы в один и тот же. Модель уже прочитана, поэтому ошибка
+    // записи кэша только попадает в журнал
+    private static void writeCache(PackedModel model, Path cachePath, long sourceSize, long sourceModifiedTime) {
+        Path tempPath = null;
+        try {
+            tempPath = Files.createTempFile(cachePath.toAbsolutePath().getParent(), cachePath.getFileName().toString(), TEMP_SUFFIX);
+            BinaryMeshWriter.write(model, tempPath, sourceSize, sourceModifiedTime);
+            Files.move(tempPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException deleteException) {
+                    e.addSuppressed(deleteException);
+                }
+            }
+            LOGGER.log(Level.WARNING, "Couldn't write mesh cache: " + cachePath, e);
+        }
+    }
+}
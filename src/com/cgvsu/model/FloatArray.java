@@ -0,0 +1,139 @@
+package com.cgvsu.model;
+
+import java.nio.FloatBuffer;
+
+// Растущий массив float без упаковки в объекты. Данные лежат в FloatBuffer,
+// доступ идет по абсолютным индексам
+public class FloatArray {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final MeshStorage storage;
+    private FloatBuffer buffer;
+    private int size;
+
+    public FloatArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FloatArray(int capacity) {
+        this(MeshStorage.HEAP, capacity);
+    }
+
+    public FloatArray(MeshStorage storage) {
+        this(storage, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param storage откуда брать память под данные, в том числе при росте массива
+     * @param capacity начальная вместимость
+     */
+    public FloatArray(MeshStorage storage, int capacity) {
+        this.storage = storage;
+        this.buffer = storage.allocateFloats(Math.max(capacity, 1));
+    }
+
+    /**
+     * Оборачивает уже заполненный буфер, размер массива равен limit буфера
+     * @param buffer буфер с данными
+     */
+    public FloatArray(FloatBuffer buffer) {
+        this.storage = MeshStorage.HEAP;
+        this.buffer = buffer;
+        this.size = buffer.limit();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float get(int index) {
+        return buffer.get(index);
+    }
+
+    public void set(int index, float value) {
+        ensureWritable();
+        buffer.put(index, value);
+    }
+
+    public void add(float value) {
+        ensureCapacity(size + 1);
+        buffer.put(size++, value);
+    }
+
+    public void add(float x, float y) {
+        ensureCapacity(size + 2);
+        buffer.put(size, x);
+        buffer.put(size + 1, y);
+        size += 2;
+    }
+
+    public void add(float x, float y, float z) {
+        ensureCapacity(size + 3);
+        buffer.put(size, x);
+        buffer.put(size + 1, y);
+        buffer.put(size + 2, z);
+        size += 3;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Отбрасывает элементы после первых size
+     * @param size новый размер, не больше текущего
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > this.size) {
+            throw new IndexOutOfBoundsException("Size: " + size + ", current size: " + this.size);
+        }
+        this.size = size;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= buffer.capacity()) {
+            ensureWritable();
+            return;
+        }
+        // Удвоение не выходит за предел хранилища, а запрос больше предела хранилище отклонит само
+        final int maxCapacity = storage.getMaxCapacity(Float.BYTES);
+        reallocate((int) Math.max(capacity, Math.min(maxCapacity, buffer.capacity() * 2L)));
+    }
+
+    // Буфер только для чтения, например отображенный файл кэша, копируется при первой записи
+    private void ensureWritable() {
+        if (buffer.isReadOnly()) {
+            reallocate(buffer.capacity());
+        }
+    }
+
+    private void reallocate(int capacity) {
+        FloatBuffer copy = storage.allocateFloats(capacity);
+        copy.put(buffer.duplicate().position(0).limit(size));
+        buffer = copy;
+    }
+
+    /**
+     * Возвращает буфер с данными. Значимы только первые size() элементов,
+     * после добавления элементов буфер может быть заменен новым. Буфер может быть только для чтения
+     * @return буфер с данными
+     */
+    public FloatBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Возвращает буфер, в который можно писать. Буфер только для чтения сначала копируется
+     * @return буфер с данными
+     */
+    public FloatBuffer writableBuffer() {
+        ensureWritable();
+        return buffer;
+    }
+
+    public float[] toArray() {
+        float[] result = new float[size];
+        buffer.duplicate().position(0).limit(size).get(result);
+        return result;
+    }
+}
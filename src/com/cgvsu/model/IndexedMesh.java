@@ -0,0 +1,104 @@
+package com.cgvsu.model;
+
+// Модель, готовая для отрисовки: только треугольники и один общий индекс на вершину.
+// Каждая уникальная тройка v/vt/vn из исходной модели становится одной вершиной сетки,
+// а индексы треугольников ссылаются на эти вершины
+public class IndexedMesh {
+    /**
+     * Индекс, которым отмечается отсутствующая текстурная вершина или нормаль
+     */
+    public static final int NO_INDEX = -1;
+
+    private final float[] positions;
+    private final float[] textureVertices;
+    private final float[] normals;
+    private final int[] sourceVertexIndices;
+    private final int[] sourceTextureVertexIndices;
+    private final int[] sourceNormalIndices;
+    private final int[] triangleIndices;
+    private final int[] trianglePolygonIndices;
+
+    IndexedMesh(float[] positions, float[] textureVertices, float[] normals,
+                int[] sourceVertexIndices, int[] sourceTextureVertexIndices, int[] sourceNormalIndices,
+                int[] triangleIndices, int[] trianglePolygonIndices) {
+        this.positions = positions;
+        this.textureVertices = textureVertices;
+        this.normals = normals;
+        this.sourceVertexIndices = sourceVertexIndices;
+        this.sourceTextureVertexIndices = sourceTextureVertexIndices;
+        this.sourceNormalIndices = sourceNormalIndices;
+        this.triangleIndices = triangleIndices;
+        this.trianglePolygonIndices = trianglePolygonIndices;
+    }
+
+    // Та же сетка с новыми значениями вершин: разбиение и индексы общие с этой сеткой
+    IndexedMesh withAttributes(float[] positions, float[] textureVertices, float[] normals) {
+        return new IndexedMesh(positions, textureVertices, normals, sourceVertexIndices, sourceTextureVertexIndices,
+                sourceNormalIndices, triangleIndices, trianglePolygonIndices);
+    }
+
+    public int getVertexCount() {
+        return sourceVertexIndices.length;
+    }
+
+    public int getTriangleCount() {
+        return triangleIndices.length / 3;
+    }
+
+    /**
+     * Координаты вершин, по три на вершину
+     */
+    public float[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Текстурные координаты, по две на вершину. Пустой массив, если в модели нет текстурных вершин.
+     * Вершинам без текстурного индекса достаются нули
+     */
+    public float[] getTextureVertices() {
+        return textureVertices;
+    }
+
+    /**
+     * Нормали, по три на вершину. Пустой массив, если в модели нет нормалей
+     */
+    public float[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * Индексы вершин треугольников, по три на треугольник
+     */
+    public int[] getTriangleIndices() {
+        return triangleIndices;
+    }
+
+    /**
+     * Номер полигона исходной модели, из которого получен каждый треугольник
+     */
+    public int[] getTrianglePolygonIndices() {
+        return trianglePolygonIndices;
+    }
+
+    /**
+     * Номер вершины исходной модели для каждой вершины сетки
+     */
+    public int[] getSourceVertexIndices() {
+        return sourceVertexIndices;
+    }
+
+    /**
+     * Номер текстурной вершины исходной модели для каждой вершины сетки или NO_INDEX
+     */
+    public int[] getSourceTextureVertexIndices() {
+        return sourceTextureVertexIndices;
+    }
+
+    /**
+     * Номер нормали исходной модели для каждой вершины сетки или NO_INDEX
+     */
+    public int[] getSourceNormalIndices() {
+        return sourceNormalIndices;
+    }
+}
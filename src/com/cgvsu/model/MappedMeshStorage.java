@@ -0,0 +1,53 @@
+package com.cgvsu.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Каждый буфер - отдельный временный файл. Файл удаляется при закрытии канала,
+// а отображение остается действительным, пока жив сам буфер
+class MappedMeshStorage implements MeshStorage {
+    private static final String TEMP_FILE_PREFIX = "mesh";
+    private static final String TEMP_FILE_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    MappedMeshStorage(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public FloatBuffer allocateFloats(int capacity) {
+        return map((long) capacity * Float.BYTES).asFloatBuffer();
+    }
+
+    @Override
+    public IntBuffer allocateInts(int capacity) {
+        return map((long) capacity * Integer.BYTES).asIntBuffer();
+    }
+
+    private MappedByteBuffer map(long size) {
+        // Одно отображение в Java 17 ограничено 2 ГБ
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mapped buffer can't be larger than 2 GB, requested " + size + " bytes");
+        }
+        try {
+            Path file = Files.createTempFile(directory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, 1));
+                buffer.order(ByteOrder.nativeOrder());
+                return buffer;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't create mapped buffer in " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.cgvsu.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Перестановка полигонов и вершин для локальности доступа к памяти. Сначала полигоны упорядочиваются
+// алгоритмом Tipsify (Sander, Nehab, Barczak, 2007): он обходит сетку веерами вокруг вершин, которые
+// еще лежат в модели кэша вершин, поэтому соседние полигоны ссылаются на близкие вершины.
+// Затем вершины, текстурные вершины и нормали перенумеровываются в порядке первого использования,
+// и обход полигонов читает их массивы почти последовательно
+public class MeshReorderer {
+    /**
+     * Размер модели кэша вершин по умолчанию
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    private static final int NOT_USED = -1;
+
+    /**
+     * Переставляет полигоны и вершины модели с размером кэша по умолчанию
+     * @param model модель, изменяется на месте
+     */
+    public static void optimize(Model model) {
+        reorderPolygons(model, DEFAULT_CACHE_SIZE);
+        reorderVertices(model);
+    }
+
+    public static void optimize(PackedModel model) {
+        reorderPolygons(model, DEFAULT_CACHE_SIZE);
+        reorderVertices(model);
+    }
+
+    /**
+     * Переставляет полигоны модели для повторного использования кэша вершин. Сами полигоны не меняются
+     * @param model модель, изменяется на месте
+     * @param cacheSize размер модели кэша вершин
+     */
+    public static void reorderPolygons(Model model, int cacheSize) {
+        final int polygonCount = model.polygons.size();
+        final int[] offsets = new int[polygonCount + 1];
+        for (int i = 0; i < polygonCount; i++) {
+            offsets[i + 1] = offsets[i] + model.polygons.get(i).getVertexIndices().size();
+        }
+        final int[] indices = new int[offsets[polygonCount]];
+        for (int i = 0; i < polygonCount; i++) {
+            ArrayList<Integer> vertexIndices = model.polygons.get(i).getVertexIndices();
+            for (int j = 0; j < vertexIndices.size(); j++) {
+                indices[offsets[i] + j] = vertexIndices.get(j);
+            }
+        }
+
+        final int[] order = buildPolygonOrder(offsets, indices, model.vertices.size(), cacheSize);
+        ArrayList<Polygon> polygons = new ArrayList<>(polygonCount);
+        for (int polygonIndex : order) {
+            polygons.add(model.polygons.get(polygonIndex));
+        }
+        model.polygons = polygons;
+        model.markModified();
+    }
+
+    public static void reorderPolygons(PackedModel model, int cacheSize) {
+        final int[] order = buildPolygonOrder(model.polygonVertexOffsets.toArray(), model.polygonVertexIndices.toArray(),
+                model.getVertexCount(), cacheSize);
+        permutePolygons(model.polygonVertexOffsets, model.polygonVertexIndices, order);
+        permutePolygons(model.polygonTextureVertexOffsets, model.polygonTextureVertexIndices, order);
+        permutePolygons(model.polygonNormalOffsets, model.polygonNormalIndices, order);
+    }
+
+    /**
+     * Перенумеровывает вершины, текстурные вершины и нормали в порядке их первого использования полигонами.
+     * Неиспользуемые элементы переносятся в конец в прежнем порядке
+     * @param model модель, изменяется на месте
+     */
+    public static void reorderVertices(Model model) {
+        final int[] vertexMap = newMap(model.vertices.size());
+        final int[] textureVertexMap = newMap(model.textureVertices.size());
+        final int[] normalMap = newMap(model.normals.size());
+        int vertexCount = 0;
+        int textureVertexCount = 0;
+        int normalCount = 0;
+        for (Polygon polygon : model.polygons) {
+            vertexCount = remap(polygon.getVertexIndices(), vertexMap, vertexCount);
+            textureVertexCount = remap(polygon.getTextureVertexIndices(), textureVertexMap, textureVertexCount);
+            normalCount = remap(polygon.getNormalIndices(), normalMap, normalCount);
+        }
+        completeMap(vertexMap, vertexCount);
+        completeMap(textureVertexMap, textureVertexCount);
+        completeMap(normalMap, normalCount);
+
+        model.vertices = permute(model.vertices, vertexMap);
+        model.textureVertices = permute(model.textureVertices, textureVertexMap);
+        model.normals = permute(model.normals, normalMap);
+        model.markModified();
+    }
+
+    public static void reorderVertices(PackedModel model) {
+        reorderElements(model.vertices, PackedModel.VERTEX_STRIDE, model.polygonVertexIndices);
+        reorderElements(model.textureVertices, PackedModel.TEXTURE_VERTEX_STRIDE, model.polygonTextureVertexIndices);
+        reorderElements(model.normals, PackedModel.NORMAL_STRIDE, model.polygonNormalIndices);
+    }
+
+    /**
+     * Считает среднее число промахов FIFO-кэша вершин на треугольник (ACMR). Полигон из n вершин
+     * считается за n - 2 треугольника. Чем меньше, тем лучше; для больших сеток предел около 0.5
+     * @param model модель
+     * @param cacheSize размер кэша
+     * @return число промахов на треугольник
+     */
+    public static float getAverageCacheMissRatio(PackedModel model, int cacheSize) {
+        final int[] timestamps = new int[model.getVertexCount()];
+        Arrays.fill(timestamps, Integer.MIN_VALUE / 2);
+        int time = 0;
+        long triangleCount = 0;
+        for (int polygonIndex = 0; polygonIndex < model.getPolygonCount(); polygonIndex++) {
+            final int start = model.getPolygonVertexStart(polygonIndex);
+            final int end = model.getPolygonVertexEnd(polygonIndex);
+            for (int i = start; i < end; i++) {
+                final int vertexIndex = model.polygonVertexIndices.get(i);
+                // В FIFO-кэше вершина вытесняется через cacheSize промахов после того, как в него попала
+                if (time - timestamps[vertexIndex] >= cacheSize) {
+                    timestamps[vertexIndex] = time++;
+                }
+            }
+            triangleCount += Math.max(0, end - start - 2);
+        }
+        return triangleCount == 0 ? 0 : (float) time / triangleCount;
+    }
+
+    /**
+     * Строит порядок полигонов алгоритмом Tipsify
+     * @param offsets смещения полигонов в массиве индексов (CSR)
+     * @param indices индексы вершин полигонов
+     * @param vertexCount количество вершин
+     * @param cacheSize размер модели кэша вершин
+     * @return номера полигонов в новом порядке
+     */
+    static int[] buildPolygonOrder(int[] offsets, int[] indices, int vertexCount, int cacheSize) {
+        if (cacheSize < 3) {
+            throw new IllegalArgumentException("Кэш вершин должен вмещать хотя бы треугольник");
+        }
+        final int polygonCount = offsets.length - 1;
+
+        // Полигоны каждой вершины в формате CSR. liveCounts - сколько полигонов вершины еще не выведено
+        final int[] liveCounts = new int[vertexCount];
+        for (int index : indices) {
+            if (index >= 0 && index < vertexCount) {
+                liveCounts[index]++;
+            }
+        }
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        for (int i = 0; i < vertexCount; i++) {
+            adjacencyOffsets[i + 1] = adjacencyOffsets[i] + liveCounts[i];
+        }
+        final int[] adjacency = new int[adjacencyOffsets[vertexCount]];
+        final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+        for (int polygonIndex = 0; polygonIndex < polygonCount; polygonIndex++) {
+            for (int i = offsets[polygonIndex]; i < offsets[polygonIndex + 1]; i++) {
+                final int index = indices[i];
+                if (index >= 0 && index < vertexCount) {
+                    adjacency[fill[index]++] = polygonIndex;
+                }
+            }
+        }
+
+        final int[] order = new int[polygonCount];
+        int emittedCount = 0;
+        final boolean[] emitted = new boolean[polygonCount];
+        // Время попадания вершины в кэш. Вершина в кэше, пока с тех пор было не больше cacheSize промахов
+        final int[] cacheTimes = new int[vertexCount];
+        int time = cacheSize + 1;
+        // Вершины недавно выведенных полигонов: отсюда берется следующий веер, когда у кандидатов кончились полигоны
+        final IntArray deadEndStack = new IntArray();
+        final IntArray candidates = new IntArray();
+        int cursor = 0;
+
+        int fanVertex = vertexCount > 0 ? 0 : NOT_USED;
+        while (fanVertex != NOT_USED) {
+            candidates.clear();
+            for (int a = adjacencyOffsets[fanVertex]; a < adjacencyOffsets[fanVertex + 1]; a++) {
+                final int polygonIndex = adjacency[a];
+                if (emitted[polygonIndex]) {
+                    continue;
+                }
+                for (int i = offsets[polygonIndex]; i < offsets[polygonIndex + 1]; i++) {
+                    final int index = indices[i];
+                    if (index < 0 || index >= vertexCount) {
+                        continue;
+                    }
+                    deadEndStack.add(index);
+                    candidates.add(index);
+                    liveCounts[index]--;
+                    if (time - cacheTimes[index] > cacheSize) {
+                        cacheTimes[index] = time++;
+                    }
+                }
+                emitted[polygonIndex] = true;
+                order[emittedCount++] = polygonIndex;
+            }
+
+            // Следующий веер - кандидат, который дольше всех пробудет в кэше, если его оставшиеся
+            // полигоны (около двух новых вершин на каждый) в кэш поместятся
+            fanVertex = NOT_USED;
+            int bestPriority = -1;
+            for (int c = 0; c < candidates.size(); c++) {
+                final int candidate = candidates.get(c);
+                if (liveCounts[candidate] <= 0) {
+                    continue;
+                }
+                int priority = 0;
+                if (time - cacheTimes[candidate] + 2 * liveCounts[candidate] <= cacheSize) {
+                    priority = time - cacheTimes[candidate];
+                }
+                if (priority > bestPriority) {
+                    bestPriority = priority;
+                    fanVertex = candidate;
+                }
+            }
+
+            if (fanVertex == NOT_USED) {
+                while (deadEndStack.size() > 0 && fanVertex == NOT_USED) {
+                    final int vertex = deadEndStack.get(deadEndStack.size() - 1);
+                    deadEndStack.truncate(deadEndStack.size() - 1);
+                    if (liveCounts[vertex] > 0) {
+                        fanVertex = vertex;
+                    }
+                }
+                while (fanVertex == NOT_USED && cursor < vertexCount) {
+                    if (liveCounts[cursor] > 0) {
+                        fanVertex = cursor;
+                    }
+                    cursor++;
+                }
+            }
+        }
+
+        // Полигоны без единой допустимой вершины обход не находит, оставляем их в конце
+        for (int polygonIndex = 0; polygonIndex < polygonCount && emittedCount < polygonCount; polygonIndex++) {
+            if (!emitted[polygonIndex]) {
+                order[emittedCount++] = polygonIndex;
+            }
+        }
+        return order;
+    }
+
+    private static void permutePolygons(IntArray offsets, IntArray indices, int[] order) {
+        final int[] oldOffsets = offsets.toArray();
+        final int[] oldIndices = indices.toArray();
+        int position = 0;
+        for (int i = 0; i < order.length; i++) {
+            final int polygonIndex = order[i];
+            for (int j = oldOffsets[polygonIndex]; j < oldOffsets[polygonIndex + 1]; j++) {
+                indices.set(position++, oldIndices[j]);
+            }
+            offsets.set(i + 1, position);
+        }
+    }
+
+    private static void reorderElements(FloatArray elements, int stride, IntArray indices) {
+        final int elementCount = elements.size() / stride;
+        final int[] map = newMap(elementCount);
+        int mappedCount = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            final int index = indices.get(i);
+            if (index >= 0 && index < elementCount) {
+                if (map[index] == NOT_USED) {
+                    map[index] = mappedCount++;
+                }
+                indices.set(i, map[index]);
+            }
+        }
+        completeMap(map, mappedCount);
+
+        final float[] oldElements = elements.toArray();
+        for (int i = 0; i < elementCount; i++) {
+            final int from = i * stride;
+            final int to = map[i] * stride;
+            for (int k = 0; k < stride; k++) {
+                elements.set(to + k, oldElements[from + k]);
+            }
+        }
+    }
+
+    private static int[] newMap(int size) {
+        final int[] map = new int[size];
+        Arrays.fill(map, NOT_USED);
+        return map;
+    }
+
+    // Назначает номера элементам полигона при первой встрече и переписывает индексы полигона
+    private static int remap(ArrayList<Integer> indices, int[] map, int mappedCount) {
+        for (int i = 0; i < indices.size(); i++) {
+            final int index = indices.get(i);
+            if (index >= 0 && index < map.length) {
+                if (map[index] == NOT_USED) {
+                    map[index] = mappedCount++;
+                }
+                indices.set(i, map[index]);
+            }
+        }
+        return mappedCount;
+    }
+
+    private static void completeMap(int[] map, int mappedCount) {
+        for (int i = 0; i < map.length; i++) {
+            if (map[i] == NOT_USED) {
+                map[i] = mappedCount++;
+            }
+        }
+    }
+
+    private static <T> ArrayList<T> permute(ArrayList<T> elements, int[] map) {
+        ArrayList<T> result = new ArrayList<>(elements);
+        for (int i = 0; i < map.length; i++) {
+            result.set(map[i], elements.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,546 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Упрощение сетки по квадрикам ошибки (Garland, Heckbert, 1997). Полигоны разбиваются на треугольники,
+// каждая вершина накапливает квадрику плоскостей соседних граней, а ребра стягиваются по очереди
+// с приоритетом по ошибке. Стягивание переносит одну вершину ребра в другую (half-edge collapse), поэтому новые
+// координаты, текстурные вершины и нормали не появляются. Вершины на границе сетки и на швах, где у одной
+// позиции несколько разных пар vt/vn, не сдвигаются никогда, так что границы и швы сохраняются точно.
+// Очередь не обновляется на месте: у вершины есть номер версии, и устаревшие ребра просто пропускаются
+public class MeshSimplifier {
+    private static final int NONE = -1;
+
+    /**
+     * Упрощает модель до заданного количества треугольников
+     * @param model исходная модель, не изменяется
+     * @param targetTriangleCount желаемое количество треугольников
+     * @return новая треугольная модель. Треугольников может остаться больше, если допустимые стягивания кончились
+     */
+    public static Model simplify(Model model, int targetTriangleCount) {
+        return buildLodChain(model, targetTriangleCount).get(0);
+    }
+
+    /**
+     * Строит цепочку уровней детализации. Каждый следующий уровень получается продолжением упрощения предыдущего,
+     * поэтому вся цепочка стоит почти как одно упрощение до самого грубого уровня
+     * @param model исходная модель, не изменяется
+     * @param targetTriangleCounts желаемые количества треугольников по убыванию
+     * @return независимые модели в том же порядке
+     */
+    public static List<Model> buildLodChain(Model model, int... targetTriangleCounts) {
+        for (int i = 1; i < targetTriangleCounts.length; i++) {
+            if (targetTriangleCounts[i] > targetTriangleCounts[i - 1]) {
+                throw new IllegalArgumentException("Количества треугольников должны идти по убыванию");
+            }
+        }
+        final Simplifier simplifier = new Simplifier(model, Triangulator.getIndexedMesh(model));
+        final List<Model> result = new ArrayList<>(targetTriangleCounts.length);
+        for (int targetTriangleCount : targetTriangleCounts) {
+            simplifier.simplify(targetTriangleCount);
+            result.add(simplifier.toModel());
+        }
+        return result;
+    }
+
+    private static class Simplifier {
+        private final Model model;
+        private final IndexedMesh mesh;
+        private final int vertexCount;
+        private final float[] positions;
+        // Квадрика каждой вершины: a2, ab, ac, ad, b2, bc, bd, c2, cd, d2 симметричной матрицы 4x4
+        private final double[] quadrics;
+        // Вершины треугольников (номера позиций) и вершины индексной сетки в углах, по которым берутся vt и vn
+        private final int[] triangles;
+        private final int[] cornerMeshVertices;
+        private final boolean[] removedTriangles;
+        private int triangleCount;
+
+        // Единственная вершина индексной сетки у позиции или NONE у шва
+        private final int[] meshVertexOfPosition;
+        private final boolean[] locked;
+        private final boolean[] removedVertices;
+        private final int[] versions;
+
+        // Треугольники каждой вершины. Списки только растут: удаленные и переставшие касаться вершины
+        // треугольники пропускаются при обходе
+        private final int[][] vertexTriangles;
+        private final int[] vertexTriangleCounts;
+
+        private final EdgeHeap heap = new EdgeHeap();
+        private final int[] marks;
+        private int mark;
+        private int[] neighbors = new int[16];
+        private int neighborCount;
+
+        private Simplifier(Model model, IndexedMesh mesh) {
+            this.model = model;
+            this.mesh = mesh;
+            vertexCount = model.vertices.size();
+            positions = new float[vertexCount * 3];
+            for (int i = 0; i < vertexCount; i++) {
+                Vector3f vertex = model.vertices.get(i);
+                positions[i * 3] = vertex.getX();
+                positions[i * 3 + 1] = vertex.getY();
+                positions[i * 3 + 2] = vertex.getZ();
+            }
+
+            cornerMeshVertices = mesh.getTriangleIndices().clone();
+            triangles = new int[cornerMeshVertices.length];
+            final int[] sourceVertexIndices = mesh.getSourceVertexIndices();
+            meshVertexOfPosition = new int[vertexCount];
+            Arrays.fill(meshVertexOfPosition, NONE);
+            locked = new boolean[vertexCount];
+            for (int meshVertex = 0; meshVertex < sourceVertexIndices.length; meshVertex++) {
+                final int position = sourceVertexIndices[meshVertex];
+                if (meshVertexOfPosition[position] == NONE) {
+                    meshVertexOfPosition[position] = meshVertex;
+                } else {
+                    locked[position] = true;
+                }
+            }
+            for (int position = 0; position < vertexCount; position++) {
+                if (locked[position]) {
+                    meshVertexOfPosition[position] = NONE;
+                }
+            }
+
+            triangleCount = mesh.getTriangleCount();
+            removedTriangles = new boolean[triangleCount];
+            vertexTriangleCounts = new int[vertexCount];
+            for (int i = 0; i < triangles.length; i++) {
+                triangles[i] = sourceVertexIndices[cornerMeshVertices[i]];
+                vertexTriangleCounts[triangles[i]]++;
+            }
+            vertexTriangles = new int[vertexCount][];
+            for (int i = 0; i < vertexCount; i++) {
+                vertexTriangles[i] = new int[vertexTriangleCounts[i]];
+                vertexTriangleCounts[i] = 0;
+            }
+            quadrics = new double[vertexCount * 10];
+            for (int triangle = 0; triangle < triangleCount; triangle++) {
+                for (int k = 0; k < 3; k++) {
+                    final int vertex = triangles[triangle * 3 + k];
+                    vertexTriangles[vertex][vertexTriangleCounts[vertex]++] = triangle;
+                }
+                addPlaneQuadric(triangle);
+            }
+
+            removedVertices = new boolean[vertexCount];
+            versions = new int[vertexCount];
+            marks = new int[vertexCount];
+
+            // Ребро, которое принадлежит одному треугольнику, лежит на границе, а больше чем двум - неразбиваемое.
+            // Концы таких ребер закрепляются
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                collectNeighbors(vertex, true);
+                final int[] sorted = neighbors;
+                Arrays.sort(sorted, 0, neighborCount);
+                for (int i = 0; i < neighborCount; ) {
+                    int j = i;
+                    while (j < neighborCount && sorted[j] == sorted[i]) {
+                        j++;
+                    }
+                    if (j - i != 2) {
+                        locked[vertex] = true;
+                        locked[sorted[i]] = true;
+                    }
+                    i = j;
+                }
+            }
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                pushEdges(vertex, true);
+            }
+        }
+
+        private void simplify(int targetTriangleCount) {
+            while (triangleCount > targetTriangleCount && heap.size() > 0) {
+                final int edge = heap.top();
+                final int from = heap.from(edge);
+                final int to = heap.to(edge);
+                final boolean current = heap.fromVersion(edge) == versions[from] && heap.toVersion(edge) == versions[to];
+                heap.pop();
+                if (current && !removedVertices[from] && !removedVertices[to] && canCollapse(from, to)) {
+                    collapse(from, to);
+                }
+            }
+        }
+
+        private void addPlaneQuadric(int triangle) {
+            final int a = triangles[triangle * 3] * 3;
+            final int b = triangles[triangle * 3 + 1] * 3;
+            final int c = triangles[triangle * 3 + 2] * 3;
+            final double abX = positions[b] - positions[a], abY = positions[b + 1] - positions[a + 1], abZ = positions[b + 2] - positions[a + 2];
+            final double acX = positions[c] - positions[a], acY = positions[c + 1] - positions[a + 1], acZ = positions[c + 2] - positions[a + 2];
+            double nX = abY * acZ - abZ * acY;
+            double nY = abZ * acX - abX * acZ;
+            double nZ = abX * acY - abY * acX;
+            final double length = Math.sqrt(nX * nX + nY * nY + nZ * nZ);
+            if (length == 0) {
+                return;
+            }
+            nX /= length;
+            nY /= length;
+            nZ /= length;
+            final double d = -(nX * positions[a] + nY * positions[a + 1] + nZ * positions[a + 2]);
+            // Вес - площадь грани, чтобы мелкие треугольники не перевешивали крупные
+            final double weight = length / 2;
+            for (int k = 0; k < 3; k++) {
+                final int offset = triangles[triangle * 3 + k] * 10;
+                quadrics[offset] += weight * nX * nX;
+                quadrics[offset + 1] += weight * nX * nY;
+                quadrics[offset + 2] += weight * nX * nZ;
+                quadrics[offset + 3] += weight * nX * d;
+                quadrics[offset + 4] += weight * nY * nY;
+                quadrics[offset + 5] += weight * nY * nZ;
+                quadrics[offset + 6] += weight * nY * d;
+                quadrics[offset + 7] += weight * nZ * nZ;
+                quadrics[offset + 8] += weight * nZ * d;
+                quadrics[offset + 9] += weight * d * d;
+            }
+        }
+
+        // Ошибка суммы квадрик двух вершин в позиции вершины target
+        private double error(int first, int second, int target) {
+            final double[] q = quadrics;
+            final int i = first * 10;
+            final int j = second * 10;
+            final double x = positions[target * 3], y = positions[target * 3 + 1], z = positions[target * 3 + 2];
+            return (q[i] + q[j]) * x * x + 2 * (q[i + 1] + q[j + 1]) * x * y + 2 * (q[i + 2] + q[j + 2]) * x * z
+                    + 2 * (q[i + 3] + q[j + 3]) * x + (q[i + 4] + q[j + 4]) * y * y + 2 * (q[i + 5] + q[j + 5]) * y * z
+                    + 2 * (q[i + 6] + q[j + 6]) * y + (q[i + 7] + q[j + 7]) * z * z + 2 * (q[i + 8] + q[j + 8]) * z
+                    + (q[i + 9] + q[j + 9]);
+        }
+
+        private boolean canMove(int from, int to) {
+            return !locked[from] && meshVertexOfPosition[to] != NONE;
+        }
+
+        // Кладет в очередь ребра вершины с соседями. При начальном заполнении каждое ребро кладется один раз
+        private void pushEdges(int vertex, boolean onlyGreaterNeighbors) {
+            collectNeighbors(vertex, false);
+            for (int i = 0; i < neighborCount; i++) {
+                final int neighbor = neighbors[i];
+                if (onlyGreaterNeighbors && neighbor < vertex) {
+                    continue;
+                }
+                final boolean forward = canMove(vertex, neighbor);
+                final boolean backward = canMove(neighbor, vertex);
+                if (!forward && !backward) {
+                    continue;
+                }
+                final double forwardError = forward ? error(vertex, neighbor, neighbor) : Double.POSITIVE_INFINITY;
+                final double backwardError = backward ? error(vertex, neighbor, vertex) : Double.POSITIVE_INFINITY;
+                if (forwardError <= backwardError) {
+                    heap.push(forwardError, vertex, neighbor, versions[vertex], versions[neighbor]);
+                } else {
+                    heap.push(backwardError, neighbor, vertex, versions[neighbor], versions[vertex]);
+                }
+            }
+        }
+
+        // Собирает соседей вершины по живым треугольникам. С повторами - по одному на каждое ребро каждого треугольника
+        private void collectNeighbors(int vertex, boolean withRepeats) {
+            neighborCount = 0;
+            mark++;
+            for (int i = 0; i < vertexTriangleCounts[vertex]; i++) {
+                final int triangle = vertexTriangles[vertex][i];
+                if (!touches(triangle, vertex)) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    final int other = triangles[triangle * 3 + k];
+                    if (other != vertex && (withRepeats || marks[other] != mark)) {
+                        marks[other] = mark;
+                        if (neighborCount == neighbors.length) {
+                            neighbors = Arrays.copyOf(neighbors, neighborCount * 2);
+                        }
+                        neighbors[neighborCount++] = other;
+                    }
+                }
+            }
+        }
+
+        private boolean touches(int triangle, int vertex) {
+            return !removedTriangles[triangle] && (triangles[triangle * 3] == vertex
+                    || triangles[triangle * 3 + 1] == vertex || triangles[triangle * 3 + 2] == vertex);
+        }
+
+        private boolean canCollapse(int from, int to) {
+            if (!canMove(from, to)) {
+                return false;
+            }
+            // Условие связности: общих соседей у концов ребра столько же, сколько треугольников на ребре,
+            // иначе стягивание склеит разные части поверхности
+            collectNeighbors(from, false);
+            final int neighborMark = mark;
+            int sharedTriangles = 0;
+            for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+                final int triangle = vertexTriangles[from][i];
+                if (touches(triangle, from) && touches(triangle, to)) {
+                    sharedTriangles++;
+                }
+            }
+            int commonNeighbors = 0;
+            for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+                final int triangle = vertexTriangles[to][i];
+                if (!touches(triangle, to)) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    final int other = triangles[triangle * 3 + k];
+                    if (other != to && other != from && marks[other] == neighborMark) {
+                        commonNeighbors++;
+                        marks[other] = neighborMark - 1;
+                    }
+                }
+            }
+            if (commonNeighbors != sharedTriangles) {
+                return false;
+            }
+
+            // Ни один оставшийся треугольник не должен перевернуться
+            for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+                final int triangle = vertexTriangles[from][i];
+                if (!touches(triangle, from) || touches(triangle, to)) {
+                    continue;
+                }
+                if (flips(triangle, from, to)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean flips(int triangle, int from, int to) {
+            final int a = triangles[triangle * 3] * 3;
+            final int b = triangles[triangle * 3 + 1] * 3;
+            final int c = triangles[triangle * 3 + 2] * 3;
+            final double abX = positions[b] - positions[a], abY = positions[b + 1] - positions[a + 1], abZ = positions[b + 2] - positions[a + 2];
+            final double acX = positions[c] - positions[a], acY = positions[c + 1] - positions[a + 1], acZ = positions[c + 2] - positions[a + 2];
+            final double beforeX = abY * acZ - abZ * acY;
+            final double beforeY = abZ * acX - abX * acZ;
+            final double beforeZ = abX * acY - abY * acX;
+
+            final int movedA = a == from * 3 ? to * 3 : a;
+            final int movedB = b == from * 3 ? to * 3 : b;
+            final int movedC = c == from * 3 ? to * 3 : c;
+            final double movedAbX = positions[movedB] - positions[movedA];
+            final double movedAbY = positions[movedB + 1] - positions[movedA + 1];
+            final double movedAbZ = positions[movedB + 2] - positions[movedA + 2];
+            final double movedAcX = positions[movedC] - positions[movedA];
+            final double movedAcY = positions[movedC + 1] - positions[movedA + 1];
+            final double movedAcZ = positions[movedC + 2] - positions[movedA + 2];
+            final double afterX = movedAbY * movedAcZ - movedAbZ * movedAcY;
+            final double afterY = movedAbZ * movedAcX - movedAbX * movedAcZ;
+            final double afterZ = movedAbX * movedAcY - movedAbY * movedAcX;
+            return beforeX * afterX + beforeY * afterY + beforeZ * afterZ <= 0;
+        }
+
+        private void collapse(int from, int to) {
+            final int toMeshVertex = meshVertexOfPosition[to];
+            for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+                final int triangle = vertexTriangles[from][i];
+                if (!touches(triangle, from)) {
+                    continue;
+                }
+                if (touches(triangle, to)) {
+                    removedTriangles[triangle] = true;
+                    triangleCount--;
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    if (triangles[triangle * 3 + k] == from) {
+                        triangles[triangle * 3 + k] = to;
+                        cornerMeshVertices[triangle * 3 + k] = toMeshVertex;
+                    }
+                }
+                addTriangle(to, triangle);
+            }
+            for (int k = 0; k < 10; k++) {
+                quadrics[to * 10 + k] += quadrics[from * 10 + k];
+            }
+            removedVertices[from] = true;
+            versions[from]++;
+            versions[to]++;
+            pushEdges(to, false);
+        }
+
+        private void addTriangle(int vertex, int triangle) {
+            if (vertexTriangleCounts[vertex] == vertexTriangles[vertex].length) {
+                vertexTriangles[vertex] = Arrays.copyOf(vertexTriangles[vertex], Math.max(4, vertexTriangleCounts[vertex] * 2));
+            }
+            vertexTriangles[vertex][vertexTriangleCounts[vertex]++] = triangle;
+        }
+
+        // Собирает модель из оставшихся треугольников. Неиспользуемые вершины, текстурные вершины и нормали отбрасываются
+        private Model toModel() {
+            final int[] sourceTextureVertexIndices = mesh.getSourceTextureVertexIndices();
+            final int[] sourceNormalIndices = mesh.getSourceNormalIndices();
+            final int[] vertexMap = newMap(vertexCount);
+            final int[] textureVertexMap = newMap(model.textureVertices.size());
+            final int[] normalMap = newMap(model.normals.size());
+
+            Model result = new Model();
+            for (int triangle = 0; triangle < removedTriangles.length; triangle++) {
+                if (removedTriangles[triangle]) {
+                    continue;
+                }
+                boolean hasTextures = true;
+                boolean hasNormals = true;
+                for (int k = 0; k < 3; k++) {
+                    hasTextures &= sourceTextureVertexIndices[cornerMeshVertices[triangle * 3 + k]] != IndexedMesh.NO_INDEX;
+                    hasNormals &= sourceNormalIndices[cornerMeshVertices[triangle * 3 + k]] != IndexedMesh.NO_INDEX;
+                }
+
+                ArrayList<Integer> vertexIndices = new ArrayList<>(3);
+                ArrayList<Integer> textureVertexIndices = new ArrayList<>(hasTextures ? 3 : 0);
+                ArrayList<Integer> normalIndices = new ArrayList<>(hasNormals ? 3 : 0);
+                for (int k = 0; k < 3; k++) {
+                    final int meshVertex = cornerMeshVertices[triangle * 3 + k];
+                    final int vertex = triangles[triangle * 3 + k];
+                    if (vertexMap[vertex] == NONE) {
+                        vertexMap[vertex] = result.vertices.size();
+                        Vector3f source = model.vertices.get(vertex);
+                        result.vertices.add(new Vector3f(source.getX(), source.getY(), source.getZ()));
+                    }
+                    vertexIndices.add(vertexMap[vertex]);
+                    if (hasTextures) {
+                        final int textureVertex = sourceTextureVertexIndices[meshVertex];
+                        if (textureVertexMap[textureVertex] == NONE) {
+                            textureVertexMap[textureVertex] = result.textureVertices.size();
+                            Vector2f source = model.textureVertices.get(textureVertex);
+                            result.textureVertices.add(new Vector2f(source.getX(), source.getY()));
+                        }
+                        textureVertexIndices.add(textureVertexMap[textureVertex]);
+                    }
+                    if (hasNormals) {
+                        final int normal = sourceNormalIndices[meshVertex];
+                        if (normalMap[normal] == NONE) {
+                            normalMap[normal] = result.normals.size();
+                            Vector3f source = model.normals.get(normal);
+                            result.normals.add(new Vector3f(source.getX(), source.getY(), source.getZ()));
+                        }
+                        normalIndices.add(normalMap[normal]);
+                    }
+                }
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(vertexIndices);
+                polygon.setTextureVertexIndices(textureVertexIndices);
+                polygon.setNormalIndices(normalIndices);
+                result.polygons.add(polygon);
+            }
+            return result;
+        }
+
+        private static int[] newMap(int size) {
+            final int[] map = new int[size];
+            Arrays.fill(map, NONE);
+            return map;
+        }
+    }
+
+    // Двоичная куча ребер с наименьшей ошибкой наверху. Элемент кучи - одно long: старшие 32 бита - ошибка
+    // как float (у неотрицательных float порядок битов совпадает с порядком чисел), младшие - номер ребра в пуле.
+    // Так просеивание двигает по одному числу, а концы ребра и их версии лежат отдельно и не перемещаются
+    private static class EdgeHeap {
+        private long[] heap = new long[16];
+        private int size;
+        private int[] edges = new int[16 * 4];
+        private int[] freeEdges = new int[16];
+        private int freeCount;
+        private int edgeCount;
+
+        private int size() {
+            return size;
+        }
+
+        private int top() {
+            return (int) heap[0];
+        }
+
+        private int from(int edge) {
+            return edges[edge * 4];
+        }
+
+        private int to(int edge) {
+            return edges[edge * 4 + 1];
+        }
+
+        private int fromVersion(int edge) {
+            return edges[edge * 4 + 2];
+        }
+
+        private int toVersion(int edge) {
+            return edges[edge * 4 + 3];
+        }
+
+        private void push(double error, int from, int to, int fromVersion, int toVersion) {
+            int edge;
+            if (freeCount > 0) {
+                edge = freeEdges[--freeCount];
+            } else {
+                edge = edgeCount++;
+                if (edge * 4 == edges.length) {
+                    edges = Arrays.copyOf(edges, edges.length * 2);
+                }
+            }
+            edges[edge * 4] = from;
+            edges[edge * 4 + 1] = to;
+            edges[edge * 4 + 2] = fromVersion;
+            edges[edge * 4 + 3] = toVersion;
+
+            // Ошибка квадрики неотрицательна, отрицательные значения возможны только из-за округления
+            final long key = ((long) Float.floatToIntBits((float) Math.max(0, error)) << 32) | edge;
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                final int parent = (index - 1) >>> 1;
+                if (heap[parent] <= key) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = key;
+        }
+
+        // Снимает верхнее ребро и возвращает его номер в пул
+        private void pop() {
+            final int edge = top();
+            if (freeCount == freeEdges.length) {
+                freeEdges = Arrays.copyOf(freeEdges, freeCount * 2);
+            }
+            freeEdges[freeCount++] = edge;
+
+            size--;
+            if (size == 0) {
+                return;
+            }
+            final long key = heap[size];
+            int index = 0;
+            while (true) {
+                int child = index * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= key) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = key;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cgvsu.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+/**
+ * Способ выделения памяти под данные компактной модели.
+ * Позволяет держать координаты и индексы вне кучи, чтобы обрабатывать модели больше -Xmx
+ */
+public interface MeshStorage {
+    /**
+     * Обычные массивы в куче
+     */
+    MeshStorage HEAP = new MeshStorage() {
+        @Override
+        public FloatBuffer allocateFloats(int capacity) {
+            return FloatBuffer.allocate(capacity);
+        }
+
+        @Override
+        public IntBuffer allocateInts(int capacity) {
+            return IntBuffer.allocate(capacity);
+        }
+
+        // Массив в куче ограничен числом элементов, а не байтами
+        @Override
+        public int getMaxCapacity(int elementBytes) {
+            return Integer.MAX_VALUE - 8;
+        }
+    };
+
+    /**
+     * Память вне кучи. Сборщик мусора видит только маленькие объекты буферов,
+     * а сами данные освобождаются вместе с ними
+     */
+    MeshStorage DIRECT = new MeshStorage() {
+        @Override
+        public FloatBuffer allocateFloats(int capacity) {
+            return allocateDirect((long) capacity * Float.BYTES).asFloatBuffer();
+        }
+
+        @Override
+        public IntBuffer allocateInts(int capacity) {
+            return allocateDirect((long) capacity * Integer.BYTES).asIntBuffer();
+        }
+    };
+
+    /**
+     * Данные во временных файлах, отображенных в память. Объем ограничен диском, а не памятью:
+     * страницы, к которым давно не обращались, операционная система сбрасывает на диск сама
+     * @param directory каталог для временных файлов
+     * @return хранилище на отображенных файлах
+     */
+    static MeshStorage mapped(Path directory) {
+        return new MappedMeshStorage(directory);
+    }
+
+    FloatBuffer allocateFloats(int capacity);
+
+    IntBuffer allocateInts(int capacity);
+
+    /**
+     * Наибольшая вместимость одного буфера. Буферы вне кучи и отображения ограничены 2 ГБ
+     * @param elementBytes размер элемента в байтах
+     * @return наибольшее число элементов
+     */
+    default int getMaxCapacity(int elementBytes) {
+        return Integer.MAX_VALUE / elementBytes;
+    }
+
+    // Размер в байтах считается в long: при умножении в int большая вместимость стала бы отрицательной
+    private static ByteBuffer allocateDirect(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Direct buffer can't be larger than 2 GB, requested " + size + " bytes");
+        }
+        return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+    }
+}
@@ -9,4 +9,19 @@ public class Model {
     public ArrayList<Vector2f> textureVertices = new ArrayList<Vector2f>();
     public ArrayList<Vector3f> normals = new ArrayList<Vector3f>();
     public ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+
+    // Растет при каждом изменении модели на месте. По нему производные данные,
+    // например индексная сетка Triangulator, узнают, что устарели
+    private int modificationCount;
+
+    /**
+     * Отмечает, что полигоны модели или ее списки изменены на месте
+     */
+    public void markModified() {
+        modificationCount++;
+    }
+
+    public int getModificationCount() {
+        return modificationCount;
+    }
 }
@@ -0,0 +1,381 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Построение сглаженных нормалей вершин по полигонам модели. Нормаль вершины - взвешенная сумма нормалей
+// полигонов вокруг нее. Все промежуточные данные лежат в плоских массивах: у каждого угла полигона есть вес,
+// а углы каждой вершины собираются сортировкой подсчетом в формат CSR. Проходы по полигонам и по вершинам
+// не пересекаются по записи, поэтому выполняются параллельно диапазонами.
+// С углом излома углы вершины делятся на группы: соседние через ребро грани попадают в одну группу,
+// если угол между их нормалями не больше угла излома. Каждая группа получает свою нормаль
+public class NormalGenerator {
+    /**
+     * Угол излома, при котором все грани вокруг вершины сглаживаются вместе
+     */
+    public static final float NO_CREASE = 180;
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+
+    /**
+     * Вес нормали грани в нормали вершины
+     */
+    public enum Weighting {
+        /**
+         * По площади грани: крупные грани влияют сильнее
+         */
+        AREA,
+        /**
+         * По углу грани при вершине: результат не зависит от того, как поверхность разбита на треугольники
+         */
+        ANGLE
+    }
+
+    private final float creaseAngle;
+    private final Weighting weighting;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public NormalGenerator() {
+        this(NO_CREASE, Weighting.ANGLE, null, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public NormalGenerator(float creaseAngle) {
+        this(creaseAngle, Weighting.ANGLE, null, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param creaseAngle угол в градусах между нормалями соседних граней, начиная с которого грани не сглаживаются
+     * @param weighting вес граней
+     * @param pool пул потоков или null для последовательного построения
+     * @param threshold наибольшее число полигонов или вершин, которое обрабатывается одной задачей
+     */
+    public NormalGenerator(float creaseAngle, Weighting weighting, ForkJoinPool pool, int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Порог разбиения на задачи должен быть положительным");
+        }
+        this.creaseAngle = creaseAngle;
+        this.weighting = weighting;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Заменяет нормали модели построенными и проставляет индексы нормалей всем полигонам
+     * @param model модель, изменяется на месте
+     */
+    public void generate(Model model) {
+        final int vertexCount = model.vertices.size();
+        final float[] positions = new float[vertexCount * 3];
+        for (int i = 0; i < vertexCount; i++) {
+            Vector3f vertex = model.vertices.get(i);
+            positions[i * 3] = vertex.getX();
+            positions[i * 3 + 1] = vertex.getY();
+            positions[i * 3 + 2] = vertex.getZ();
+        }
+        final int polygonCount = model.polygons.size();
+        final int[] offsets = new int[polygonCount + 1];
+        for (int i = 0; i < polygonCount; i++) {
+            offsets[i + 1] = offsets[i] + model.polygons.get(i).getVertexIndices().size();
+        }
+        final int[] indices = new int[offsets[polygonCount]];
+        for (int i = 0; i < polygonCount; i++) {
+            ArrayList<Integer> vertexIndices = model.polygons.get(i).getVertexIndices();
+            for (int j = 0; j < vertexIndices.size(); j++) {
+                indices[offsets[i] + j] = vertexIndices.get(j);
+            }
+        }
+
+        final Result result = generate(positions, vertexCount, offsets, indices);
+        ArrayList<Vector3f> normals = new ArrayList<>(result.normalCount);
+        for (int i = 0; i < result.normalCount; i++) {
+            normals.add(new Vector3f(result.normals[i * 3], result.normals[i * 3 + 1], result.normals[i * 3 + 2]));
+        }
+        model.normals = normals;
+        for (int i = 0; i < polygonCount; i++) {
+            ArrayList<Integer> normalIndices = new ArrayList<>(offsets[i + 1] - offsets[i]);
+            for (int corner = offsets[i]; corner < offsets[i + 1]; corner++) {
+                normalIndices.add(result.cornerNormals[corner]);
+            }
+            model.polygons.get(i).setNormalIndices(normalIndices);
+        }
+        model.markModified();
+    }
+
+    public void generate(PackedModel model) {
+        final int[] offsets = model.polygonVertexOffsets.toArray();
+        final Result result = generate(model.vertices.toArray(), model.getVertexCount(),
+                offsets, model.polygonVertexIndices.toArray());
+
+        model.normals.clear();
+        model.normals.ensureCapacity(result.normalCount * PackedModel.NORMAL_STRIDE);
+        for (int i = 0; i < result.normalCount * 3; i += 3) {
+            model.normals.add(result.normals[i], result.normals[i + 1], result.normals[i + 2]);
+        }
+        model.polygonNormalOffsets.clear();
+        model.polygonNormalIndices.clear();
+        model.polygonNormalOffsets.ensureCapacity(offsets.length);
+        model.polygonNormalIndices.ensureCapacity(result.cornerNormals.length);
+        for (int offset : offsets) {
+            model.polygonNormalOffsets.add(offset);
+        }
+        for (int normal : result.cornerNormals) {
+            model.polygonNormalIndices.add(normal);
+        }
+    }
+
+    private Result generate(float[] positions, int vertexCount, int[] offsets, int[] indices) {
+        final int polygonCount = offsets.length - 1;
+        final int cornerCount = offsets[polygonCount];
+        final float[] faceNormals = new float[polygonCount * 3];
+        final float[] cornerWeights = new float[cornerCount];
+        final int[] cornerPolygons = new int[cornerCount];
+        run(polygonCount, (from, to) -> computeFaces(positions, offsets, indices, faceNormals, cornerWeights,
+                cornerPolygons, from, to));
+
+        // Углы каждой вершины подряд: сортировка подсчетом за O(вершин + углов)
+        final int[] vertexCornerOffsets = new int[vertexCount + 1];
+        for (int i = 0; i < cornerCount; i++) {
+            vertexCornerOffsets[indices[i] + 1]++;
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            vertexCornerOffsets[i + 1] += vertexCornerOffsets[i];
+        }
+        final int[] vertexCorners = new int[cornerCount];
+        final int[] fill = new int[vertexCount];
+        for (int i = 0; i < cornerCount; i++) {
+            final int vertex = indices[i];
+            vertexCorners[vertexCornerOffsets[vertex] + fill[vertex]++] = i;
+        }
+
+        final Result result = new Result();
+        result.cornerNormals = new int[cornerCount];
+        if (creaseAngle >= NO_CREASE) {
+            result.normalCount = vertexCount;
+            result.normals = new float[vertexCount * 3];
+            run(vertexCount, (from, to) -> {
+                for (int vertex = from; vertex < to; vertex++) {
+                    for (int i = vertexCornerOffsets[vertex]; i < vertexCornerOffsets[vertex + 1]; i++) {
+                        final int corner = vertexCorners[i];
+                        addWeighted(result.normals, vertex, faceNormals, cornerPolygons[corner], cornerWeights[corner]);
+                        result.cornerNormals[corner] = vertex;
+                    }
+                    normalize(result.normals, vertex);
+                }
+            });
+            return result;
+        }
+
+        // Углы вершины объединяются, если их полигоны имеют общее ребро через эту вершину и нормали этих
+        // полигонов отличаются не больше чем на угол излома. Соседние по ребру углы находятся сортировкой
+        // пар (другая вершина ребра, угол) в пределах вершины, объединение ведется через систему непересекающихся
+        // множеств. Корнем множества всегда становится его первый угол, поэтому номера групп не зависят
+        // от порядка объединений. Пары и родители лежат на местах углов вершины, так что вершины не мешают
+        // друг другу при параллельном проходе
+        final float minCos = (float) Math.cos(Math.toRadians(creaseAngle));
+        final int[] cornerGroups = new int[cornerCount];
+        final long[] edgeKeys = new long[cornerCount * 2];
+        final int[] parents = new int[cornerCount];
+        final int[] normalOffsets = new int[vertexCount + 1];
+        run(vertexCount, (from, to) -> {
+            for (int vertex = from; vertex < to; vertex++) {
+                final int start = vertexCornerOffsets[vertex];
+                final int end = vertexCornerOffsets[vertex + 1];
+                for (int i = start; i < end; i++) {
+                    parents[i] = i;
+                    final int corner = vertexCorners[i];
+                    final int polygon = cornerPolygons[corner];
+                    final int previous = indices[corner > offsets[polygon] ? corner - 1 : offsets[polygon + 1] - 1];
+                    final int next = indices[corner + 1 < offsets[polygon + 1] ? corner + 1 : offsets[polygon]];
+                    edgeKeys[i * 2] = (long) previous << 32 | (i - start);
+                    edgeKeys[i * 2 + 1] = (long) next << 32 | (i - start);
+                }
+                Arrays.sort(edgeKeys, start * 2, end * 2);
+
+                for (int runStart = start * 2; runStart < end * 2; ) {
+                    int runEnd = runStart + 1;
+                    while (runEnd < end * 2 && edgeKeys[runEnd] >>> 32 == edgeKeys[runStart] >>> 32) {
+                        runEnd++;
+                    }
+                    // Обычно ребро общее ровно у двух углов, у неманифолдного ребра их больше
+                    for (int a = runStart; a < runEnd; a++) {
+                        for (int b = a + 1; b < runEnd; b++) {
+                            final int first = start + (int) edgeKeys[a];
+                            final int second = start + (int) edgeKeys[b];
+                            if (dot(faceNormals, cornerPolygons[vertexCorners[first]],
+                                    cornerPolygons[vertexCorners[second]]) >= minCos) {
+                                union(parents, first, second);
+                            }
+                        }
+                    }
+                    runStart = runEnd;
+                }
+
+                int groupCount = 0;
+                for (int i = start; i < end; i++) {
+                    final int root = find(parents, i);
+                    cornerGroups[vertexCorners[i]] = root == i ? groupCount++ : cornerGroups[vertexCorners[root]];
+                }
+                normalOffsets[vertex + 1] = groupCount;
+            }
+        });
+        for (int i = 0; i < vertexCount; i++) {
+            normalOffsets[i + 1] += normalOffsets[i];
+        }
+
+        result.normalCount = normalOffsets[vertexCount];
+        result.normals = new float[result.normalCount * 3];
+        run(vertexCount, (from, to) -> {
+            for (int vertex = from; vertex < to; vertex++) {
+                for (int i = vertexCornerOffsets[vertex]; i < vertexCornerOffsets[vertex + 1]; i++) {
+                    final int corner = vertexCorners[i];
+                    final int normal = normalOffsets[vertex] + cornerGroups[corner];
+                    addWeighted(result.normals, normal, faceNormals, cornerPolygons[corner], cornerWeights[corner]);
+                    result.cornerNormals[corner] = normal;
+                }
+                for (int normal = normalOffsets[vertex]; normal < normalOffsets[vertex + 1]; normal++) {
+                    normalize(result.normals, normal);
+                }
+            }
+        });
+        return result;
+    }
+
+    // Единичная нормаль полигона по методу Ньюэлла и веса его углов
+    private void computeFaces(float[] positions, int[] offsets, int[] indices, float[] faceNormals,
+                              float[] cornerWeights, int[] cornerPolygons, int from, int to) {
+        for (int polygon = from; polygon < to; polygon++) {
+            final int start = offsets[polygon];
+            final int end = offsets[polygon + 1];
+            float x = 0;
+            float y = 0;
+            float z = 0;
+            for (int i = start; i < end; i++) {
+                final int current = indices[i] * 3;
+                final int next = indices[i + 1 < end ? i + 1 : start] * 3;
+                x += (positions[current + 1] - positions[next + 1]) * (positions[current + 2] + positions[next + 2]);
+                y += (positions[current + 2] - positions[next + 2]) * (positions[current] + positions[next]);
+                z += (positions[current] - positions[next]) * (positions[current + 1] + positions[next + 1]);
+            }
+            final float length = (float) Math.sqrt(x * x + y * y + z * z);
+            if (length > 0) {
+                faceNormals[polygon * 3] = x / length;
+                faceNormals[polygon * 3 + 1] = y / length;
+                faceNormals[polygon * 3 + 2] = z / length;
+            }
+
+            for (int i = start; i < end; i++) {
+                cornerPolygons[i] = polygon;
+                if (weighting == Weighting.AREA) {
+                    // Длина нормали Ньюэлла равна удвоенной площади полигона
+                    cornerWeights[i] = length / 2;
+                    continue;
+                }
+                final int current = indices[i] * 3;
+                final int previous = indices[i > start ? i - 1 : end - 1] * 3;
+                final int next = indices[i + 1 < end ? i + 1 : start] * 3;
+                final float aX = positions[previous] - positions[current];
+                final float aY = positions[previous + 1] - positions[current + 1];
+                final float aZ = positions[previous + 2] - positions[current + 2];
+                final float bX = positions[next] - positions[current];
+                final float bY = positions[next + 1] - positions[current + 1];
+                final float bZ = positions[next + 2] - positions[current + 2];
+                final float crossX = aY * bZ - aZ * bY;
+                final float crossY = aZ * bX - aX * bZ;
+                final float crossZ = aX * bY - aY * bX;
+                cornerWeights[i] = (float) Math.atan2(Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ),
+                        aX * bX + aY * bY + aZ * bZ);
+            }
+        }
+    }
+
+    private static int find(int[] parents, int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    // Меньший корень становится родителем большего: корень множества - его первый элемент
+    private static void union(int[] parents, int first, int second) {
+        final int firstRoot = find(parents, first);
+        final int secondRoot = find(parents, second);
+        if (firstRoot < secondRoot) {
+            parents[secondRoot] = firstRoot;
+        } else if (secondRoot < firstRoot) {
+            parents[firstRoot] = secondRoot;
+        }
+    }
+
+    private static float dot(float[] faceNormals, int first, int second) {
+        return faceNormals[first * 3] * faceNormals[second * 3] + faceNormals[first * 3 + 1] * faceNormals[second * 3 + 1]
+                + faceNormals[first * 3 + 2] * faceNormals[second * 3 + 2];
+    }
+
+    private static void addWeighted(float[] normals, int normal, float[] faceNormals, int polygon, float weight) {
+        normals[normal * 3] += faceNormals[polygon * 3] * weight;
+        normals[normal * 3 + 1] += faceNormals[polygon * 3 + 1] * weight;
+        normals[normal * 3 + 2] += faceNormals[polygon * 3 + 2] * weight;
+    }
+
+    private static void normalize(float[] normals, int normal) {
+        final float x = normals[normal * 3];
+        final float y = normals[normal * 3 + 1];
+        final float z = normals[normal * 3 + 2];
+        final float length = (float) Math.sqrt(x * x + y * y + z * z);
+        if (length > 0) {
+            normals[normal * 3] = x / length;
+            normals[normal * 3 + 1] = y / length;
+            normals[normal * 3 + 2] = z / length;
+        }
+    }
+
+    private void run(int count, RangeAction action) {
+        if (pool == null || count <= threshold || pool.getParallelism() == 1) {
+            action.apply(0, count);
+            return;
+        }
+        pool.invoke(new RangeTask(0, count, threshold, action));
+    }
+
+    private static class Result {
+        private float[] normals;
+        private int normalCount;
+        // Номер нормали для каждого угла каждого полигона
+        private int[] cornerNormals;
+    }
+
+    private interface RangeAction {
+        void apply(int from, int to);
+    }
+
+    // Делит диапазон пополам, пока он не станет меньше порога. Диапазоны не пересекаются,
+    // поэтому задачи пишут в общие массивы без синхронизации
+    private static class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final RangeAction action;
+
+        private RangeTask(int from, int to, int threshold, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                action.apply(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, threshold, action), new RangeTask(middle, to, threshold, action));
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+// Компактное представление модели: координаты лежат подряд в массивах float,
+// а индексы полигонов хранятся в формате CSR - один общий массив индексов и массив смещений,
+// где полигону i принадлежат элементы с offsets[i] по offsets[i + 1].
+// У текстурных индексов и нормалей свои смещения, потому что у полигона их может не быть вовсе
+public class PackedModel {
+    public static final int VERTEX_STRIDE = 3;
+    public static final int TEXTURE_VERTEX_STRIDE = 2;
+    public static final int NORMAL_STRIDE = 3;
+
+    public final FloatArray vertices;
+    public final FloatArray textureVertices;
+    public final FloatArray normals;
+
+    public final IntArray polygonVertexOffsets;
+    public final IntArray polygonVertexIndices;
+    public final IntArray polygonTextureVertexOffsets;
+    public final IntArray polygonTextureVertexIndices;
+    public final IntArray polygonNormalOffsets;
+    public final IntArray polygonNormalIndices;
+
+    public PackedModel() {
+        this(MeshStorage.HEAP);
+    }
+
+    /**
+     * Создает пустую модель, все массивы которой выделяются в указанном хранилище
+     * @param storage хранилище для координат и индексов
+     */
+    public PackedModel(MeshStorage storage) {
+        this(new FloatArray(storage), new FloatArray(storage), new FloatArray(storage),
+                new IntArray(storage), new IntArray(storage), new IntArray(storage),
+                new IntArray(storage), new IntArray(storage), new IntArray(storage));
+        polygonVertexOffsets.add(0);
+        polygonTextureVertexOffsets.add(0);
+        polygonNormalOffsets.add(0);
+    }
+
+    /**
+     * Собирает модель из готовых массивов. Массивы смещений должны содержать на один элемент
+     * больше, чем полигонов, и начинаться с нуля
+     */
+    public PackedModel(
+            FloatArray vertices, FloatArray textureVertices, FloatArray normals,
+            IntArray polygonVertexOffsets, IntArray polygonVertexIndices,
+            IntArray polygonTextureVertexOffsets, IntArray polygonTextureVertexIndices,
+            IntArray polygonNormalOffsets, IntArray polygonNormalIndices) {
+        this.vertices = vertices;
+        this.textureVertices = textureVertices;
+        this.normals = normals;
+        this.polygonVertexOffsets = polygonVertexOffsets;
+        this.polygonVertexIndices = polygonVertexIndices;
+        this.polygonTextureVertexOffsets = polygonTextureVertexOffsets;
+        this.polygonTextureVertexIndices = polygonTextureVertexIndices;
+        this.polygonNormalOffsets = polygonNormalOffsets;
+        this.polygonNormalIndices = polygonNormalIndices;
+    }
+
+    public int getVertexCount() {
+        return vertices.size() / VERTEX_STRIDE;
+    }
+
+    public int getTextureVertexCount() {
+        return textureVertices.size() / TEXTURE_VERTEX_STRIDE;
+    }
+
+    public int getNormalCount() {
+        return normals.size() / NORMAL_STRIDE;
+    }
+
+    public int getPolygonCount() {
+        return polygonVertexOffsets.size() - 1;
+    }
+
+    public void addVertex(float x, float y, float z) {
+        vertices.add(x, y, z);
+    }
+
+    public void addTextureVertex(float u, float v) {
+        textureVertices.add(u, v);
+    }
+
+    public void addNormal(float x, float y, float z) {
+        normals.add(x, y, z);
+    }
+
+    /**
+     * Добавляет полигон. Списки текстурных индексов и нормалей могут быть пустыми
+     */
+    public void addPolygon(IntArray vertexIndices, IntArray textureVertexIndices, IntArray normalIndices) {
+        appendIndices(polygonVertexOffsets, polygonVertexIndices, vertexIndices);
+        appendIndices(polygonTextureVertexOffsets, polygonTextureVertexIndices, textureVertexIndices);
+        appendIndices(polygonNormalOffsets, polygonNormalIndices, normalIndices);
+    }
+
+    private static void appendIndices(IntArray offsets, IntArray indices, IntArray polygonIndices) {
+        indices.ensureCapacity(indices.size() + polygonIndices.size());
+        for (int i = 0; i < polygonIndices.size(); i++) {
+            indices.add(polygonIndices.get(i));
+        }
+        offsets.add(indices.size());
+    }
+
+    public int getPolygonVertexStart(int polygonIndex) {
+        return polygonVertexOffsets.get(polygonIndex);
+    }
+
+    public int getPolygonVertexEnd(int polygonIndex) {
+        return polygonVertexOffsets.get(polygonIndex + 1);
+    }
+
+    public int getPolygonTextureVertexStart(int polygonIndex) {
+        return polygonTextureVertexOffsets.get(polygonIndex);
+    }
+
+    public int getPolygonTextureVertexEnd(int polygonIndex) {
+        return polygonTextureVertexOffsets.get(polygonIndex + 1);
+    }
+
+    public int getPolygonNormalStart(int polygonIndex) {
+        return polygonNormalOffsets.get(polygonIndex);
+    }
+
+    public int getPolygonNormalEnd(int polygonIndex) {
+        return polygonNormalOffsets.get(polygonIndex + 1);
+    }
+
+    /**
+     * Возвращает представление вершин в виде списка Vector3f. Изменения через set и add
+     * записываются прямо в массив координат
+     */
+    public List<Vector3f> vertexList() {
+        return new Vector3fView(vertices);
+    }
+
+    /**
+     * Возвращает представление нормалей в виде списка Vector3f
+     */
+    public List<Vector3f> normalList() {
+        return new Vector3fView(normals);
+    }
+
+    /**
+     * Возвращает представление текстурных вершин в виде списка Vector2f
+     */
+    public List<Vector2f> textureVertexList() {
+        return new AbstractList<>() {
+            @Override
+            public Vector2f get(int index) {
+                checkIndex(index, size());
+                int offset = index * TEXTURE_VERTEX_STRIDE;
+                return new Vector2f(textureVertices.get(offset), textureVertices.get(offset + 1));
+            }
+
+            @Override
+            public Vector2f set(int index, Vector2f element) {
+                Vector2f previous = get(index);
+                int offset = index * TEXTURE_VERTEX_STRIDE;
+                textureVertices.set(offset, element.getX());
+                textureVertices.set(offset + 1, element.getY());
+                return previous;
+            }
+
+            @Override
+            public void add(int index, Vector2f element) {
+                if (index != size()) {
+                    throw new UnsupportedOperationException("Only appending is supported");
+                }
+                addTextureVertex(element.getX(), element.getY());
+            }
+
+            @Override
+            public int size() {
+                return getTextureVertexCount();
+            }
+        };
+    }
+
+    /**
+     * Возвращает представление полигонов в виде списка Polygon. Каждый полигон собирается
+     * заново при обращении, поэтому изменения в нем не попадают обратно в модель
+     */
+    public List<Polygon> polygonList() {
+        return new AbstractList<>() {
+            @Override
+            public Polygon get(int index) {
+                checkIndex(index, size());
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(toList(polygonVertexIndices,
+                        getPolygonVertexStart(index), getPolygonVertexEnd(index)));
+                polygon.setTextureVertexIndices(toList(polygonTextureVertexIndices,
+                        getPolygonTextureVertexStart(index), getPolygonTextureVertexEnd(index)));
+                polygon.setNormalIndices(toList(polygonNormalIndices,
+                        getPolygonNormalStart(index), getPolygonNormalEnd(index)));
+                return polygon;
+            }
+
+            @Override
+            public int size() {
+                return getPolygonCount();
+            }
+        };
+    }
+
+    private static ArrayList<Integer> toList(IntArray indices, int start, int end) {
+        ArrayList<Integer> result = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            result.add(indices.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Собирает компактную модель из обычной
+     * @param model исходная модель
+     * @return компактная копия модели
+     */
+    public static PackedModel fromModel(Model model) {
+        PackedModel result = new PackedModel();
+        result.vertices.ensureCapacity(model.vertices.size() * VERTEX_STRIDE);
+        for (Vector3f vertex : model.vertices) {
+            result.addVertex(vertex.getX(), vertex.getY(), vertex.getZ());
+        }
+        result.textureVertices.ensureCapacity(model.textureVertices.size() * TEXTURE_VERTEX_STRIDE);
+        for (Vector2f textureVertex : model.textureVertices) {
+            result.addTextureVertex(textureVertex.getX(), textureVertex.getY());
+        }
+        result.normals.ensureCapacity(model.normals.size() * NORMAL_STRIDE);
+        for (Vector3f normal : model.normals) {
+            result.addNormal(normal.getX(), normal.getY(), normal.getZ());
+        }
+        for (Polygon polygon : model.polygons) {
+            appendIndices(result.polygonVertexOffsets, result.polygonVertexIndices, polygon.getVertexIndices());
+            appendIndices(result.polygonTextureVertexOffsets, result.polygonTextureVertexIndices, polygon.getTextureVertexIndices());
+            appendIndices(result.polygonNormalOffsets, result.polygonNormalIndices, polygon.getNormalIndices());
+        }
+        return result;
+    }
+
+    private static void appendIndices(IntArray offsets, IntArray indices, List<Integer> polygonIndices) {
+        for (int index : polygonIndices) {
+            indices.add(index);
+        }
+        offsets.add(indices.size());
+    }
+
+    /**
+     * Собирает обычную модель с объектами Vector3f и Polygon из компактной
+     * @return новая модель
+     */
+    public Model toModel() {
+        Model result = new Model();
+        result.vertices.addAll(vertexList());
+        result.textureVertices.addAll(textureVertexList());
+        result.normals.addAll(normalList());
+        result.polygons.addAll(polygonList());
+        return result;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    private static class Vector3fView extends AbstractList<Vector3f> {
+        private final FloatArray data;
+
+        private Vector3fView(FloatArray data) {
+            this.data = data;
+        }
+
+        @Override
+        public Vector3f get(int index) {
+            checkIndex(index, size());
+            int offset = index * 3;
+            return new Vector3f(data.get(offset), data.get(offset + 1), data.get(offset + 2));
+        }
+
+        @Override
+        public Vector3f set(int index, Vector3f element) {
+            Vector3f previous = get(index);
+            int offset = index * 3;
+            data.set(offset, element.getX());
+            data.set(offset + 1, element.getY());
+            data.set(offset + 2, element.getZ());
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Vector3f element) {
+            if (index != size()) {
+                throw new UnsupportedOperationException("Only appending is supported");
+            }
+            data.add(element.getX(), element.getY(), element.getZ());
+        }
+
+        @Override
+        public int size() {
+            return data.size() / 3;
+        }
+    }
+}
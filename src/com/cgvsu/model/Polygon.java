@@ -20,13 +20,14 @@ public class Polygon {
         this.vertexIndices = vertexIndices;
     }
 
+    // Текстурных индексов и нормалей у полигона может не быть вовсе
     public void setTextureVertexIndices(ArrayList<Integer> textureVertexIndices) {
-        assert textureVertexIndices.size() >= 3;
+        assert textureVertexIndices.isEmpty() || textureVertexIndices.size() >= 3;
         this.textureVertexIndices = textureVertexIndices;
     }
 
     public void setNormalIndices(ArrayList<Integer> normalIndices) {
-        assert normalIndices.size() >= 3;
+        assert normalIndices.isEmpty() || normalIndices.size() >= 3;
         this.normalIndices = normalIndices;
     }
 
@@ -0,0 +1,410 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Разбиение полигонов модели на треугольники и сборка общего индексного буфера.
+// Выпуклые полигоны режутся веером из первой вершины, невыпуклые - отсечением ушей
+// в проекции на плоскость полигона. Для каждой модели кэшируется разбиение, а координаты, текстурные
+// координаты и нормали при каждом обращении сверяются с моделью и при расхождении копируются заново.
+// Разбиение строится заново, если списки модели заменены, изменили размер или модель отмечена
+// через Model.markModified
+public class Triangulator {
+    // Модели сравниваются по ссылке, и запись пропадает вместе с моделью
+    private static final Map<Model, CacheEntry> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Возвращает индексную сетку модели, строя ее при первом обращении
+     * @param model исходная модель
+     * @return треугольная сетка с общим индексом на вершину
+     */
+    public static IndexedMesh getIndexedMesh(Model model) {
+        CacheEntry entry = CACHE.get(model);
+        if (entry == null || !entry.matches(model)) {
+            entry = new CacheEntry(model, buildIndexedMesh(model));
+            CACHE.put(model, entry);
+        } else if (!hasAttributesOf(entry.mesh, model)) {
+            // Разбиение не изменилось, меняются только массивы значений
+            final IndexedMesh mesh = entry.mesh;
+            final float[] positions = new float[mesh.getPositions().length];
+            final float[] textureVertices = new float[mesh.getTextureVertices().length];
+            final float[] normals = new float[mesh.getNormals().length];
+            copyAttributes(model, mesh.getSourceVertexIndices(), mesh.getSourceTextureVertexIndices(),
+                    mesh.getSourceNormalIndices(), positions, textureVertices, normals);
+            entry = new CacheEntry(model, mesh.withAttributes(positions, textureVertices, normals));
+            CACHE.put(model, entry);
+        }
+        return entry.mesh;
+    }
+
+    /**
+     * Сбрасывает сохраненную сетку модели, например чтобы освободить память раньше самой модели
+     * @param model измененная модель
+     */
+    public static void invalidate(Model model) {
+        CACHE.remove(model);
+    }
+
+    /**
+     * Строит индексную сетку модели без кэша
+     * @param model исходная модель
+     * @return треугольная сетка с общим индексом на вершину
+     */
+    public static IndexedMesh buildIndexedMesh(Model model) {
+        final boolean hasTextures = !model.textureVertices.isEmpty();
+        final boolean hasNormals = !model.normals.isEmpty();
+        final TupleTable tuples = new TupleTable(model.polygons.size() * 4);
+        final IntArray triangleIndices = new IntArray(model.polygons.size() * 6);
+        final IntArray trianglePolygonIndices = new IntArray(model.polygons.size() * 2);
+        final IntArray corners = new IntArray();
+        final IntArray cornerTuples = new IntArray();
+        float[] points = new float[3 * 8];
+
+        for (int polygonIndex = 0; polygonIndex < model.polygons.size(); polygonIndex++) {
+            final Polygon polygon = model.polygons.get(polygonIndex);
+            final List<Integer> vertexIndices = polygon.getVertexIndices();
+            final List<Integer> textureVertexIndices = polygon.getTextureVertexIndices();
+            final List<Integer> normalIndices = polygon.getNormalIndices();
+            final int count = vertexIndices.size();
+            final boolean polygonHasTextures = textureVertexIndices.size() == count;
+            final boolean polygonHasNormals = normalIndices.size() == count;
+
+            cornerTuples.clear();
+            if (points.length < count * 3) {
+                points = new float[count * 6];
+            }
+            for (int i = 0; i < count; i++) {
+                final int vertexIndex = vertexIndices.get(i);
+                cornerTuples.add(tuples.getOrAdd(vertexIndex,
+                        polygonHasTextures ? textureVertexIndices.get(i) : IndexedMesh.NO_INDEX,
+                        polygonHasNormals ? normalIndices.get(i) : IndexedMesh.NO_INDEX));
+                Vector3f vertex = model.vertices.get(vertexIndex);
+                points[i * 3] = vertex.getX();
+                points[i * 3 + 1] = vertex.getY();
+                points[i * 3 + 2] = vertex.getZ();
+            }
+
+            corners.clear();
+            triangulate(points, count, corners);
+            for (int i = 0; i < corners.size(); i++) {
+                triangleIndices.add(cornerTuples.get(corners.get(i)));
+            }
+            for (int i = 0; i < corners.size(); i += 3) {
+                trianglePolygonIndices.add(polygonIndex);
+            }
+        }
+
+        final int vertexCount = tuples.size();
+        final int[] sourceVertexIndices = tuples.vertexIndices.toArray();
+        final int[] sourceTextureVertexIndices = tuples.textureVertexIndices.toArray();
+        final int[] sourceNormalIndices = tuples.normalIndices.toArray();
+        float[] positions = new float[vertexCount * 3];
+        float[] textureVertices = new float[hasTextures ? vertexCount * 2 : 0];
+        float[] normals = new float[hasNormals ? vertexCount * 3 : 0];
+        copyAttributes(model, sourceVertexIndices, sourceTextureVertexIndices, sourceNormalIndices,
+                positions, textureVertices, normals);
+        return new IndexedMesh(positions, textureVertices, normals,
+                sourceVertexIndices, sourceTextureVertexIndices, sourceNormalIndices,
+                triangleIndices.toArray(), trianglePolygonIndices.toArray());
+    }
+
+    private static void copyAttributes(Model model, int[] sourceVertexIndices, int[] sourceTextureVertexIndices,
+                                       int[] sourceNormalIndices, float[] positions, float[] textureVertices,
+                                       float[] normals) {
+        for (int i = 0; i < sourceVertexIndices.length; i++) {
+            Vector3f vertex = model.vertices.get(sourceVertexIndices[i]);
+            positions[i * 3] = vertex.getX();
+            positions[i * 3 + 1] = vertex.getY();
+            positions[i * 3 + 2] = vertex.getZ();
+            final int textureVertexIndex = sourceTextureVertexIndices[i];
+            if (textureVertices.length > 0 && textureVertexIndex != IndexedMesh.NO_INDEX) {
+                Vector2f textureVertex = model.textureVertices.get(textureVertexIndex);
+                textureVertices[i * 2] = textureVertex.getX();
+                textureVertices[i * 2 + 1] = textureVertex.getY();
+            }
+            final int normalIndex = sourceNormalIndices[i];
+            if (normals.length > 0 && normalIndex != IndexedMesh.NO_INDEX) {
+                Vector3f normal = model.normals.get(normalIndex);
+                normals[i * 3] = normal.getX();
+                normals[i * 3 + 1] = normal.getY();
+                normals[i * 3 + 2] = normal.getZ();
+            }
+        }
+    }
+
+    // Сравнение по битам: NaN в модели не должен заставлять копировать значения при каждом обращении
+    private static boolean hasAttributesOf(IndexedMesh mesh, Model model) {
+        final int[] sourceVertexIndices = mesh.getSourceVertexIndices();
+        final int[] sourceTextureVertexIndices = mesh.getSourceTextureVertexIndices();
+        final int[] sourceNormalIndices = mesh.getSourceNormalIndices();
+        final float[] positions = mesh.getPositions();
+        final float[] textureVertices = mesh.getTextureVertices();
+        final float[] normals = mesh.getNormals();
+        for (int i = 0; i < sourceVertexIndices.length; i++) {
+            Vector3f vertex = model.vertices.get(sourceVertexIndices[i]);
+            if (!same(positions[i * 3], vertex.getX()) || !same(positions[i * 3 + 1], vertex.getY())
+                    || !same(positions[i * 3 + 2], vertex.getZ())) {
+                return false;
+            }
+            final int textureVertexIndex = sourceTextureVertexIndices[i];
+            if (textureVertices.length > 0 && textureVertexIndex != IndexedMesh.NO_INDEX) {
+                Vector2f textureVertex = model.textureVertices.get(textureVertexIndex);
+                if (!same(textureVertices[i * 2], textureVertex.getX())
+                        || !same(textureVertices[i * 2 + 1], textureVertex.getY())) {
+                    return false;
+                }
+            }
+            final int normalIndex = sourceNormalIndices[i];
+            if (normals.length > 0 && normalIndex != IndexedMesh.NO_INDEX) {
+                Vector3f normal = model.normals.get(normalIndex);
+                if (!same(normals[i * 3], normal.getX()) || !same(normals[i * 3 + 1], normal.getY())
+                        || !same(normals[i * 3 + 2], normal.getZ())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean same(float first, float second) {
+        return Float.floatToIntBits(first) == Float.floatToIntBits(second);
+    }
+
+    /**
+     * Разбивает один полигон на треугольники
+     * @param vertices вершины полигона по порядку обхода
+     * @return номера вершин полигона, по три на треугольник, в том же направлении обхода
+     */
+    public static int[] triangulate(List<Vector3f> vertices) {
+        float[] points = new float[vertices.size() * 3];
+        for (int i = 0; i < vertices.size(); i++) {
+            points[i * 3] = vertices.get(i).getX();
+            points[i * 3 + 1] = vertices.get(i).getY();
+            points[i * 3 + 2] = vertices.get(i).getZ();
+        }
+        IntArray corners = new IntArray();
+        triangulate(points, vertices.size(), corners);
+        return corners.toArray();
+    }
+
+    // Дописывает в corners номера вершин треугольников. Получается count - 2 треугольника
+    static void triangulate(float[] points, int count, IntArray corners) {
+        if (count < 3) {
+            return;
+        }
+        if (count == 3) {
+            corners.add(0, 1, 2);
+            return;
+        }
+
+        // Нормаль по методу Ньюэлла устойчива и для невыпуклых полигонов. Проецируем полигон на плоскость,
+        // перпендикулярную самой длинной компоненте нормали
+        float normalX = 0;
+        float normalY = 0;
+        float normalZ = 0;
+        for (int i = 0; i < count; i++) {
+            final int j = (i + 1) % count;
+            normalX += (points[i * 3 + 1] - points[j * 3 + 1]) * (points[i * 3 + 2] + points[j * 3 + 2]);
+            normalY += (points[i * 3 + 2] - points[j * 3 + 2]) * (points[i * 3] + points[j * 3]);
+            normalZ += (points[i * 3] - points[j * 3]) * (points[i * 3 + 1] + points[j * 3 + 1]);
+        }
+        final int axisU;
+        final int axisV;
+        final float orientation;
+        if (Math.abs(normalX) >= Math.abs(normalY) && Math.abs(normalX) >= Math.abs(normalZ)) {
+            axisU = 1;
+            axisV = 2;
+            orientation = Math.signum(normalX);
+        } else if (Math.abs(normalY) >= Math.abs(normalZ)) {
+            axisU = 2;
+            axisV = 0;
+            orientation = Math.signum(normalY);
+        } else {
+            axisU = 0;
+            axisV = 1;
+            orientation = Math.signum(normalZ);
+        }
+
+        final float[] u = new float[count];
+        final float[] v = new float[count];
+        for (int i = 0; i < count; i++) {
+            u[i] = points[i * 3 + axisU];
+            v[i] = points[i * 3 + axisV] * (orientation < 0 ? -1 : 1);
+        }
+
+        if (orientation == 0 || isConvex(u, v, count)) {
+            for (int i = 1; i + 1 < count; i++) {
+                corners.add(0, i, i + 1);
+            }
+            return;
+        }
+        clipEars(u, v, count, corners);
+    }
+
+    // В проекции полигон обходится против часовой стрелки, поэтому у выпуклого все повороты неотрицательны
+    private static boolean isConvex(float[] u, float[] v, int count) {
+        for (int i = 0; i < count; i++) {
+            if (cross(u, v, i, (i + 1) % count, (i + 2) % count) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void clipEars(float[] u, float[] v, int count, IntArray corners) {
+        final int[] next = new int[count];
+        final int[] previous = new int[count];
+        for (int i = 0; i < count; i++) {
+            next[i] = (i + 1) % count;
+            previous[i] = (i + count - 1) % count;
+        }
+
+        int remaining = count;
+        int current = 0;
+        int checkedWithoutEar = 0;
+        while (remaining > 3) {
+            final int a = previous[current];
+            final int b = current;
+            final int c = next[current];
+            if (isEar(u, v, a, b, c, next)) {
+                corners.add(a, b, c);
+                next[a] = c;
+                previous[c] = a;
+                remaining--;
+                checkedWithoutEar = 0;
+                current = c;
+            } else if (++checkedWithoutEar > remaining) {
+                // Самопересекающийся или вырожденный полигон: ушей не осталось, дорезаем остаток веером
+                break;
+            } else {
+                current = c;
+            }
+        }
+
+        final int first = current;
+        for (int b = next[first]; next[b] != first; b = next[b]) {
+            corners.add(first, b, next[b]);
+        }
+    }
+
+    private static boolean isEar(float[] u, float[] v, int a, int b, int c, int[] next) {
+        if (cross(u, v, a, b, c) <= 0) {
+            return false;
+        }
+        for (int p = next[c]; p != a; p = next[p]) {
+            if (isInsideTriangle(u, v, a, b, c, p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInsideTriangle(float[] u, float[] v, int a, int b, int c, int p) {
+        return cross(u, v, a, b, p) >= 0 && cross(u, v, b, c, p) >= 0 && cross(u, v, c, a, p) >= 0
+                && !(u[p] == u[a] && v[p] == v[a]) && !(u[p] == u[b] && v[p] == v[b]) && !(u[p] == u[c] && v[p] == v[c]);
+    }
+
+    private static float cross(float[] u, float[] v, int a, int b, int c) {
+        return (u[b] - u[a]) * (v[c] - v[b]) - (v[b] - v[a]) * (u[c] - u[b]);
+    }
+
+    // Таблица уникальных троек v/vt/vn с открытой адресацией. Номер тройки - порядок первого появления
+    private static class TupleTable {
+        private final IntArray vertexIndices = new IntArray();
+        private final IntArray textureVertexIndices = new IntArray();
+        private final IntArray normalIndices = new IntArray();
+        private int[] slots;
+
+        private TupleTable(int expectedSize) {
+            slots = new int[Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1];
+            Arrays.fill(slots, -1);
+        }
+
+        private int size() {
+            return vertexIndices.size();
+        }
+
+        private int getOrAdd(int vertexIndex, int textureVertexIndex, int normalIndex) {
+            final int mask = slots.length - 1;
+            int slot = hash(vertexIndex, textureVertexIndex, normalIndex) & mask;
+            while (slots[slot] != -1) {
+                final int tuple = slots[slot];
+                if (vertexIndices.get(tuple) == vertexIndex && textureVertexIndices.get(tuple) == textureVertexIndex
+                        && normalIndices.get(tuple) == normalIndex) {
+                    return tuple;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final int tuple = size();
+            vertexIndices.add(vertexIndex);
+            textureVertexIndices.add(textureVertexIndex);
+            normalIndices.add(normalIndex);
+            slots[slot] = tuple;
+            if (size() * 2 > slots.length) {
+                rehash();
+            }
+            return tuple;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            Arrays.fill(slots, -1);
+            final int mask = slots.length - 1;
+            for (int tuple = 0; tuple < size(); tuple++) {
+                int slot = hash(vertexIndices.get(tuple), textureVertexIndices.get(tuple), normalIndices.get(tuple)) & mask;
+                while (slots[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = tuple;
+            }
+        }
+
+        private static int hash(int vertexIndex, int textureVertexIndex, int normalIndex) {
+            int h = vertexIndex * 0x9E3779B1 + textureVertexIndex * 0x85EBCA77 + normalIndex * 0xC2B2AE3D;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Сетка вместе со списками модели и счетчиком изменений, по которым она построена. Ссылки на списки не держат саму модель,
+    // поэтому запись в WeakHashMap по-прежнему пропадает вместе с ней
+    private static class CacheEntry {
+        private final IndexedMesh mesh;
+        private final List<Vector3f> vertices;
+        private final List<Vector2f> textureVertices;
+        private final List<Vector3f> normals;
+        private final List<Polygon> polygons;
+        private final int vertexCount;
+        private final int textureVertexCount;
+        private final int normalCount;
+        private final int polygonCount;
+        private final int modificationCount;
+
+        private CacheEntry(Model model, IndexedMesh mesh) {
+            this.mesh = mesh;
+            this.vertices = model.vertices;
+            this.textureVertices = model.textureVertices;
+            this.normals = model.normals;
+            this.polygons = model.polygons;
+            this.vertexCount = model.vertices.size();
+            this.textureVertexCount = model.textureVertices.size();
+            this.normalCount = model.normals.size();
+            this.polygonCount = model.polygons.size();
+            this.modificationCount = model.getModificationCount();
+        }
+
+        private boolean matches(Model model) {
+            return vertices == model.vertices && textureVertices == model.textureVertices
+                    && normals == model.normals && polygons == model.polygons
+                    && vertexCount == model.vertices.size() && textureVertexCount == model.textureVertices.size()
+                    && normalCount == model.normals.size() && polygonCount == model.polygons.size()
+                    && modificationCount == model.getModificationCount();
+        }
+    }
+}
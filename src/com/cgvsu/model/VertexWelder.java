@@ -0,0 +1,262 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Склейка совпадающих вершин. Вершины раскладываются по ячейкам пространственной хеш-сетки,
+// поэтому совпадающую вершину достаточно искать в нескольких соседних ячейках, и вся склейка идет за O(n).
+// Вершина склеивается с ранее оставленной вершиной, все координаты которой отличаются меньше чем на eps,
+// как в Vector3f.equals
+public class VertexWelder {
+    private static final int EMPTY = -1;
+    // Ячейка в несколько раз больше допуска, чтобы окрестность вершины чаще попадала в одну ячейку
+    private static final int CELL_SIZE_IN_EPS = 4;
+
+    /**
+     * Склеивает вершины модели с допуском Vector3f.EPS
+     * @param model модель, изменяется на месте
+     * @return итог склейки
+     */
+    public static WeldResult weld(Model model) {
+        return weld(model, Vector3f.EPS);
+    }
+
+    /**
+     * Склеивает вершины модели, оставляя первую из совпадающих, и пересчитывает индексы полигонов
+     * @param model модель, изменяется на месте
+     * @param eps допуск для каждой координаты
+     * @return итог склейки
+     */
+    public static WeldResult weld(Model model, float eps) {
+        final int vertexCount = model.vertices.size();
+        float[] coordinates = new float[vertexCount * 3];
+        for (int i = 0; i < vertexCount; i++) {
+            Vector3f vertex = model.vertices.get(i);
+            coordinates[i * 3] = vertex.getX();
+            coordinates[i * 3 + 1] = vertex.getY();
+            coordinates[i * 3 + 2] = vertex.getZ();
+        }
+        final int[] indexMap = buildIndexMap(coordinates, vertexCount, eps);
+
+        ArrayList<Vector3f> vertices = new ArrayList<>();
+        for (int i = 0; i < vertexCount; i++) {
+            if (indexMap[i] == vertices.size()) {
+                vertices.add(model.vertices.get(i));
+            }
+        }
+        model.vertices = vertices;
+
+        for (Polygon polygon : model.polygons) {
+            ArrayList<Integer> indices = polygon.getVertexIndices();
+            for (int i = 0; i < indices.size(); i++) {
+                final int index = indices.get(i);
+                if (index >= 0 && index < vertexCount) {
+                    indices.set(i, indexMap[index]);
+                }
+            }
+        }
+        model.markModified();
+        return new WeldResult(vertexCount, vertices.size(), indexMap);
+    }
+
+    public static WeldResult weld(PackedModel model) {
+        return weld(model, Vector3f.EPS);
+    }
+
+    /**
+     * Склеивает вершины компактной модели. Массив вершин сжимается на месте
+     * @param model модель, изменяется на месте
+     * @param eps допуск для каждой координаты
+     * @return итог склейки
+     */
+    public static WeldResult weld(PackedModel model, float eps) {
+        final int vertexCount = model.getVertexCount();
+        final float[] coordinates = model.vertices.toArray();
+        final int[] indexMap = buildIndexMap(coordinates, vertexCount, eps);
+
+        int weldedCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            if (indexMap[i] == weldedCount) {
+                final int offset = weldedCount * PackedModel.VERTEX_STRIDE;
+                model.vertices.set(offset, coordinates[i * 3]);
+                model.vertices.set(offset + 1, coordinates[i * 3 + 1]);
+                model.vertices.set(offset + 2, coordinates[i * 3 + 2]);
+                weldedCount++;
+            }
+        }
+        model.vertices.truncate(weldedCount * PackedModel.VERTEX_STRIDE);
+
+        IntArray indices = model.polygonVertexIndices;
+        for (int i = 0; i < indices.size(); i++) {
+            final int index = indices.get(i);
+            if (index >= 0 && index < vertexCount) {
+                indices.set(i, indexMap[index]);
+            }
+        }
+        return new WeldResult(vertexCount, weldedCount, indexMap);
+    }
+
+    /**
+     * Строит отображение старых номеров вершин в новые. Оставленные вершины нумеруются подряд
+     * в исходном порядке
+     * @param coordinates координаты вершин (x, y, z подряд)
+     * @param vertexCount количество вершин
+     * @param eps допуск для каждой координаты
+     * @return новый номер для каждой исходной вершины
+     */
+    static int[] buildIndexMap(float[] coordinates, int vertexCount, float eps) {
+        if (!(eps > 0)) {
+            throw new IllegalArgumentException("Допуск должен быть положительным");
+        }
+        final int[] indexMap = new int[vertexCount];
+        final SpatialHash grid = new SpatialHash(vertexCount);
+        final double cellSize = eps * CELL_SIZE_IN_EPS;
+        int weldedCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            final float x = coordinates[i * 3];
+            final float y = coordinates[i * 3 + 1];
+            final float z = coordinates[i * 3 + 2];
+
+            // Бесконечности и NaN не равны ничему, в том числе себе, поэтому такие вершины остаются отдельными
+            if (!Float.isFinite(x) || !Float.isFinite(y) || !Float.isFinite(z)) {
+                indexMap[i] = weldedCount++;
+                continue;
+            }
+
+            // Совпадающая вершина лежит в кубе со стороной 2 * eps вокруг текущей,
+            // проверяем только ячейки, которые этот куб задевает. Для очень больших координат номер ячейки
+            // упирается в Long.MAX_VALUE, поэтому циклы останавливаются сравнением с последней ячейкой, а не cell <= to
+            final long fromX = (long) Math.floor((x - eps) / cellSize), toX = (long) Math.floor((x + eps) / cellSize);
+            final long fromY = (long) Math.floor((y - eps) / cellSize), toY = (long) Math.floor((y + eps) / cellSize);
+            final long fromZ = (long) Math.floor((z - eps) / cellSize), toZ = (long) Math.floor((z + eps) / cellSize);
+            int match = EMPTY;
+            search:
+            for (long cellX = fromX; ; cellX++) {
+                for (long cellY = fromY; ; cellY++) {
+                    for (long cellZ = fromZ; ; cellZ++) {
+                        for (int j = grid.first(cellX, cellY, cellZ); j != EMPTY; j = grid.next(j)) {
+                            if (Math.abs(x - coordinates[j * 3]) < eps
+                                    && Math.abs(y - coordinates[j * 3 + 1]) < eps
+                                    && Math.abs(z - coordinates[j * 3 + 2]) < eps) {
+                                match = j;
+                                break search;
+                            }
+                        }
+                        if (cellZ == toZ) {
+                            break;
+                        }
+                    }
+                    if (cellY == toY) {
+                        break;
+                    }
+                }
+                if (cellX == toX) {
+                    break;
+                }
+            }
+
+            if (match != EMPTY) {
+                indexMap[i] = indexMap[match];
+            } else {
+                indexMap[i] = weldedCount++;
+                grid.add((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize),
+                        (long) Math.floor(z / cellSize), i);
+            }
+        }
+        return indexMap;
+    }
+
+    // Хеш-таблица с открытой адресацией: ячейка сетки -> список оставленных в ней вершин.
+    // Списки хранятся в общем массиве next, индексированном номером вершины
+    private static class SpatialHash {
+        private final long[] cellKeysX;
+        private final long[] cellKeysY;
+        private final long[] cellKeysZ;
+        private final int[] heads;
+        private final int[] next;
+        private final int mask;
+
+        private SpatialHash(int vertexCount) {
+            final int capacity = Integer.highestOneBit(Math.max(2, vertexCount) * 2 - 1) << 1;
+            cellKeysX = new long[capacity];
+            cellKeysY = new long[capacity];
+            cellKeysZ = new long[capacity];
+            heads = new int[capacity];
+            Arrays.fill(heads, EMPTY);
+            next = new int[vertexCount];
+            mask = capacity - 1;
+        }
+
+        private int first(long x, long y, long z) {
+            final int slot = findSlot(x, y, z);
+            return heads[slot];
+        }
+
+        private int next(int vertex) {
+            return next[vertex];
+        }
+
+        private void add(long x, long y, long z, int vertex) {
+            final int slot = findSlot(x, y, z);
+            if (heads[slot] == EMPTY) {
+                cellKeysX[slot] = x;
+                cellKeysY[slot] = y;
+                cellKeysZ[slot] = z;
+            }
+            next[vertex] = heads[slot];
+            heads[slot] = vertex;
+        }
+
+        // Слот с этой ячейкой или пустой слот, куда ее можно положить
+        private int findSlot(long x, long y, long z) {
+            int slot = hash(x, y, z) & mask;
+            while (heads[slot] != EMPTY
+                    && (cellKeysX[slot] != x || cellKeysY[slot] != y || cellKeysZ[slot] != z)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int hash(long x, long y, long z) {
+            long h = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Итог склейки вершин
+     */
+    public static class WeldResult {
+        private final int originalVertexCount;
+        private final int vertexCount;
+        private final int[] indexMap;
+
+        private WeldResult(int originalVertexCount, int vertexCount, int[] indexMap) {
+            this.originalVertexCount = originalVertexCount;
+            this.vertexCount = vertexCount;
+            this.indexMap = indexMap;
+        }
+
+        public int getOriginalVertexCount() {
+            return originalVertexCount;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        public int getRemovedVertexCount() {
+            return originalVertexCount - vertexCount;
+        }
+
+        /**
+         * Возвращает новый номер для каждой исходной вершины
+         * @return массив новых номеров
+         */
+        public int[] getIndexMap() {
+            return indexMap;
+        }
+    }
+}
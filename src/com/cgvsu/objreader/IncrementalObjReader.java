@@ -0,0 +1,350 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+// Повторное чтение OBJ файла после правки. Текст режется на куски по границам строк, и для каждого куска
+// запоминаются контрольная сумма, число строк и число элементов каждого вида. При следующем чтении
+// заново разбираются только куски с другой суммой, а модель из прошлого чтения исправляется на месте.
+// Границы кусков зависят только от содержимого строк, поэтому вставка в начало файла не сдвигает
+// границы всех следующих кусков и не заставляет разбирать их заново.
+// Индексы граней проверяются так же, как у ObjReader: взятый из прошлого чтения кусок проверяется
+// по числу элементов перед ним, без повторного разбора
+public class IncrementalObjReader {
+    private static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 14;
+    private static final int DEFAULT_MAX_CHUNK_SIZE = 1 << 18;
+    // Граница ставится после строки, у которой младшие биты хеша нулевые: в среднем раз в 2048 строк
+    private static final int DEFAULT_BOUNDARY_MASK = (1 << 11) - 1;
+    // Если заново разбирать больше половины текста, дешевле разобрать его целиком
+    private static final double FULL_PARSE_RATIO = 0.5;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int VERTICES = 0;
+    private static final int TEXTURE_VERTICES = 1;
+    private static final int NORMALS = 2;
+    private static final int POLYGONS = 3;
+    private static final int ELEMENT_KINDS = 4;
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final int boundaryMask;
+
+    private Model model;
+    private List<Chunk> chunks = new ArrayList<>();
+    private int lastParsedChunkCount;
+
+    public IncrementalObjReader() {
+        this(DEFAULT_MIN_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE, DEFAULT_BOUNDARY_MASK);
+    }
+
+    IncrementalObjReader(int minChunkSize, int maxChunkSize, int boundaryMask) {
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.boundaryMask = boundaryMask;
+    }
+
+    /**
+     * Читает новое содержимое файла. При первом вызове разбирается весь текст, при следующих
+     * только изменившиеся куски, а модель из прошлого вызова исправляется на месте.
+     * Менять модель между вызовами нельзя: куски, которые не разбираются заново, берутся из нее.
+     * При ошибке разбора модель и запомненные куски остаются такими же, как после прошлого вызова
+     * @param fileContent содержимое OBJ файла
+     * @return та же модель, что и при прошлом вызове, с содержимым как у ObjReader.read(fileContent)
+     */
+    public Model read(String fileContent) {
+        final char[] chars = fileContent.toCharArray();
+        try {
+            return read(chars, 0, chars.length);
+        } catch (IOException e) {
+            // Разбор из массива символов не бросает IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Читает новое содержимое файла так же, как read(String)
+     * @param path путь к OBJ файлу
+     * @return та же модель, что и при прошлом вызове
+     */
+    public Model read(Path path) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+        return read(chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+    }
+
+    /**
+     * @return модель после последнего чтения или null, если чтений еще не было
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    // Число кусков, разобранных при последнем чтении
+    int getLastParsedChunkCount() {
+        return lastParsedChunkCount;
+    }
+
+    private Model read(char[] chars, int start, int end) throws IOException {
+        List<Chunk> newChunks = splitIntoChunks(chars, start, end);
+        if (model == null) {
+            return parseFully(chars, newChunks);
+        }
+
+        // Сопоставляем новые куски со старыми по порядку. Найденный дальше по тексту совпадающий кусок
+        // означает, что старые куски перед ним удалены, а не найденный - что новый кусок вставлен или изменен
+        HashMap<Long, ArrayDeque<Integer>> oldChunksByHash = new HashMap<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            oldChunksByHash.computeIfAbsent(chunks.get(i).hash, hash -> new ArrayDeque<>()).add(i);
+        }
+        final int[] reusedChunks = new int[newChunks.size()];
+        long parsedLength = 0;
+        int oldPosition = 0;
+        for (int i = 0; i < newChunks.size(); i++) {
+            final Chunk chunk = newChunks.get(i);
+            reusedChunks[i] = -1;
+            ArrayDeque<Integer> candidates = oldChunksByHash.get(chunk.hash);
+            while (candidates != null && !candidates.isEmpty()) {
+                final int candidate = candidates.peekFirst();
+                if (candidate < oldPosition || chunks.get(candidate).length != chunk.length) {
+                    candidates.pollFirst();
+                    continue;
+                }
+                reusedChunks[i] = candidate;
+                oldPosition = candidate + 1;
+                candidates.pollFirst();
+                break;
+            }
+            if (reusedChunks[i] < 0) {
+                parsedLength += chunk.length;
+            }
+        }
+        if (parsedLength > FULL_PARSE_RATIO * (end - start)) {
+            return parseFully(chars, newChunks);
+        }
+
+        // Сначала разбираем изменившиеся куски в отдельные модели, чтобы при ошибке не испортить текущую
+        final int[][] oldOffsets = computeOffsets(chunks);
+        final Model[] parsedChunks = new Model[newChunks.size()];
+        final List<ObjIndexResolver> resolvers = new ArrayList<>();
+        final int[] bases = new int[ELEMENT_KINDS];
+        int lineOffset = 0;
+        lastParsedChunkCount = 0;
+        for (int i = 0; i < newChunks.size(); i++) {
+            final Chunk chunk = newChunks.get(i);
+            if (reusedChunks[i] >= 0 && !canReuse(chunks.get(reusedChunks[i]), oldOffsets, reusedChunks[i], bases)) {
+                reusedChunks[i] = -1;
+            }
+            if (reusedChunks[i] >= 0) {
+                final Chunk oldChunk = chunks.get(reusedChunks[i]);
+                chunk.lineCount = oldChunk.lineCount;
+                chunk.indices = oldChunk.indices;
+                System.arraycopy(oldChunk.elementCounts, 0, chunk.elementCounts, 0, ELEMENT_KINDS);
+            } else {
+                parsedChunks[i] = new Model();
+                final ObjIndexResolver indices = new ObjIndexResolver(
+                        bases[VERTICES], bases[TEXTURE_VERTICES], bases[NORMALS], lineOffset);
+                parseChunk(chars, chunk, parsedChunks[i], indices);
+                resolvers.add(indices);
+                lastParsedChunkCount++;
+            }
+            for (int kind = 0; kind < ELEMENT_KINDS; kind++) {
+                bases[kind] += chunk.elementCounts[kind];
+            }
+            lineOffset += chunk.lineCount;
+        }
+        ObjIndexResolver.throwIfInvalid(resolvers);
+
+        final int[][] newOffsets = computeOffsets(newChunks);
+        patch(model.vertices, parsed -> parsed.vertices, VERTICES, reusedChunks, parsedChunks, oldOffsets, newOffsets);
+        patch(model.textureVertices, parsed -> parsed.textureVertices, TEXTURE_VERTICES,
+                reusedChunks, parsedChunks, oldOffsets, newOffsets);
+        patch(model.normals, parsed -> parsed.normals, NORMALS, reusedChunks, parsedChunks, oldOffsets, newOffsets);
+        patch(model.polygons, parsed -> parsed.polygons, POLYGONS, reusedChunks, parsedChunks, oldOffsets, newOffsets);
+
+        chunks = newChunks;
+        model.markModified();
+        return model;
+    }
+
+    private Model parseFully(char[] chars, List<Chunk> newChunks) throws IOException {
+        // Куски разбираются в одну общую модель, а число элементов куска - это прирост размеров ее списков
+        Model result = new Model();
+        final List<ObjIndexResolver> resolvers = new ArrayList<>(newChunks.size());
+        int lineOffset = 0;
+        for (Chunk chunk : newChunks) {
+            final ObjIndexResolver indices = new ObjIndexResolver(
+                    result.vertices.size(), result.textureVertices.size(), result.normals.size(), lineOffset);
+            parseChunk(chars, chunk, result, indices);
+            resolvers.add(indices);
+            lineOffset += chunk.lineCount;
+        }
+        ObjIndexResolver.throwIfInvalid(resolvers);
+        for (int i = newChunks.size() - 1; i > 0; i--) {
+            final int[] counts = newChunks.get(i).elementCounts;
+            final int[] previousCounts = newChunks.get(i - 1).elementCounts;
+            for (int kind = 0; kind < ELEMENT_KINDS; kind++) {
+                counts[kind] -= previousCounts[kind];
+            }
+        }
+
+        lastParsedChunkCount = newChunks.size();
+        chunks = newChunks;
+        if (model == null) {
+            model = result;
+        } else {
+            replace(model.vertices, result.vertices);
+            replace(model.textureVertices, result.textureVertices);
+            replace(model.normals, result.normals);
+            replace(model.polygons, result.polygons);
+            model.markModified();
+        }
+        return model;
+    }
+
+    // Записывает в кусок число строк и размеры списков модели после его разбора. Неверные грани
+    // остаются в indices, чтобы сообщить о них вместе с гранями других кусков
+    private static void parseChunk(char[] chars, Chunk chunk, Model result, ObjIndexResolver indices)
+            throws IOException {
+        try {
+            chunk.lineCount = ObjReader.parse(new ObjTokenizer(chars, chunk.start, chunk.start + chunk.length),
+                    ObjModelBuilder.forModel(result), indices);
+        } catch (ObjReaderException exception) {
+            throw new ObjReaderException(exception.getErrorMessage(), indices.getLineOffset() + exception.getLineInd());
+        }
+        chunk.indices = indices;
+        chunk.elementCounts[VERTICES] = result.vertices.size();
+        chunk.elementCounts[TEXTURE_VERTICES] = result.textureVertices.size();
+        chunk.elementCounts[NORMALS] = result.normals.size();
+        chunk.elementCounts[POLYGONS] = result.polygons.size();
+    }
+
+    // Положительные индексы куска не зависят от его места в файле, но должны остаться в диапазоне.
+    // Отрицательные отсчитываются от числа элементов перед куском, поэтому при его изменении кусок разбирается заново
+    private static boolean canReuse(Chunk oldChunk, int[][] oldOffsets, int oldIndex, int[] bases) {
+        if (!oldChunk.indices.fitsBase(bases[VERTICES], bases[TEXTURE_VERTICES], bases[NORMALS])) {
+            return false;
+        }
+        return !oldChunk.indices.hasRelativeIndices()
+                || oldOffsets[VERTICES][oldIndex] == bases[VERTICES]
+                && oldOffsets[TEXTURE_VERTICES][oldIndex] == bases[TEXTURE_VERTICES]
+                && oldOffsets[NORMALS][oldIndex] == bases[NORMALS];
+    }
+
+    // Если число элементов списка не изменилось ни в одной правке, элементы заменяются на месте.
+    // Иначе список собирается заново из старых диапазонов и разобранных кусков
+    private static <T> void patch(
+            ArrayList<T> list,
+            Function<Model, ArrayList<T>> chunkElements,
+            int kind,
+            int[] reusedChunks,
+            Model[] parsedChunks,
+            int[][] oldOffsets,
+            int[][] newOffsets) {
+        final int newSize = newOffsets[kind][reusedChunks.length];
+        boolean sameLayout = list.size() == newSize;
+        for (int i = 0; i < reusedChunks.length && sameLayout; i++) {
+            sameLayout = reusedChunks[i] < 0 || oldOffsets[kind][reusedChunks[i]] == newOffsets[kind][i];
+        }
+
+        if (sameLayout) {
+            for (int i = 0; i < reusedChunks.length; i++) {
+                if (reusedChunks[i] < 0) {
+                    final ArrayList<T> elements = chunkElements.apply(parsedChunks[i]);
+                    for (int j = 0; j < elements.size(); j++) {
+                        list.set(newOffsets[kind][i] + j, elements.get(j));
+                    }
+                }
+            }
+            return;
+        }
+
+        ArrayList<T> result = new ArrayList<>(newSize);
+        for (int i = 0; i < reusedChunks.length; i++) {
+            if (reusedChunks[i] < 0) {
+                result.addAll(chunkElements.apply(parsedChunks[i]));
+            } else {
+                final int oldChunk = reusedChunks[i];
+                result.addAll(list.subList(oldOffsets[kind][oldChunk], oldOffsets[kind][oldChunk + 1]));
+            }
+        }
+        replace(list, result);
+    }
+
+    private static <T> void replace(ArrayList<T> list, ArrayList<T> elements) {
+        list.clear();
+        list.addAll(elements);
+    }
+
+    // offsets[kind][i] - индекс первого элемента вида kind из куска i, последний элемент - общее число
+    private static int[][] computeOffsets(List<Chunk> chunks) {
+        final int[][] offsets = new int[ELEMENT_KINDS][chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            for (int kind = 0; kind < ELEMENT_KINDS; kind++) {
+                offsets[kind][i + 1] = offsets[kind][i] + chunks.get(i).elementCounts[kind];
+            }
+        }
+        return offsets;
+    }
+
+    // Кусок заканчивается после '\n', поэтому строки не разрываются. Каждая строка хешируется FNV-1a,
+    // контрольная сумма куска - FNV-1a по хешам его строк, а решение о границе принимается по хешу одной строки,
+    // чтобы оно не зависело от начала куска
+    private List<Chunk> splitIntoChunks(char[] chars, int start, int end) {
+        List<Chunk> result = new ArrayList<>();
+        int chunkStart = start;
+        long chunkHash = FNV_OFFSET_BASIS;
+        long lineHash = FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (c != '\n') {
+                lineHash = (lineHash ^ c) * FNV_PRIME;
+                continue;
+            }
+
+            chunkHash = (chunkHash ^ lineHash) * FNV_PRIME;
+            final int chunkLength = i + 1 - chunkStart;
+            final boolean boundary = chunkLength >= maxChunkSize
+                    || chunkLength >= minChunkSize && ((lineHash ^ lineHash >>> 32) & boundaryMask) == 0;
+            lineHash = FNV_OFFSET_BASIS;
+            if (boundary) {
+                result.add(new Chunk(chunkStart, chunkLength, chunkHash));
+                chunkStart = i + 1;
+                chunkHash = FNV_OFFSET_BASIS;
+            }
+        }
+        if (chunkStart < end || result.isEmpty()) {
+            chunkHash = (chunkHash ^ lineHash) * FNV_PRIME;
+            result.add(new Chunk(chunkStart, end - chunkStart, chunkHash));
+        }
+        return result;
+    }
+
+    private static class Chunk {
+        // Начало куска в тексте последнего чтения, нужно только для разбора
+        private final int start;
+        private final int length;
+        private final long hash;
+        private int lineCount;
+        private ObjIndexResolver indices;
+        private final int[] elementCounts = new int[ELEMENT_KINDS];
+
+        private Chunk(int start, int length, long hash) {
+            this.start = start;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
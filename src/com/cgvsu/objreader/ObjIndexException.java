@@ -0,0 +1,20 @@
+package com.cgvsu.objreader;
+
+// Грани с индексами вне списков вершин, текстурных вершин или нормалей. Разбор не останавливается
+// на первой такой грани, поэтому исключение перечисляет строки всех неверных граней файла.
+// Номер строки и сообщение родителя относятся к первой из них
+public class ObjIndexException extends ObjReaderException {
+    private final int[] faceLineIndices;
+
+    public ObjIndexException(String errorMessage, int[] faceLineIndices) {
+        super(errorMessage, faceLineIndices[0]);
+        this.faceLineIndices = faceLineIndices.clone();
+    }
+
+    /**
+     * @return номера строк всех неверных граней по возрастанию
+     */
+    public int[] getFaceLineIndices() {
+        return faceLineIndices.clone();
+    }
+}
@@ -0,0 +1,174 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.IntArray;
+
+import java.util.List;
+
+// Перевод индексов граней в индексы списков модели прямо во время разбора. Отрицательный индекс OBJ
+// отсчитывается от конца уже прочитанного списка: -1 - последняя вершина перед гранью.
+// Каждый индекс сразу сравнивается с текущим размером списка, поэтому отдельный проход по модели не нужен.
+// Неверные грани не прерывают разбор, а запоминаются, чтобы сообщить обо всех сразу.
+// Если кусок файла разбирается без знания числа элементов перед ним, отрицательные индексы перевести нельзя:
+// тогда разбор только отмечает, что кусок нужно разобрать еще раз, когда это число станет известно
+final class ObjIndexResolver {
+    static final int VERTICES = 0;
+    static final int TEXTURE_VERTICES = 1;
+    static final int NORMALS = 2;
+    static final int ELEMENT_KINDS = 3;
+
+    private static final String[] OUT_OF_RANGE_MESSAGES = {
+            "Vertex index out of range.",
+            "Texture vertex index out of range.",
+            "Normal index out of range."
+    };
+
+    private final boolean baseKnown;
+    private final int lineOffset;
+    // Сколько элементов каждого вида прочитано до текущей строки, вместе с элементами перед куском
+    private final int[] counts = new int[ELEMENT_KINDS];
+    private final int[] bases = new int[ELEMENT_KINDS];
+    // Сколько элементов должно быть перед куском, чтобы все положительные индексы куска были в диапазоне
+    private final int[] requiredBases = new int[ELEMENT_KINDS];
+    private boolean relativeIndices;
+    private boolean needsBase;
+
+    private final IntArray errorLines = new IntArray();
+    private String firstError;
+
+    ObjIndexResolver() {
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * @param vertexBase число вершин перед разбираемым текстом
+     * @param textureVertexBase число текстурных вершин перед разбираемым текстом
+     * @param normalBase число нормалей перед разбираемым текстом
+     * @param lineOffset число строк перед разбираемым текстом, прибавляется к номерам строк в ошибках
+     */
+    ObjIndexResolver(int vertexBase, int textureVertexBase, int normalBase, int lineOffset) {
+        this(true, lineOffset);
+        bases[VERTICES] = counts[VERTICES] = vertexBase;
+        bases[TEXTURE_VERTICES] = counts[TEXTURE_VERTICES] = textureVertexBase;
+        bases[NORMALS] = counts[NORMALS] = normalBase;
+    }
+
+    private ObjIndexResolver(boolean baseKnown, int lineOffset) {
+        this.baseKnown = baseKnown;
+        this.lineOffset = lineOffset;
+    }
+
+    // Для кусков, перед которыми число элементов еще не известно. Ошибки такой разбор не запоминает
+    static ObjIndexResolver withUnknownBase() {
+        return new ObjIndexResolver(false, 0);
+    }
+
+    void addVertex() {
+        counts[VERTICES]++;
+    }
+
+    void addTextureVertex() {
+        counts[TEXTURE_VERTICES]++;
+    }
+
+    void addNormal() {
+        counts[NORMALS]++;
+    }
+
+    // Индексы приходят уже уменьшенными на единицу, как их возвращает parseFaceWord
+    void resolveFace(IntArray vertexIndices, IntArray textureVertexIndices, IntArray normalIndices, int lineInd) {
+        final boolean valid = resolve(vertexIndices, VERTICES)
+                & resolve(textureVertexIndices, TEXTURE_VERTICES)
+                & resolve(normalIndices, NORMALS);
+        if (!valid && baseKnown) {
+            errorLines.add(lineOffset + lineInd);
+        }
+    }
+
+    private boolean resolve(IntArray indices, int kind) {
+        final int count = counts[kind];
+        final int localCount = count - bases[kind];
+        boolean valid = true;
+        for (int i = 0; i < indices.size(); i++) {
+            final int index = indices.get(i);
+            if (index >= 0) {
+                requiredBases[kind] = Math.max(requiredBases[kind], index - localCount + 1);
+                if (baseKnown && index >= count) {
+                    valid = reportError(kind);
+                }
+                continue;
+            }
+
+            // index == -1 соответствует нулевому индексу в файле, такого индекса в OBJ нет
+            relativeIndices |= index < -1;
+            if (!baseKnown) {
+                needsBase = true;
+                continue;
+            }
+            final int resolved = count + index + 1;
+            if (index == -1 || resolved < 0) {
+                valid = reportError(kind);
+            } else {
+                indices.set(i, resolved);
+            }
+        }
+        return valid;
+    }
+
+    private boolean reportError(int kind) {
+        if (firstError == null) {
+            firstError = OUT_OF_RANGE_MESSAGES[kind];
+        }
+        return false;
+    }
+
+    /**
+     * @return true, если разбор без известного числа элементов встретил индекс, который нельзя проверить
+     */
+    boolean needsBase() {
+        return needsBase;
+    }
+
+    boolean hasRelativeIndices() {
+        return relativeIndices;
+    }
+
+    int getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * @return true, если все индексы разобранного текста останутся в диапазоне, когда перед ним будет
+     * указанное число элементов
+     */
+    boolean fitsBase(int vertexBase, int textureVertexBase, int normalBase) {
+        return !needsBase
+                && requiredBases[VERTICES] <= vertexBase
+                && requiredBases[TEXTURE_VERTICES] <= textureVertexBase
+                && requiredBases[NORMALS] <= normalBase;
+    }
+
+    void throwIfInvalid() {
+        throwIfInvalid(List.of(this));
+    }
+
+    // Собирает неверные грани нескольких подряд идущих кусков в одно исключение
+    static void throwIfInvalid(List<ObjIndexResolver> resolvers) {
+        String firstError = null;
+        IntArray errorLines = new IntArray();
+        for (ObjIndexResolver resolver : resolvers) {
+            if (firstError == null) {
+                firstError = resolver.firstError;
+            }
+            for (int i = 0; i < resolver.errorLines.size(); i++) {
+                errorLines.add(resolver.errorLines.get(i));
+            }
+        }
+        if (firstError == null) {
+            return;
+        }
+        if (errorLines.size() > 1) {
+            firstError += " Faces with invalid indices: " + errorLines.size() + ".";
+        }
+        throw new ObjIndexException(firstError, errorLines.toArray());
+    }
+}
@@ -0,0 +1,82 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.IntArray;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
+import com.cgvsu.model.Polygon;
+
+import java.util.ArrayList;
+
+// Приемник разобранных элементов. Разбор строк один, а складывать результат можно
+// как в обычную модель, так и в компактную
+interface ObjModelBuilder {
+    void addVertex(float x, float y, float z);
+
+    void addTextureVertex(float u, float v);
+
+    void addNormal(float x, float y, float z);
+
+    void addPolygon(IntArray vertexIndices, IntArray textureVertexIndices, IntArray normalIndices);
+
+    static ObjModelBuilder forModel(Model model) {
+        return new ObjModelBuilder() {
+            @Override
+            public void addVertex(float x, float y, float z) {
+                model.vertices.add(new Vector3f(x, y, z));
+            }
+
+            @Override
+            public void addTextureVertex(float u, float v) {
+                model.textureVertices.add(new Vector2f(u, v));
+            }
+
+            @Override
+            public void addNormal(float x, float y, float z) {
+                model.normals.add(new Vector3f(x, y, z));
+            }
+
+            @Override
+            public void addPolygon(IntArray vertexIndices, IntArray textureVertexIndices, IntArray normalIndices) {
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(toList(vertexIndices));
+                polygon.setTextureVertexIndices(toList(textureVertexIndices));
+                polygon.setNormalIndices(toList(normalIndices));
+                model.polygons.add(polygon);
+            }
+        };
+    }
+
+    static ObjModelBuilder forPackedModel(PackedModel model) {
+        return new ObjModelBuilder() {
+            @Override
+            public void addVertex(float x, float y, float z) {
+                model.addVertex(x, y, z);
+            }
+
+            @Override
+            public void addTextureVertex(float u, float v) {
+                model.addTextureVertex(u, v);
+            }
+
+            @Override
+            public void addNormal(float x, float y, float z) {
+                model.addNormal(x, y, z);
+            }
+
+            @Override
+            public void addPolygon(IntArray vertexIndices, IntArray textureVertexIndices, IntArray normalIndices) {
+                model.addPolygon(vertexIndices, textureVertexIndices, normalIndices);
+            }
+        };
+    }
+
+    static ArrayList<Integer> toList(IntArray indices) {
+        ArrayList<Integer> result = new ArrayList<Integer>(indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            result.add(indices.get(i));
+        }
+        return result;
+    }
+}
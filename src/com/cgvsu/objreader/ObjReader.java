@@ -2,12 +2,24 @@ package com.cgvsu.objreader;
 
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.IntArray;
+import com.cgvsu.model.MeshStorage;
 import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
 import com.cgvsu.model.Polygon;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Scanner;
 
 public class ObjReader {
 
@@ -16,129 +28,333 @@ public class ObjReader {
 	private static final String OBJ_NORMAL_TOKEN = "vn";
 	private static final String OBJ_FACE_TOKEN = "f";
 
+	private static final String TOO_FEW_VERTEX_ARGUMENTS = "Too few vertex arguments.";
+	private static final String TOO_FEW_TEXTURE_VERTEX_ARGUMENTS = "Too few texture vertex arguments.";
+	private static final String TOO_FEW_NORMAL_ARGUMENTS = "Too few normal arguments.";
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
 	public static Model read(String fileContent) {
+		try {
+			return read(new StringReader(fileContent));
+		} catch (IOException e) {
+			// StringReader не бросает IOException
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Читает модель из файла построчно, не загружая его содержимое в память целиком
+	 * @param path путь к OBJ файлу
+	 * @return прочитанная модель
+	 */
+	public static Model read(Path path) throws IOException {
+		try (ReadableByteChannel channel = Files.newByteChannel(path)) {
+			return read(channel);
+		}
+	}
+
+	/**
+	 * Читает модель из потока. Поток не закрывается
+	 * @param inputStream поток с содержимым OBJ файла
+	 * @return прочитанная модель
+	 */
+	public static Model read(InputStream inputStream) throws IOException {
+		return read(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Читает модель из канала. Канал не закрывается
+	 * @param channel канал с содержимым OBJ файла
+	 * @return прочитанная модель
+	 */
+	public static Model read(ReadableByteChannel channel) throws IOException {
+		return read(Channels.newReader(channel, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Читает модель в компактное представление с массивами float и int
+	 * @param fileContent содержимое OBJ файла
+	 * @return прочитанная модель
+	 */
+	public static PackedModel readPacked(String fileContent) {
+		try {
+			return readPacked(new StringReader(fileContent), MeshStorage.HEAP);
+		} catch (IOException e) {
+			// StringReader не бросает IOException
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Читает модель из файла в компактное представление, не загружая текст в память целиком
+	 * @param path путь к OBJ файлу
+	 * @return прочитанная модель
+	 */
+	public static PackedModel readPacked(Path path) throws IOException {
+		return readPacked(path, MeshStorage.HEAP);
+	}
+
+	/**
+	 * Читает модель из файла в компактное представление, размещая данные в указанном хранилище.
+	 * С хранилищем вне кучи можно читать модели, которые не помещаются в -Xmx
+	 * @param path путь к OBJ файлу
+	 * @param storage хранилище для координат и индексов
+	 * @return прочитанная модель
+	 */
+	public static PackedModel readPacked(Path path, MeshStorage storage) throws IOException {
+		try (ReadableByteChannel channel = Files.newByteChannel(path)) {
+			return readPacked(channel, storage);
+		}
+	}
+
+	/**
+	 * Читает модель из канала в компактное представление. Канал не закрывается
+	 * @param channel канал с содержимым OBJ файла
+	 * @return прочитанная модель
+	 */
+	public static PackedModel readPacked(ReadableByteChannel channel) throws IOException {
+		return readPacked(channel, MeshStorage.HEAP);
+	}
+
+	/**
+	 * Читает модель из канала в компактное представление в указанном хранилище. Канал не закрывается
+	 * @param channel канал с содержимым OBJ файла
+	 * @param storage хранилище для координат и индексов
+	 * @return прочитанная модель
+	 */
+	public static PackedModel readPacked(ReadableByteChannel channel, MeshStorage storage) throws IOException {
+		return readPacked(Channels.newReader(channel, StandardCharsets.UTF_8), storage);
+	}
+
+	// Файл читается блоками фиксированного размера, поэтому пиковая память определяется самой моделью,
+	// а не размером текста
+	private static Model read(Reader reader) throws IOException {
 		Model result = new Model();
+		parse(new ObjTokenizer(reader, READ_BUFFER_SIZE), ObjModelBuilder.forModel(result));
+		return result;
+	}
+
+	private static PackedModel readPacked(Reader reader, MeshStorage storage) throws IOException {
+		PackedModel result = new PackedModel(storage);
+		parse(new ObjTokenizer(reader, READ_BUFFER_SIZE), ObjModelBuilder.forPackedModel(result));
+		return result;
+	}
+
+	/**
+	 * Разбирает все строки курсора и передает элементы в приемник.
+	 * Индексы граней переводятся в индексы списков и проверяются, обо всех неверных гранях сообщает ObjIndexException
+	 * @return количество учтенных строк, нумерация в ошибках начинается с единицы
+	 */
+	static int parse(ObjTokenizer tokenizer, ObjModelBuilder result) throws IOException {
+		ObjIndexResolver indices = new ObjIndexResolver();
+		final int lineCount = parse(tokenizer, result, indices);
+		indices.throwIfInvalid();
+		return lineCount;
+	}
+
+	/**
+	 * Разбирает все строки курсора так же, но неверные грани только запоминает в indices.
+	 * Ошибки формата строк по-прежнему бросаются сразу
+	 * @return количество учтенных строк
+	 */
+	static int parse(ObjTokenizer tokenizer, ObjModelBuilder result, ObjIndexResolver indices) throws IOException {
+		final IntArray onePolygonVertexIndices = new IntArray();
+		final IntArray onePolygonTextureVertexIndices = new IntArray();
+		final IntArray onePolygonNormalIndices = new IntArray();
 
 		int lineInd = 0;
-		Scanner scanner = new Scanner(fileContent);
-		while (scanner.hasNextLine()) {
-			final String line = scanner.nextLine();
-			ArrayList<String> wordsInLine = new ArrayList<String>(Arrays.asList(line.split("\\s+")));
-			if (wordsInLine.isEmpty()) {
+		while (tokenizer.nextLine()) {
+			// Так же, как split("\\s+"): строка из одних пробелов не дает ни одного слова и не считается,
+			// а строка, начинающаяся с пробела, дает пустой токен и пропускается
+			if (tokenizer.isBlankLine()) {
 				continue;
 			}
 
-			final String token = wordsInLine.get(0);
-			wordsInLine.remove(0);
-
 			++lineInd;
-			switch (token) {
-				// Для структур типа вершин методы написаны так, чтобы ничего не знать о внешней среде.
-				// Они принимают только то, что им нужно для работы, а возвращают только то, что могут создать.
-				// Исключение - индекс строки. Он прокидывается, чтобы выводить сообщение об ошибке.
-				// Могло быть иначе. Например, метод parseVertex мог вместо возвращения вершины принимать вектор вершин
-				// модели или сам класс модели, работать с ним.
-				// Но такой подход может привести к большему количеству ошибок в коде. Например, в нем что-то может
-				// тайно сделаться с классом модели.
-				// А еще это портит читаемость
-				// И не стоит забывать про тесты. Чем проще вам задать данные для теста, проверить, что метод рабочий,
-				// тем лучше.
-				case OBJ_VERTEX_TOKEN -> result.vertices.add(parseVertex(wordsInLine, lineInd));
-				case OBJ_TEXTURE_TOKEN -> result.textureVertices.add(parseTextureVertex(wordsInLine, lineInd));
-				case OBJ_NORMAL_TOKEN -> result.normals.add(parseNormal(wordsInLine, lineInd));
-				case OBJ_FACE_TOKEN -> result.polygons.add(parseFace(wordsInLine, lineInd));
-				default -> {}
+			if (tokenizer.startsWithWhitespace() || !tokenizer.nextWord()) {
+				continue;
+			}
+
+			// Для структур типа вершин методы написаны так, чтобы ничего не знать о внешней среде.
+			// Они принимают только то, что им нужно для работы, а возвращают только то, что могут создать.
+			// Исключение - индекс строки. Он прокидывается, чтобы выводить сообщение об ошибке.
+			// Могло быть иначе. Например, метод parseVertex мог вместо возвращения вершины принимать вектор вершин
+			// модели или сам класс модели, работать с ним.
+			// Но такой подход может привести к большему количеству ошибок в коде. Например, в нем что-то может
+			// тайно сделаться с классом модели.
+			// А еще это портит читаемость
+			// И не стоит забывать про тесты. Чем проще вам задать данные для теста, проверить, что метод рабочий,
+			// тем лучше.
+			if (tokenizer.wordEquals(OBJ_VERTEX_TOKEN)) {
+				result.addVertex(
+						parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd),
+						parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd),
+						parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd));
+				indices.addVertex();
+			} else if (tokenizer.wordEquals(OBJ_TEXTURE_TOKEN)) {
+				result.addTextureVertex(
+						parseFloatWord(tokenizer, TOO_FEW_TEXTURE_VERTEX_ARGUMENTS, lineInd),
+						parseFloatWord(tokenizer, TOO_FEW_TEXTURE_VERTEX_ARGUMENTS, lineInd));
+				indices.addTextureVertex();
+			} else if (tokenizer.wordEquals(OBJ_NORMAL_TOKEN)) {
+				result.addNormal(
+						parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd),
+						parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd),
+						parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd));
+				indices.addNormal();
+			} else if (tokenizer.wordEquals(OBJ_FACE_TOKEN)) {
+				parseFace(tokenizer, onePolygonVertexIndices, onePolygonTextureVertexIndices, onePolygonNormalIndices, lineInd);
+				indices.resolveFace(onePolygonVertexIndices, onePolygonTextureVertexIndices, onePolygonNormalIndices, lineInd);
+				result.addPolygon(onePolygonVertexIndices, onePolygonTextureVertexIndices, onePolygonNormalIndices);
 			}
 		}
 
-		return result;
+		return lineInd;
 	}
 
-	// Всем методам кроме основного я поставил модификатор доступа protected, чтобы обращаться к ним в тестах
+	// Всем методам кроме основного я поставил модификатор доступа protected, чтобы обращаться к ним в тестах.
+	// Варианты со списком слов оставлены для тестов и разбирают слова тем же курсором, что и основной метод
 	protected static Vector3f parseVertex(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
-		try {
-			return new Vector3f(
-					Float.parseFloat(wordsInLineWithoutToken.get(0)),
-					Float.parseFloat(wordsInLineWithoutToken.get(1)),
-					Float.parseFloat(wordsInLineWithoutToken.get(2)));
+		return parseVertex(new ObjTokenizer(String.join(" ", wordsInLineWithoutToken)), lineInd);
+	}
 
-		} catch(NumberFormatException e) {
-			throw new ObjReaderException("Failed to parse float value.", lineInd);
+	protected static Vector2f parseTextureVertex(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
+		return parseTextureVertex(new ObjTokenizer(String.join(" ", wordsInLineWithoutToken)), lineInd);
+	}
 
-		} catch(IndexOutOfBoundsException e) {
-			throw new ObjReaderException("Too few vertex arguments.", lineInd);
-		}
+	protected static Vector3f parseNormal(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
+		return parseNormal(new ObjTokenizer(String.join(" ", wordsInLineWithoutToken)), lineInd);
 	}
 
-	protected static Vector2f parseTextureVertex(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
-		try {
-			return new Vector2f(
-					Float.parseFloat(wordsInLineWithoutToken.get(0)),
-					Float.parseFloat(wordsInLineWithoutToken.get(1)));
+	protected static Polygon parseFace(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
+		return parseFace(new ObjTokenizer(String.join(" ", wordsInLineWithoutToken)), lineInd);
+	}
 
-		} catch(NumberFormatException e) {
-			throw new ObjReaderException("Failed to parse float value.", lineInd);
+	protected static void parseFaceWord(
+			String wordInLine,
+			ArrayList<Integer> onePolygonVertexIndices,
+			ArrayList<Integer> onePolygonTextureVertexIndices,
+			ArrayList<Integer> onePolygonNormalIndices,
+			int lineInd) {
+		ObjTokenizer tokenizer = new ObjTokenizer(wordInLine);
+		tokenizer.nextWord();
+		IntArray vertexIndices = new IntArray();
+		IntArray textureVertexIndices = new IntArray();
+		IntArray normalIndices = new IntArray();
+		parseFaceWord(tokenizer, vertexIndices, textureVertexIndices, normalIndices, lineInd);
+		onePolygonVertexIndices.addAll(ObjModelBuilder.toList(vertexIndices));
+		onePolygonTextureVertexIndices.addAll(ObjModelBuilder.toList(textureVertexIndices));
+		onePolygonNormalIndices.addAll(ObjModelBuilder.toList(normalIndices));
+	}
 
-		} catch(IndexOutOfBoundsException e) {
-			throw new ObjReaderException("Too few texture vertex arguments.", lineInd);
-		}
+	protected static Vector3f parseVertex(final ObjTokenizer tokenizer, int lineInd) {
+		return new Vector3f(
+				parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd),
+				parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd),
+				parseFloatWord(tokenizer, TOO_FEW_VERTEX_ARGUMENTS, lineInd));
 	}
 
-	protected static Vector3f parseNormal(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
+	protected static Vector2f parseTextureVertex(final ObjTokenizer tokenizer, int lineInd) {
+		return new Vector2f(
+				parseFloatWord(tokenizer, TOO_FEW_TEXTURE_VERTEX_ARGUMENTS, lineInd),
+				parseFloatWord(tokenizer, TOO_FEW_TEXTURE_VERTEX_ARGUMENTS, lineInd));
+	}
+
+	protected static Vector3f parseNormal(final ObjTokenizer tokenizer, int lineInd) {
+		return new Vector3f(
+				parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd),
+				parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd),
+				parseFloatWord(tokenizer, TOO_FEW_NORMAL_ARGUMENTS, lineInd));
+	}
+
+	private static float parseFloatWord(final ObjTokenizer tokenizer, String tooFewMessage, int lineInd) {
+		if (!tokenizer.nextWord()) {
+			throw new ObjReaderException(tooFewMessage, lineInd);
+		}
 		try {
-			return new Vector3f(
-					Float.parseFloat(wordsInLineWithoutToken.get(0)),
-					Float.parseFloat(wordsInLineWithoutToken.get(1)),
-					Float.parseFloat(wordsInLineWithoutToken.get(2)));
+			return tokenizer.wordAsFloat();
 
 		} catch(NumberFormatException e) {
 			throw new ObjReaderException("Failed to parse float value.", lineInd);
-
-		} catch(IndexOutOfBoundsException e) {
-			throw new ObjReaderException("Too few normal arguments.", lineInd);
 		}
 	}
 
-	protected static Polygon parseFace(final ArrayList<String> wordsInLineWithoutToken, int lineInd) {
-		ArrayList<Integer> onePolygonVertexIndices = new ArrayList<Integer>();
-		ArrayList<Integer> onePolygonTextureVertexIndices = new ArrayList<Integer>();
-		ArrayList<Integer> onePolygonNormalIndices = new ArrayList<Integer>();
-
-		for (String s : wordsInLineWithoutToken) {
-			parseFaceWord(s, onePolygonVertexIndices, onePolygonTextureVertexIndices, onePolygonNormalIndices, lineInd);
-		}
+	protected static Polygon parseFace(final ObjTokenizer tokenizer, int lineInd) {
+		IntArray vertexIndices = new IntArray();
+		IntArray textureVertexIndices = new IntArray();
+		IntArray normalIndices = new IntArray();
+		parseFace(tokenizer, vertexIndices, textureVertexIndices, normalIndices, lineInd);
 
 		Polygon result = new Polygon();
-		result.setVertexIndices(onePolygonVertexIndices);
-		result.setTextureVertexIndices(onePolygonTextureVertexIndices);
-		result.setNormalIndices(onePolygonNormalIndices);
+		result.setVertexIndices(ObjModelBuilder.toList(vertexIndices));
+		result.setTextureVertexIndices(ObjModelBuilder.toList(textureVertexIndices));
+		result.setNormalIndices(ObjModelBuilder.toList(normalIndices));
 		return result;
 	}
 
+	// Индексы складываются в переиспользуемые массивы, которые очищаются перед каждым полигоном
+	private static void parseFace(
+			final ObjTokenizer tokenizer,
+			IntArray onePolygonVertexIndices,
+			IntArray onePolygonTextureVertexIndices,
+			IntArray onePolygonNormalIndices,
+			int lineInd) {
+		onePolygonVertexIndices.clear();
+		onePolygonTextureVertexIndices.clear();
+		onePolygonNormalIndices.clear();
+		while (tokenizer.nextWord()) {
+			parseFaceWord(tokenizer, onePolygonVertexIndices, onePolygonTextureVertexIndices, onePolygonNormalIndices, lineInd);
+		}
+	}
+
 	// Обратите внимание, что для чтения полигонов я выделил еще один вспомогательный метод.
 	// Это бывает очень полезно и с точки зрения структурирования алгоритма в голове, и с точки зрения тестирования.
 	// В радикальных случаях не бойтесь выносить в отдельные методы и тестировать код из одной-двух строчек.
+	// Слово делится по '/' так же, как split("/"): пустые части в конце отбрасываются
 	protected static void parseFaceWord(
-			String wordInLine,
-			ArrayList<Integer> onePolygonVertexIndices,
-			ArrayList<Integer> onePolygonTextureVertexIndices,
-			ArrayList<Integer> onePolygonNormalIndices,
+			final ObjTokenizer tokenizer,
+			IntArray onePolygonVertexIndices,
+			IntArray onePolygonTextureVertexIndices,
+			IntArray onePolygonNormalIndices,
 			int lineInd) {
+		final int wordStart = tokenizer.wordStart();
+		final int wordEnd = tokenizer.wordEnd();
+
+		int firstSlash = wordEnd;
+		int secondSlash = wordEnd;
+		int thirdSlash = wordEnd;
+		int slashCount = 0;
+		int lastNonEmptyPart = -1;
+		for (int i = wordStart; i < wordEnd; i++) {
+			if (tokenizer.charAt(i) == '/') {
+				switch (slashCount) {
+					case 0 -> firstSlash = i;
+					case 1 -> secondSlash = i;
+					case 2 -> thirdSlash = i;
+					default -> {}
+				}
+				slashCount++;
+			} else {
+				lastNonEmptyPart = slashCount;
+			}
+		}
+		final int partCount = slashCount == 0 ? 1 : lastNonEmptyPart + 1;
+
 		try {
-			String[] wordIndices = wordInLine.split("/");
-			switch (wordIndices.length) {
+			switch (partCount) {
 				case 1 -> {
-					onePolygonVertexIndices.add(Integer.parseInt(wordIndices[0]) - 1);
+					onePolygonVertexIndices.add(tokenizer.parseInt(wordStart, firstSlash) - 1);
 				}
 				case 2 -> {
-					onePolygonVertexIndices.add(Integer.parseInt(wordIndices[0]) - 1);
-					onePolygonTextureVertexIndices.add(Integer.parseInt(wordIndices[1]) - 1);
+					onePolygonVertexIndices.add(tokenizer.parseInt(wordStart, firstSlash) - 1);
+					onePolygonTextureVertexIndices.add(tokenizer.parseInt(firstSlash + 1, secondSlash) - 1);
 				}
 				case 3 -> {
-					onePolygonVertexIndices.add(Integer.parseInt(wordIndices[0]) - 1);
-					onePolygonNormalIndices.add(Integer.parseInt(wordIndices[2]) - 1);
-					if (!wordIndices[1].equals("")) {
-						onePolygonTextureVertexIndices.add(Integer.parseInt(wordIndices[1]) - 1);
+					onePolygonVertexIndices.add(tokenizer.parseInt(wordStart, firstSlash) - 1);
+					onePolygonNormalIndices.add(tokenizer.parseInt(secondSlash + 1, thirdSlash) - 1);
+					if (secondSlash != firstSlash + 1) {
+						onePolygonTextureVertexIndices.add(tokenizer.parseInt(firstSlash + 1, secondSlash) - 1);
 					}
 				}
 				default -> {
@@ -148,9 +364,6 @@ public class ObjReader {
 
 		} catch(NumberFormatException e) {
 			throw new ObjReaderException("Failed to parse int value.", lineInd);
-
-		} catch(IndexOutOfBoundsException e) {
-			throw new ObjReaderException("Too few arguments.", lineInd);
 		}
 	}
 }
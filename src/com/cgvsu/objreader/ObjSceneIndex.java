@@ -0,0 +1,490 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Оглавление большого OBJ файла со многими объектами. Первый проход только читает начала строк: считает
+// вершины, текстурные вершины, нормали и грани и запоминает, где в файле начинаются строки o, g и usemtl.
+// Числа при этом не разбираются. Каждый участок между такими строками - отдельная часть модели
+// со своими именами объекта, группы и материала, диапазоном байтов, номером первой строки и числом элементов
+// каждого вида перед ней. По этим числам часть потом читается отдельно от остального файла:
+// разбирается только ее диапазон, а индексы граней переводятся в индексы ее собственных списков
+public class ObjSceneIndex {
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private static final int VERTICES = ObjIndexResolver.VERTICES;
+    private static final int TEXTURE_VERTICES = ObjIndexResolver.TEXTURE_VERTICES;
+    private static final int NORMALS = ObjIndexResolver.NORMALS;
+    private static final int ELEMENT_KINDS = ObjIndexResolver.ELEMENT_KINDS;
+
+    private final Path path;
+    private final List<SubMesh> subMeshes;
+    private final List<String> materialLibraries;
+    // bases[kind][i] - число элементов вида kind перед частью i, для поиска части по глобальному индексу
+    private final int[][] bases;
+
+    private ObjSceneIndex(Path path, List<SubMesh> subMeshes, List<String> materialLibraries) {
+        this.path = path;
+        this.subMeshes = Collections.unmodifiableList(subMeshes);
+        this.materialLibraries = Collections.unmodifiableList(materialLibraries);
+        this.bases = collectBases(subMeshes);
+    }
+
+    /**
+     * Строит оглавление одним проходом по файлу, не разбирая чисел
+     * @param path путь к OBJ файлу
+     * @return оглавление, по которому части файла читаются методами load
+     */
+    public static ObjSceneIndex build(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Scanner scanner = new Scanner();
+            scanner.scan(channel);
+            return new ObjSceneIndex(path, scanner.subMeshes, scanner.materialLibraries);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return части файла в порядке следования. Участки без вершин, нормалей и граней не включаются
+     */
+    public List<SubMesh> getSubMeshes() {
+        return subMeshes;
+    }
+
+    /**
+     * @return имена из строк mtllib в порядке следования
+     */
+    public List<String> getMaterialLibraries() {
+        return materialLibraries;
+    }
+
+    /**
+     * Читает все части объекта в одну модель
+     * @param objectName имя из строки o
+     * @return модель только из элементов этого объекта
+     */
+    public Model loadObject(String objectName) throws IOException {
+        return load(subMesh -> objectName.equals(subMesh.objectName), "object", objectName);
+    }
+
+    /**
+     * Читает все части группы в одну модель
+     * @param groupName имя из строки g
+     * @return модель только из элементов этой группы
+     */
+    public Model loadGroup(String groupName) throws IOException {
+        return load(subMesh -> groupName.equals(subMesh.groupName), "group", groupName);
+    }
+
+    private Model load(Predicate<SubMesh> filter, String kind, String name) throws IOException {
+        List<SubMesh> selected = subMeshes.stream().filter(filter).toList();
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("No " + kind + " named " + name + " in " + path);
+        }
+        return load(selected);
+    }
+
+    public Model load(SubMesh subMesh) throws IOException {
+        return load(List.of(subMesh));
+    }
+
+    /**
+     * Читает части в одну модель. Вершины, текстурные вершины и нормали идут в порядке частей в файле,
+     * а за ними те элементы из других частей файла, на которые ссылаются грани выбранных частей
+     * @param selected части из getSubMeshes
+     * @return отдельная модель, индексы граней которой ссылаются на ее собственные списки
+     */
+    public Model load(List<SubMesh> selected) throws IOException {
+        List<SubMesh> ranges = selected.stream().distinct().sorted(Comparator.comparingLong(SubMesh::getStart)).toList();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Model result = new Model();
+            final int[][] localOffsets = new int[ELEMENT_KINDS][ranges.size()];
+            List<ObjIndexResolver> resolvers = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                final SubMesh range = ranges.get(i);
+                localOffsets[VERTICES][i] = result.vertices.size();
+                localOffsets[TEXTURE_VERTICES][i] = result.textureVertices.size();
+                localOffsets[NORMALS][i] = result.normals.size();
+                // Индексы разбираются и проверяются как при чтении всего файла, то есть остаются глобальными
+                ObjIndexResolver indices = new ObjIndexResolver(range.bases[VERTICES], range.bases[TEXTURE_VERTICES],
+                        range.bases[NORMALS], range.lineOffset);
+                parseRange(channel, range, ObjModelBuilder.forModel(result), indices);
+                resolvers.add(indices);
+            }
+            ObjIndexResolver.throwIfInvalid(resolvers);
+
+            HashMap<SubMesh, Model> foreignRanges = new HashMap<>();
+            remap(channel, result, ranges, localOffsets, VERTICES, Polygon::getVertexIndices,
+                    model -> model.vertices, foreignRanges);
+            remap(channel, result, ranges, localOffsets, TEXTURE_VERTICES, Polygon::getTextureVertexIndices,
+                    model -> model.textureVertices, foreignRanges);
+            remap(channel, result, ranges, localOffsets, NORMALS, Polygon::getNormalIndices,
+                    model -> model.normals, foreignRanges);
+            return result;
+        }
+    }
+
+    // Переводит глобальные индексы вида kind в индексы списков модели. Индекс из прочитанных частей
+    // находится двоичным поиском по их началам. Элемент из другой части добавляется в конец списка:
+    // эта часть разбирается целиком один раз, сколько бы ее элементов ни понадобилось
+    private <T> void remap(
+            FileChannel channel,
+            Model result,
+            List<SubMesh> ranges,
+            int[][] localOffsets,
+            int kind,
+            Function<Polygon, ArrayList<Integer>> polygonIndices,
+            Function<Model, ArrayList<T>> elements,
+            HashMap<SubMesh, Model> foreignRanges) throws IOException {
+        final int[] rangeBases = collectBases(ranges)[kind];
+        final ArrayList<T> resultElements = elements.apply(result);
+        HashMap<Integer, Integer> foreignIndices = new HashMap<>();
+
+        for (Polygon polygon : result.polygons) {
+            ArrayList<Integer> indices = polygonIndices.apply(polygon);
+            for (int i = 0; i < indices.size(); i++) {
+                final int index = indices.get(i);
+                final int range = findRange(rangeBases, index);
+                if (range >= 0 && index < ranges.get(range).bases[kind] + ranges.get(range).counts[kind]) {
+                    indices.set(i, localOffsets[kind][range] + index - ranges.get(range).bases[kind]);
+                    continue;
+                }
+
+                Integer local = foreignIndices.get(index);
+                if (local == null) {
+                    local = resultElements.size();
+                    foreignIndices.put(index, local);
+                    final SubMesh owner = findOwner(kind, index);
+                    Model ownerModel = foreignRanges.get(owner);
+                    if (ownerModel == null) {
+                        ownerModel = new Model();
+                        parseRange(channel, owner, ObjModelBuilder.forModel(ownerModel), ObjIndexResolver.withUnknownBase());
+                        foreignRanges.put(owner, ownerModel);
+                    }
+                    resultElements.add(elements.apply(ownerModel).get(index - owner.bases[kind]));
+                }
+                indices.set(i, local);
+            }
+        }
+    }
+
+    private static int[][] collectBases(List<SubMesh> ranges) {
+        final int[][] result = new int[ELEMENT_KINDS][ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            for (int kind = 0; kind < ELEMENT_KINDS; kind++) {
+                result[kind][i] = ranges.get(i).bases[kind];
+            }
+        }
+        return result;
+    }
+
+    // Индекс последней части, начало которой не больше index, или -1
+    private static int findRange(int[] bases, int index) {
+        int low = 0;
+        int high = bases.length - 1;
+        int result = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (bases[middle] <= index) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return result;
+    }
+
+    // Индексы уже проверены разбором, поэтому часть с этим элементом всегда найдется.
+    // У частей без элементов этого вида то же начало, что у следующей, поэтому от найденной идем назад
+    private SubMesh findOwner(int kind, int index) {
+        int range = findRange(bases[kind], index);
+        while (index >= subMeshes.get(range).bases[kind] + subMeshes.get(range).counts[kind]) {
+            range--;
+        }
+        return subMeshes.get(range);
+    }
+
+    private static void parseRange(FileChannel channel, SubMesh range, ObjModelBuilder builder, ObjIndexResolver indices)
+            throws IOException {
+        InputStreamReader reader = new InputStreamReader(
+                new RangeInputStream(channel, range.start, range.end), StandardCharsets.UTF_8);
+        try {
+            ObjReader.parse(new ObjTokenizer(reader, READ_BUFFER_SIZE), builder, indices);
+        } catch (ObjReaderException exception) {
+            throw new ObjReaderException(exception.getErrorMessage(), range.lineOffset + exception.getLineInd());
+        }
+    }
+
+    /**
+     * Участок файла между строками o, g или usemtl
+     */
+    public static class SubMesh {
+        private final String objectName;
+        private final String groupName;
+        private final String materialName;
+        private final long start;
+        private final int lineOffset;
+        // Число элементов каждого вида перед участком и в нем самом
+        private final int[] bases = new int[ELEMENT_KINDS];
+        private final int[] counts = new int[ELEMENT_KINDS];
+        private long end;
+        private int polygonCount;
+
+        private SubMesh(String objectName, String groupName, String materialName, long start, int lineOffset, int[] bases) {
+            this.objectName = objectName;
+            this.groupName = groupName;
+            this.materialName = materialName;
+            this.start = start;
+            this.lineOffset = lineOffset;
+            System.arraycopy(bases, 0, this.bases, 0, ELEMENT_KINDS);
+        }
+
+        /**
+         * @return имя из последней строки o перед участком или null
+         */
+        public String getObjectName() {
+            return objectName;
+        }
+
+        /**
+         * @return имя из последней строки g внутри объекта или null
+         */
+        public String getGroupName() {
+            return groupName;
+        }
+
+        /**
+         * @return имя из последней строки usemtl перед участком или null
+         */
+        public String getMaterialName() {
+            return materialName;
+        }
+
+        /**
+         * Начало участка в байтах от начала файла
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Конец участка в байтах, не включая
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        public int getVertexCount() {
+            return counts[VERTICES];
+        }
+
+        public int getTextureVertexCount() {
+            return counts[TEXTURE_VERTICES];
+        }
+
+        public int getNormalCount() {
+            return counts[NORMALS];
+        }
+
+        public int getPolygonCount() {
+            return polygonCount;
+        }
+
+        private boolean isEmpty() {
+            return polygonCount == 0 && counts[VERTICES] == 0 && counts[TEXTURE_VERTICES] == 0 && counts[NORMALS] == 0;
+        }
+    }
+
+    // Проход по байтам файла. Строки делятся и считаются так же, как в ObjTokenizer и ObjReader.parse:
+    // пустая строка учитывается в номерах строк, строка из одних пробелов - нет
+    private static class Scanner {
+        private final List<SubMesh> subMeshes = new ArrayList<>();
+        private final List<String> materialLibraries = new ArrayList<>();
+        private final int[] totals = new int[ELEMENT_KINDS];
+        private int lineCount;
+        private SubMesh current = new SubMesh(null, null, null, 0, 0, totals);
+
+        private void scan(FileChannel channel) throws IOException {
+            byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+            // Смещение начала буфера в файле и конец прочитанных данных в буфере
+            long bufferOffset = 0;
+            int bufferEnd = 0;
+            boolean endOfInput = false;
+            int lineStart = 0;
+            while (true) {
+                int i = lineStart;
+                while (i < bufferEnd && buffer[i] != '\n' && buffer[i] != '\r') {
+                    i++;
+                }
+
+                // '\r' в конце буфера может оказаться началом "\r\n", поэтому такую строку дочитываем
+                if (i < bufferEnd && (buffer[i] == '\n' || i + 1 < bufferEnd || endOfInput)) {
+                    processLine(buffer, lineStart, i, bufferOffset + lineStart);
+                    lineStart = buffer[i] == '\r' && i + 1 < bufferEnd && buffer[i + 1] == '\n' ? i + 2 : i + 1;
+                    continue;
+                }
+                if (endOfInput) {
+                    if (lineStart < bufferEnd) {
+                        processLine(buffer, lineStart, bufferEnd, bufferOffset + lineStart);
+                    }
+                    break;
+                }
+
+                // Незаконченная строка переносится в начало буфера, а если она заняла его целиком, буфер растет
+                System.arraycopy(buffer, lineStart, buffer, 0, bufferEnd - lineStart);
+                bufferOffset += lineStart;
+                bufferEnd -= lineStart;
+                lineStart = 0;
+                if (bufferEnd == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                final int read = channel.read(ByteBuffer.wrap(buffer, bufferEnd, buffer.length - bufferEnd));
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    bufferEnd += read;
+                }
+            }
+            finishSubMesh(channel.size());
+        }
+
+        private void processLine(byte[] line, int start, int end, long fileOffset) {
+            if (start < end && isWhitespace(line[start])) {
+                // Как в ObjReader.parse: строка из одних пробелов не считается, а строка с пробелом в начале
+                // считается, но не разбирается
+                for (int i = start; i < end; i++) {
+                    if (!isWhitespace(line[i])) {
+                        lineCount++;
+                        return;
+                    }
+                }
+                return;
+            }
+
+            int wordEnd = start;
+            while (wordEnd < end && !isWhitespace(line[wordEnd])) {
+                wordEnd++;
+            }
+            final int wordLength = wordEnd - start;
+            if (wordLength == 1 && line[start] == 'v') {
+                current.counts[VERTICES]++;
+            } else if (wordLength == 2 && line[start] == 'v' && line[start + 1] == 't') {
+                current.counts[TEXTURE_VERTICES]++;
+            } else if (wordLength == 2 && line[start] == 'v' && line[start + 1] == 'n') {
+                current.counts[NORMALS]++;
+            } else if (wordLength == 1 && line[start] == 'f') {
+                current.polygonCount++;
+            } else if (wordLength == 1 && line[start] == 'o') {
+                // Новый объект начинается без группы
+                startSubMesh(readName(line, wordEnd, end), null, current.materialName, fileOffset);
+            } else if (wordLength == 1 && line[start] == 'g') {
+                startSubMesh(current.objectName, readName(line, wordEnd, end), current.materialName, fileOffset);
+            } else if (wordEquals(line, start, wordEnd, "usemtl")) {
+                startSubMesh(current.objectName, current.groupName, readName(line, wordEnd, end), fileOffset);
+            } else if (wordEquals(line, start, wordEnd, "mtllib")) {
+                materialLibraries.add(readName(line, wordEnd, end));
+            }
+            lineCount++;
+        }
+
+        private void startSubMesh(String objectName, String groupName, String materialName, long fileOffset) {
+            finishSubMesh(fileOffset);
+            current = new SubMesh(objectName, groupName, materialName, fileOffset, lineCount, totals);
+        }
+
+        private void finishSubMesh(long fileOffset) {
+            current.end = fileOffset;
+            for (int kind = 0; kind < ELEMENT_KINDS; kind++) {
+                totals[kind] += current.counts[kind];
+            }
+            if (!current.isEmpty()) {
+                subMeshes.add(current);
+            }
+        }
+
+        private static boolean wordEquals(byte[] line, int start, int end, String word) {
+            if (end - start != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (line[start + i] != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Остаток строки без пробелов по краям. Имена могут быть не латинскими, поэтому декодируются из UTF-8
+        private static String readName(byte[] line, int start, int end) {
+            while (start < end && isWhitespace(line[start])) {
+                start++;
+            }
+            while (end > start && isWhitespace(line[end - 1])) {
+                end--;
+            }
+            return new String(line, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        // Тот же набор символов, что в ObjTokenizer. В UTF-8 эти байты не встречаются внутри многобайтовых символов
+        private static boolean isWhitespace(byte c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+    }
+
+    // Поток байтов одного участка файла. Чтение идет по абсолютным позициям, положение канала не меняется
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+            if (position >= end) {
+                return -1;
+            }
+            final int limit = (int) Math.min(length, end - position);
+            final int read = channel.read(ByteBuffer.wrap(bytes, offset, limit), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.cgvsu.objreader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Курсор по символам OBJ файла. Заменяет split("\\s+") и split("/"): строки и слова описываются
+// границами в общем буфере, а числа разбираются прямо из него, без промежуточных String
+final class ObjTokenizer {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Мантисса до 2^53 и степень десяти до 22 представимы в double точно,
+    // поэтому одно деление или умножение дает корректно округленный результат
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    // Младшие биты мантиссы double, которые отбрасываются при переходе к float
+    private static final long FLOAT_DROPPED_BITS_MASK = (1L << 29) - 1;
+    private static final long FLOAT_HALF_WAY = 1L << 28;
+
+    private final Reader reader;
+    private char[] buffer;
+    private int bufferEnd;
+    private int position;
+    private boolean endOfInput;
+
+    private int lineStart;
+    private int lineEnd;
+    private int cursor;
+    private int wordStart;
+    private int wordEnd;
+
+    ObjTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    ObjTokenizer(char[] chars, int start, int end) {
+        this.reader = null;
+        this.buffer = chars;
+        this.position = start;
+        this.bufferEnd = end;
+        this.endOfInput = true;
+    }
+
+    // Курсор по одной строке, например по уже выделенному слову
+    ObjTokenizer(CharSequence line) {
+        this(line.toString().toCharArray(), 0, line.length());
+        setLine(bufferEnd, bufferEnd);
+    }
+
+    /**
+     * Переходит к следующей строке. Разделители строк такие же, как у BufferedReader.readLine
+     * @return false, если входные данные закончились
+     */
+    boolean nextLine() throws IOException {
+        int searchFrom = position;
+        while (true) {
+            for (int i = searchFrom; i < bufferEnd; i++) {
+                final char c = buffer[i];
+                if (c == '\n') {
+                    return setLine(i, i + 1);
+                }
+                if (c == '\r') {
+                    if (i + 1 < bufferEnd) {
+                        return setLine(i, buffer[i + 1] == '\n' ? i + 2 : i + 1);
+                    }
+                    if (endOfInput) {
+                        return setLine(i, i + 1);
+                    }
+                    // Не знаем, идет ли дальше '\n', поэтому дочитываем и проверяем этот символ еще раз
+                    searchFrom = i;
+                    break;
+                }
+                searchFrom = i + 1;
+            }
+            if (endOfInput) {
+                if (position == bufferEnd) {
+                    return false;
+                }
+                return setLine(bufferEnd, bufferEnd);
+            }
+            searchFrom -= position;
+            fill();
+            searchFrom += position;
+        }
+    }
+
+    private boolean setLine(int end, int next) {
+        lineStart = position;
+        lineEnd = end;
+        cursor = lineStart;
+        wordStart = lineStart;
+        wordEnd = lineStart;
+        position = next;
+        return true;
+    }
+
+    // Сдвигает непрочитанный хвост в начало буфера и дочитывает данные. Буфер растет,
+    // только если одна строка не помещается в него целиком
+    private void fill() throws IOException {
+        final int remaining = bufferEnd - position;
+        if (remaining == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, position, grown, 0, remaining);
+            buffer = grown;
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        bufferEnd = remaining;
+
+        final int read = reader.read(buffer, bufferEnd, buffer.length - bufferEnd);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            bufferEnd += read;
+        }
+    }
+
+    /**
+     * @return true, если строка непустая и состоит только из пробельных символов
+     */
+    boolean isBlankLine() {
+        if (lineStart == lineEnd) {
+            return false;
+        }
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (!isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean startsWithWhitespace() {
+        return lineStart < lineEnd && isWhitespace(buffer[lineStart]);
+    }
+
+    /**
+     * Переходит к следующему слову текущей строки
+     * @return false, если слов в строке больше нет
+     */
+    boolean nextWord() {
+        int i = cursor;
+        while (i < lineEnd && isWhitespace(buffer[i])) {
+            i++;
+        }
+        wordStart = i;
+        while (i < lineEnd && !isWhitespace(buffer[i])) {
+            i++;
+        }
+        wordEnd = i;
+        cursor = i;
+        return wordStart < wordEnd;
+    }
+
+    boolean wordEquals(String value) {
+        if (wordEnd - wordStart != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer[wordStart + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int wordStart() {
+        return wordStart;
+    }
+
+    int wordEnd() {
+        return wordEnd;
+    }
+
+    char charAt(int index) {
+        return buffer[index];
+    }
+
+    float wordAsFloat() {
+        return parseFloat(wordStart, wordEnd);
+    }
+
+    /**
+     * Разбирает число с плавающей точкой из диапазона буфера.
+     * Результат всегда совпадает с Float.parseFloat: простые десятичные записи считаются напрямую,
+     * а все остальное (экспоненты вне диапазона, NaN, шестнадцатеричная запись) уходит в Float.parseFloat
+     * @throws NumberFormatException если диапазон не является числом
+     */
+    float parseFloat(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        for (; i < end && isDigit(buffer[i]); i++) {
+            hasDigits = true;
+            if (mantissa != 0 || buffer[i] != '0') {
+                mantissa = mantissa * 10 + (buffer[i] - '0');
+                digits++;
+            }
+        }
+        if (i < end && buffer[i] == '.') {
+            i++;
+            for (; i < end && isDigit(buffer[i]); i++) {
+                hasDigits = true;
+                if (mantissa != 0 || buffer[i] != '0') {
+                    mantissa = mantissa * 10 + (buffer[i] - '0');
+                    digits++;
+                }
+                exponent--;
+            }
+        }
+        if (hasDigits && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            int exponentDigits = 0;
+            for (; i < end && isDigit(buffer[i]) && exponentDigits < 4; i++, exponentDigits++) {
+                explicitExponent = explicitExponent * 10 + (buffer[i] - '0');
+            }
+            if (exponentDigits == 0) {
+                return parseFloatSlow(start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (!hasDigits || i != end || digits > MAX_MANTISSA_DIGITS || mantissa > MAX_EXACT_MANTISSA
+                || exponent < -22 || exponent > 22) {
+            return parseFloatSlow(start, end);
+        }
+
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        // Двойное округление double -> float ошибается только если double попал ровно в середину
+        // между соседними float. Такие редкие значения отдаем точному разбору
+        if ((Double.doubleToRawLongBits(value) & FLOAT_DROPPED_BITS_MASK) == FLOAT_HALF_WAY) {
+            return parseFloatSlow(start, end);
+        }
+        float result = (float) value;
+        return negative ? -result : result;
+    }
+
+    private float parseFloatSlow(int start, int end) {
+        return Float.parseFloat(new String(buffer, start, end - start));
+    }
+
+    /**
+     * Разбирает целое число из диапазона буфера по правилам Integer.parseInt
+     * @throws NumberFormatException если диапазон не является числом или не помещается в int
+     */
+    int parseInt(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Empty integer value");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            final char c = buffer[i];
+            if (!isDigit(c)) {
+                // Integer.parseInt понимает и не-ASCII цифры, такие редкие случаи отдаем ему
+                return Integer.parseInt(new String(buffer, start, end - start));
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Integer value is out of range");
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Integer value is out of range");
+        }
+        return (int) value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Тот же набор символов, что у \s в регулярных выражениях
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
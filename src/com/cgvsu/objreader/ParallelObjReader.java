@@ -0,0 +1,240 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Параллельное чтение больших OBJ файлов. Файл режется на куски по границам строк,
+// каждый кусок разбирается в свою модель на ForkJoinPool, после чего модели склеиваются по порядку.
+// Положительные индексы в полигонах абсолютные, поэтому при склейке их пересчитывать не нужно.
+// Куски с отрицательными индексами или индексами, которые не проверить без числа элементов перед куском,
+// разбираются второй раз, когда это число известно
+public class ParallelObjReader {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 26;
+    // Кусков больше, чем потоков, чтобы потоки не простаивали из-за неравномерных кусков
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BOUNDARY_SEARCH_WINDOW = 1 << 12;
+
+    /**
+     * Читает модель из файла, используя общий ForkJoinPool
+     * @param path путь к OBJ файлу
+     * @return прочитанная модель, такая же, как у ObjReader.read
+     */
+    public static Model read(Path path) throws IOException {
+        return read(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Читает модель из файла, разбирая куски в указанном пуле
+     * @param path путь к OBJ файлу
+     * @param pool пул потоков для разбора
+     * @return прочитанная модель, такая же, как у ObjReader.read
+     */
+    public static Model read(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (pool.getParallelism() == 1) {
+                return ObjReader.read(channel);
+            }
+            long chunkSize = channel.size() / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+            chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+            return read(channel, pool, (int) chunkSize);
+        }
+    }
+
+    static Model read(FileChannel channel, ForkJoinPool pool, int chunkSize) throws IOException {
+        final List<Long> boundaries = findChunkBoundaries(channel, chunkSize);
+
+        List<Callable<ChunkResult>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < boundaries.size(); i++) {
+            final long start = boundaries.get(i);
+            final long end = boundaries.get(i + 1);
+            tasks.add(() -> parseChunk(channel, start, end, ObjIndexResolver.withUnknownBase()));
+        }
+
+        List<ChunkResult> chunks = new ArrayList<>(tasks.size());
+        int lineOffset = 0;
+        for (Future<ChunkResult> future : pool.invokeAll(tasks)) {
+            try {
+                ChunkResult chunk = future.get();
+                chunks.add(chunk);
+                lineOffset += chunk.lineCount;
+
+            } catch (ExecutionException e) {
+                // Ошибки разбираем строго по порядку кусков: так пользователь получает
+                // ту же первую ошибку и тот же номер строки, что и при последовательном чтении
+                if (e.getCause() instanceof ObjReaderException exception) {
+                    throw new ObjReaderException(exception.getErrorMessage(), lineOffset + exception.getLineInd());
+                }
+                if (e.getCause() instanceof IOException exception) {
+                    throw exception;
+                }
+                throw new IllegalStateException(e.getCause());
+
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+        }
+
+        resolveIndices(channel, pool, boundaries, chunks);
+        return merge(chunks);
+    }
+
+    // Теперь число элементов перед каждым куском известно. Куски, индексы которых от него зависят,
+    // разбираются заново, а неверные грани всех кусков собираются в одно исключение
+    private static void resolveIndices(
+            FileChannel channel, ForkJoinPool pool, List<Long> boundaries, List<ChunkResult> chunks) throws IOException {
+        List<Integer> reparsedChunks = new ArrayList<>();
+        List<Callable<ChunkResult>> tasks = new ArrayList<>();
+        int vertexBase = 0;
+        int textureVertexBase = 0;
+        int normalBase = 0;
+        int lineOffset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            final Model model = chunks.get(i).model;
+            if (!chunks.get(i).indices.fitsBase(vertexBase, textureVertexBase, normalBase)) {
+                final long start = boundaries.get(i);
+                final long end = boundaries.get(i + 1);
+                final ObjIndexResolver indices = new ObjIndexResolver(vertexBase, textureVertexBase, normalBase, lineOffset);
+                reparsedChunks.add(i);
+                tasks.add(() -> parseChunk(channel, start, end, indices));
+            }
+            vertexBase += model.vertices.size();
+            textureVertexBase += model.textureVertices.size();
+            normalBase += model.normals.size();
+            lineOffset += chunks.get(i).lineCount;
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        List<ObjIndexResolver> resolvers = new ArrayList<>(tasks.size());
+        List<Future<ChunkResult>> futures = pool.invokeAll(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                ChunkResult chunk = futures.get(i).get();
+                chunks.set(reparsedChunks.get(i), chunk);
+                resolvers.add(chunk.indices);
+
+            } catch (ExecutionException e) {
+                // Ошибки формата строк уже проверены первым разбором
+                if (e.getCause() instanceof IOException exception) {
+                    throw exception;
+                }
+                throw new IllegalStateException(e.getCause());
+
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+        }
+        ObjIndexResolver.throwIfInvalid(resolvers);
+    }
+
+    private static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Interrupted while reading OBJ file");
+    }
+
+    // Граница куска ставится сразу после '\n', поэтому строки и многобайтовые символы UTF-8 не разрываются
+    private static List<Long> findChunkBoundaries(FileChannel channel, int chunkSize) throws IOException {
+        final long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_SEARCH_WINDOW);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = size;
+            long searchFrom = position - 1;
+            search:
+            while (searchFrom < size) {
+                window.clear();
+                final int read = channel.read(window, searchFrom);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        boundary = searchFrom + i + 1;
+                        break search;
+                    }
+                }
+                searchFrom += read;
+            }
+            if (boundary >= size) {
+                break;
+            }
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end, ObjIndexResolver indices)
+            throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        ObjTokenizer tokenizer = new ObjTokenizer(
+                chars.array(), chars.arrayOffset() + chars.position(), chars.arrayOffset() + chars.limit());
+
+        Model model = new Model();
+        final int lineCount = ObjReader.parse(tokenizer, ObjModelBuilder.forModel(model), indices);
+        return new ChunkResult(model, lineCount, indices);
+    }
+
+    private static Model merge(List<ChunkResult> chunks) {
+        if (chunks.size() == 1) {
+            return chunks.get(0).model;
+        }
+
+        int vertexCount = 0;
+        int textureVertexCount = 0;
+        int normalCount = 0;
+        int polygonCount = 0;
+        for (ChunkResult chunk : chunks) {
+            vertexCount += chunk.model.vertices.size();
+            textureVertexCount += chunk.model.textureVertices.size();
+            normalCount += chunk.model.normals.size();
+            polygonCount += chunk.model.polygons.size();
+        }
+
+        Model result = new Model();
+        result.vertices.ensureCapacity(vertexCount);
+        result.textureVertices.ensureCapacity(textureVertexCount);
+        result.normals.ensureCapacity(normalCount);
+        result.polygons.ensureCapacity(polygonCount);
+        for (ChunkResult chunk : chunks) {
+            result.vertices.addAll(chunk.model.vertices);
+            result.textureVertices.addAll(chunk.model.textureVertices);
+            result.normals.addAll(chunk.model.normals);
+            result.polygons.addAll(chunk.model.polygons);
+        }
+        return result;
+    }
+
+    private static class ChunkResult {
+        private final Model model;
+        private final int lineCount;
+        private final ObjIndexResolver indices;
+
+        private ChunkResult(Model model, int lineCount, ObjIndexResolver indices) {
+            this.model = model;
+            this.lineCount = lineCount;
+            this.indices = indices;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.cgvsu.objwriter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Способ записи чисел с плавающей точкой в OBJ файл.
+ * SHORTEST дает тот же текст, что и Float.toString, FIXED пишет заданное количество знаков после точки
+ */
+public final class FloatFormat {
+    /**
+     * Самая короткая запись, по которой читается то же самое число. Совпадает с Float.toString
+     */
+    public static final FloatFormat SHORTEST = new FloatFormat(-1);
+
+    private static final int MAX_PRECISION = 9;
+    private static final int MAX_SIGNIFICANT_DIGITS = 9;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    // Float.toString использует обычную запись только в этом диапазоне, остальное пишется с экспонентой
+    private static final float MIN_PLAIN_VALUE = 1e-3f;
+    private static final float MAX_PLAIN_VALUE = 1e7f;
+    private static final int MIN_PLAIN_EXPONENT = -3;
+    private static final int MAX_PLAIN_EXPONENT = 7;
+    private static final double[] PLAIN_RANGE_BOUNDS = {
+            1e-3, 1e-2, 1e-1, 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6
+    };
+    private static final long NO_MANTISSA = Long.MIN_VALUE;
+    private static final double MAX_FIXED_SCALED_VALUE = 1e18;
+    private static final long FLOAT_DROPPED_BITS_MASK = (1L << 29) - 1;
+    private static final long FLOAT_HALF_WAY = 1L << 28;
+
+    private final int precision;
+
+    private FloatFormat(int precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Запись с фиксированным количеством знаков после точки, с округлением половины вверх
+     * @param precision количество знаков после точки, от 0 до 9
+     * @return формат с фиксированной точностью
+     */
+    public static FloatFormat fixed(int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 0 and " + MAX_PRECISION);
+        }
+        return new FloatFormat(precision);
+    }
+
+    void append(ObjOutputBuffer out, float value) {
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            out.appendAscii(Float.toString(value));
+        } else if (precision < 0) {
+            appendShortest(out, value);
+        } else {
+            appendFixed(out, value);
+        }
+    }
+
+    // Для количества значащих цифр digits берем ближайшее десятичное число (половину округляем к четному,
+    // как Float.toString) и проверяем, что оно читается обратно в то же значение. Проверка точная:
+    // мантисса и степень десяти представимы в double, а двойное округление отсекается так же, как в ObjTokenizer.
+    // Минимальное подходящее digits ищется двоичным поиском, 9 цифр всегда достаточно.
+    // Вне диапазона обычной записи и в редких спорных случаях используется сам Float.toString
+    private static void appendShortest(ObjOutputBuffer out, float value) {
+        final float abs = Math.abs(value);
+        if (abs == 0) {
+            out.appendAscii(Float.floatToRawIntBits(value) < 0 ? "-0.0" : "0.0");
+            return;
+        }
+        if (abs >= MIN_PLAIN_VALUE && abs < MAX_PLAIN_VALUE) {
+            final int exponent = decimalExponent(abs);
+            long mantissa = roundTripMantissa(abs, MAX_SIGNIFICANT_DIGITS - 1 - exponent);
+            if (mantissa < 0) {
+                mantissa = NO_MANTISSA;
+            }
+            int scale = MAX_SIGNIFICANT_DIGITS - 1 - exponent;
+            int low = 1;
+            int high = MAX_SIGNIFICANT_DIGITS;
+            while (mantissa != NO_MANTISSA && low < high) {
+                final int digits = (low + high) >>> 1;
+                final long candidate = roundTripMantissa(abs, digits - 1 - exponent);
+                if (candidate == NO_MANTISSA) {
+                    mantissa = NO_MANTISSA;
+                } else if (candidate >= 0) {
+                    mantissa = candidate;
+                    scale = digits - 1 - exponent;
+                    high = digits;
+                } else {
+                    low = digits + 1;
+                }
+            }
+            if (mantissa != NO_MANTISSA) {
+                if (value < 0) {
+                    out.append('-');
+                }
+                appendPlain(out, mantissa, scale);
+                return;
+            }
+        }
+        out.appendAscii(Float.toString(value));
+    }
+
+    // Возвращает мантиссу ближайшего к value числа с scale знаками после точки, если оно читается
+    // обратно в value, -1 если не читается и NO_MANTISSA в спорном случае
+    private static long roundTripMantissa(float value, int scale) {
+        final double scaled = scale >= 0 ? value * POWERS_OF_TEN[scale] : value / POWERS_OF_TEN[-scale];
+        final long mantissa = (long) Math.rint(scaled);
+        final double candidate = scale >= 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa * POWERS_OF_TEN[-scale];
+        if ((Double.doubleToRawLongBits(candidate) & FLOAT_DROPPED_BITS_MASK) == FLOAT_HALF_WAY) {
+            return NO_MANTISSA;
+        }
+        return (float) candidate == value ? mantissa : -1;
+    }
+
+    // floor(log10(value)) для value из диапазона обычной записи
+    private static int decimalExponent(float value) {
+        int exponent = MIN_PLAIN_EXPONENT;
+        while (exponent + 1 < MAX_PLAIN_EXPONENT && value >= PLAIN_RANGE_BOUNDS[exponent + 1 - MIN_PLAIN_EXPONENT]) {
+            exponent++;
+        }
+        return exponent;
+    }
+
+    // Пишет mantissa * 10^(-scale) без экспоненты и с хотя бы одной цифрой после точки
+    private static void appendPlain(ObjOutputBuffer out, long mantissa, int scale) {
+        while (mantissa % 10 == 0) {
+            mantissa /= 10;
+            scale--;
+        }
+        final int digitCount = ObjOutputBuffer.countDigits(mantissa);
+        final int integerDigits = digitCount - scale;
+        if (scale <= 0) {
+            out.appendLong(mantissa);
+            out.appendZeros(-scale);
+            out.appendAscii(".0");
+        } else if (integerDigits <= 0) {
+            out.appendAscii("0.");
+            out.appendZeros(-integerDigits);
+            out.appendLong(mantissa);
+        } else {
+            final long divisor = (long) POWERS_OF_TEN[scale];
+            out.appendLong(mantissa / divisor);
+            out.append('.');
+            out.appendLongPadded(mantissa % divisor, scale);
+        }
+    }
+
+    private void appendFixed(ObjOutputBuffer out, float value) {
+        final double scaled = Math.abs((double) value) * POWERS_OF_TEN[precision];
+        if (scaled >= MAX_FIXED_SCALED_VALUE) {
+            out.appendAscii(new BigDecimal(value).setScale(precision, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        final long rounded = (long) Math.floor(scaled + 0.5);
+        if (value < 0 || Float.floatToRawIntBits(value) < 0) {
+            out.append('-');
+        }
+        final long divisor = (long) POWERS_OF_TEN[precision];
+        out.appendLong(rounded / divisor);
+        if (precision > 0) {
+            out.append('.');
+            out.appendLongPadded(rounded % divisor, precision);
+        }
+    }
+}
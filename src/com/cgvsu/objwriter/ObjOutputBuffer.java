@@ -0,0 +1,126 @@
+package com.cgvsu.objwriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+// Байтовый буфер для записи OBJ без промежуточных строк. Если задан канал, заполненный буфер
+// сбрасывается в него, иначе буфер растет и хранит весь текст целиком
+final class ObjOutputBuffer {
+    // Самая длинная запись одного числа с запасом: знак, цифры long, точка и дробная часть
+    private static final int MAX_NUMBER_LENGTH = 64;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+
+    private final WritableByteChannel channel;
+    private byte[] bytes;
+    private int size;
+
+    ObjOutputBuffer(int capacity) {
+        this(null, capacity);
+    }
+
+    ObjOutputBuffer(WritableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.bytes = new byte[Math.max(capacity, MAX_NUMBER_LENGTH)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void append(char c) {
+        ensure(1);
+        bytes[size++] = (byte) c;
+    }
+
+    void appendAscii(String text) {
+        final int length = text.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            bytes[size + i] = (byte) text.charAt(i);
+        }
+        size += length;
+    }
+
+    void appendZeros(int count) {
+        ensure(count);
+        Arrays.fill(bytes, size, size + count, (byte) '0');
+        size += count;
+    }
+
+    void appendLong(long value) {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) {
+                appendAscii(Long.toString(value).substring(1));
+                return;
+            }
+            value = -value;
+        }
+        appendLongPadded(value, countDigits(value));
+    }
+
+    // Пишет неотрицательное число, дополняя его нулями слева до digitCount цифр
+    void appendLongPadded(long value, int digitCount) {
+        ensure(digitCount);
+        for (int i = size + digitCount - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digitCount;
+    }
+
+    void newLine() {
+        ensure(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, bytes, size, LINE_SEPARATOR.length);
+        size += LINE_SEPARATOR.length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    void flush() throws IOException {
+        writeTo(channel);
+        size = 0;
+    }
+
+    void writeTo(WritableByteChannel target) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(bytes, 0, size);
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+    }
+
+    private void ensure(int count) {
+        if (size + count <= bytes.length) {
+            return;
+        }
+        if (channel != null) {
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (count <= bytes.length) {
+                return;
+            }
+        }
+        bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(size + (long) count, bytes.length * 2L)));
+    }
+
+    static int countDigits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -2,13 +2,21 @@ package com.cgvsu.objwriter;
 
 import com.cgvsu.math.Vector2f;
 import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.FloatArray;
 import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
 import com.cgvsu.model.Polygon;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ObjWriter {
     private static final String OBJ_VERTEX_TOKEN = "v";
@@ -16,22 +24,253 @@ public class ObjWriter {
     private static final String OBJ_NORMAL_TOKEN = "vn";
     private static final String OBJ_FACE_TOKEN = "f";
 
+    // Буфер сбрасывается в файл большими блоками, а строки собираются прямо в байты
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final FloatFormat floatFormat;
+
+    public ObjWriter() {
+        this(FloatFormat.SHORTEST);
+    }
+
+    /**
+     * @param floatFormat способ записи координат. С FloatFormat.SHORTEST вывод совпадает с Float.toString
+     */
+    public ObjWriter(FloatFormat floatFormat) {
+        this.floatFormat = floatFormat;
+    }
+
     public void write(Model model, String filename) {
+        write(filename, out -> append(model, out));
+    }
+
+    /**
+     * Записывает компактную модель, результат совпадает с записью той же модели в обычном виде
+     * @param model модель для записи
+     * @param filename имя файла
+     */
+    public void write(PackedModel model, String filename) {
+        write(filename, out -> append(model, out));
+    }
+
+    /**
+     * Записывает модель в поток. Поток не закрывается
+     * @param model модель для записи
+     * @param stream поток для записи
+     */
+    public void write(Model model, OutputStream stream) throws IOException {
+        write(Channels.newChannel(stream), out -> append(model, out));
+    }
+
+    public void write(PackedModel model, OutputStream stream) throws IOException {
+        write(Channels.newChannel(stream), out -> append(model, out));
+    }
+
+    /**
+     * Записывает модель в канал, например в FileChannel. Канал не закрывается
+     * @param model модель для записи
+     * @param channel канал для записи
+     */
+    public void write(Model model, WritableByteChannel channel) throws IOException {
+        write(channel, out -> append(model, out));
+    }
+
+    public void write(PackedModel model, WritableByteChannel channel) throws IOException {
+        write(channel, out -> append(model, out));
+    }
+
+    private void write(String filename, Consumer<ObjOutputBuffer> content) {
         File file = new File(filename);
         if (!createDir(file.getParentFile()))
             return;
         if (!createFile(file))
             return;
-        try (PrintWriter writer = new PrintWriter(file)) {
-            model.vertices.forEach(v -> writer.println(vertexToString(v)));
-            model.textureVertices.forEach(v -> writer.println(textureVertexToString(v)));
-            model.normals.forEach(v -> writer.println(normalToString(v)));
-            model.polygons.forEach(v -> writer.println(polygonToString(v)));
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, content);
         } catch (IOException e) {
             System.out.println("Error while writing file");
         }
     }
 
+    private void write(WritableByteChannel channel, Consumer<ObjOutputBuffer> content) throws IOException {
+        ObjOutputBuffer out = new ObjOutputBuffer(channel, WRITE_BUFFER_SIZE);
+        try {
+            content.accept(out);
+        } catch (UncheckedIOException e) {
+            // Буфер сбрасывается в канал посреди записи строки, где нельзя бросить IOException
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    // Разделы файла в порядке записи. Параллельная запись форматирует каждый раздел кусками
+    enum Section {
+        VERTICES, TEXTURE_VERTICES, NORMALS, POLYGONS
+    }
+
+    void append(Model model, ObjOutputBuffer out) {
+        for (Section section : Section.values()) {
+            appendSection(model, section, 0, getSectionSize(model, section), out);
+        }
+    }
+
+    void append(PackedModel model, ObjOutputBuffer out) {
+        for (Section section : Section.values()) {
+            appendSection(model, section, 0, getSectionSize(model, section), out);
+        }
+    }
+
+    static int getSectionSize(Model model, Section section) {
+        switch (section) {
+            case VERTICES:
+                return model.vertices.size();
+            case TEXTURE_VERTICES:
+                return model.textureVertices.size();
+            case NORMALS:
+                return model.normals.size();
+            default:
+                return model.polygons.size();
+        }
+    }
+
+    static int getSectionSize(PackedModel model, Section section) {
+        switch (section) {
+            case VERTICES:
+                return model.getVertexCount();
+            case TEXTURE_VERTICES:
+                return model.getTextureVertexCount();
+            case NORMALS:
+                return model.getNormalCount();
+            default:
+                return model.getPolygonCount();
+        }
+    }
+
+    /**
+     * Записывает строки раздела с номерами элементов от from включительно до to
+     */
+    void appendSection(Model model, Section section, int from, int to, ObjOutputBuffer out) {
+        switch (section) {
+            case VERTICES:
+                for (Vector3f vertex : model.vertices.subList(from, to)) {
+                    appendVertex(out, OBJ_VERTEX_TOKEN, vertex.getX(), vertex.getY(), vertex.getZ());
+                }
+                break;
+            case TEXTURE_VERTICES:
+                for (Vector2f textureVertex : model.textureVertices.subList(from, to)) {
+                    appendTextureVertex(out, textureVertex.getX(), textureVertex.getY());
+                }
+                break;
+            case NORMALS:
+                for (Vector3f normal : model.normals.subList(from, to)) {
+                    appendVertex(out, OBJ_NORMAL_TOKEN, normal.getX(), normal.getY(), normal.getZ());
+                }
+                break;
+            default:
+                for (Polygon polygon : model.polygons.subList(from, to)) {
+                    appendPolygon(out, polygon);
+                }
+        }
+    }
+
+    void appendSection(PackedModel model, Section section, int from, int to, ObjOutputBuffer out) {
+        switch (section) {
+            case VERTICES:
+                FloatArray vertices = model.vertices;
+                for (int i = from * PackedModel.VERTEX_STRIDE; i < to * PackedModel.VERTEX_STRIDE; i += PackedModel.VERTEX_STRIDE) {
+                    appendVertex(out, OBJ_VERTEX_TOKEN, vertices.get(i), vertices.get(i + 1), vertices.get(i + 2));
+                }
+                break;
+            case TEXTURE_VERTICES:
+                FloatArray textureVertices = model.textureVertices;
+                for (int i = from * PackedModel.TEXTURE_VERTEX_STRIDE; i < to * PackedModel.TEXTURE_VERTEX_STRIDE; i += PackedModel.TEXTURE_VERTEX_STRIDE) {
+                    appendTextureVertex(out, textureVertices.get(i), textureVertices.get(i + 1));
+                }
+                break;
+            case NORMALS:
+                FloatArray normals = model.normals;
+                for (int i = from * PackedModel.NORMAL_STRIDE; i < to * PackedModel.NORMAL_STRIDE; i += PackedModel.NORMAL_STRIDE) {
+                    appendVertex(out, OBJ_NORMAL_TOKEN, normals.get(i), normals.get(i + 1), normals.get(i + 2));
+                }
+                break;
+            default:
+                for (int i = from; i < to; i++) {
+                    appendPolygon(out, model, i);
+                }
+        }
+    }
+
+    private void appendVertex(ObjOutputBuffer out, String token, float x, float y, float z) {
+        out.appendAscii(token);
+        out.append(' ');
+        floatFormat.append(out, x);
+        out.append(' ');
+        floatFormat.append(out, y);
+        out.append(' ');
+        floatFormat.append(out, z);
+        out.newLine();
+    }
+
+    private void appendTextureVertex(ObjOutputBuffer out, float u, float v) {
+        out.appendAscii(OBJ_TEXTURE_TOKEN);
+        out.append(' ');
+        floatFormat.append(out, u);
+        out.append(' ');
+        floatFormat.append(out, v);
+        out.newLine();
+    }
+
+    private void appendPolygon(ObjOutputBuffer out, Polygon polygon) {
+        List<Integer> vertexIndices = polygon.getVertexIndices();
+        List<Integer> textureVertexIndices = polygon.getTextureVertexIndices();
+        List<Integer> normalIndices = polygon.getNormalIndices();
+        boolean hasTextures = textureVertexIndices.size() == vertexIndices.size();
+        boolean hasNormals = normalIndices.size() == vertexIndices.size();
+        out.appendAscii(OBJ_FACE_TOKEN);
+        for (int i = 0; i < vertexIndices.size(); i++) {
+            out.append(' ');
+            out.appendLong(getFormattedIndex(vertexIndices, i));
+            appendFaceWordTail(out, hasTextures, hasTextures ? getFormattedIndex(textureVertexIndices, i) : 0,
+                    hasNormals, hasNormals ? getFormattedIndex(normalIndices, i) : 0);
+        }
+        out.newLine();
+    }
+
+    private void appendPolygon(ObjOutputBuffer out, PackedModel model, int polygonIndex) {
+        final int vertexStart = model.getPolygonVertexStart(polygonIndex);
+        final int vertexCount = model.getPolygonVertexEnd(polygonIndex) - vertexStart;
+        final int textureVertexStart = model.getPolygonTextureVertexStart(polygonIndex);
+        final int normalStart = model.getPolygonNormalStart(polygonIndex);
+        boolean hasTextures = model.getPolygonTextureVertexEnd(polygonIndex) - textureVertexStart == vertexCount;
+        boolean hasNormals = model.getPolygonNormalEnd(polygonIndex) - normalStart == vertexCount;
+        out.appendAscii(OBJ_FACE_TOKEN);
+        for (int i = 0; i < vertexCount; i++) {
+            out.append(' ');
+            out.appendLong(model.polygonVertexIndices.get(vertexStart + i) + 1);
+            appendFaceWordTail(out,
+                    hasTextures, hasTextures ? model.polygonTextureVertexIndices.get(textureVertexStart + i) + 1 : 0,
+                    hasNormals, hasNormals ? model.polygonNormalIndices.get(normalStart + i) + 1 : 0);
+        }
+        out.newLine();
+    }
+
+    // Дописывает к индексу вершины текстурный индекс и нормаль в виде v/vt, v//vn или v/vt/vn
+    private static void appendFaceWordTail(
+            ObjOutputBuffer out, boolean hasTexture, int textureVertexIndex, boolean hasNormal, int normalIndex) {
+        if (hasTexture) {
+            out.append('/');
+            out.appendLong(textureVertexIndex);
+        }
+        if (hasNormal) {
+            if (!hasTexture) {
+                out.append('/');
+            }
+            out.append('/');
+            out.appendLong(normalIndex);
+        }
+    }
+
     private boolean createDir(File directory) {
         if (directory != null && !directory.exists() && !directory.mkdirs()) {
             System.out.println("Couldn't create dir: " + directory);
@@ -52,15 +291,27 @@ public class ObjWriter {
     }
 
     protected String vertexToString(Vector3f vector) {
-        return OBJ_VERTEX_TOKEN + " " + vector.getX() + " " + vector.getY() + " " + vector.getZ();
+        return vertexToString(vector.getX(), vector.getY(), vector.getZ());
+    }
+
+    protected String vertexToString(float x, float y, float z) {
+        return OBJ_VERTEX_TOKEN + " " + x + " " + y + " " + z;
     }
 
     protected String textureVertexToString(Vector2f vector) {
-        return OBJ_TEXTURE_TOKEN + " " + vector.getX() + " " + vector.getY();
+        return textureVertexToString(vector.getX(), vector.getY());
+    }
+
+    protected String textureVertexToString(float u, float v) {
+        return OBJ_TEXTURE_TOKEN + " " + u + " " + v;
     }
 
     protected String normalToString(Vector3f vector) {
-        return OBJ_NORMAL_TOKEN + " " + vector.getX() + " " + vector.getY() + " " + vector.getZ();
+        return normalToString(vector.getX(), vector.getY(), vector.getZ());
+    }
+
+    protected String normalToString(float x, float y, float z) {
+        return OBJ_NORMAL_TOKEN + " " + x + " " + y + " " + z;
     }
 
     protected String polygonToString(Polygon polygon) {
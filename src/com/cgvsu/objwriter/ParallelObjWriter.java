@@ -0,0 +1,181 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Параллельная запись больших моделей. Каждый раздел файла (вершины, текстурные вершины, нормали, полигоны)
+// режется на куски по числу элементов, куски форматируются в отдельные буферы на ForkJoinPool
+// и записываются в канал строго по порядку, поэтому файл совпадает с результатом ObjWriter
+public class ParallelObjWriter {
+    private static final int ELEMENTS_PER_CHUNK = 1 << 15;
+    // Сколько кусков может быть отформатировано заранее. Ограничивает память, пока запись отстает от форматирования
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 4;
+    private static final int CHUNK_BUFFER_SIZE = 1 << 20;
+
+    private final ObjWriter writer;
+    private final ForkJoinPool pool;
+    private final int elementsPerChunk;
+
+    public ParallelObjWriter() {
+        this(FloatFormat.SHORTEST, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param floatFormat способ записи координат
+     * @param pool пул потоков для форматирования
+     */
+    public ParallelObjWriter(FloatFormat floatFormat, ForkJoinPool pool) {
+        this(floatFormat, pool, ELEMENTS_PER_CHUNK);
+    }
+
+    ParallelObjWriter(FloatFormat floatFormat, ForkJoinPool pool, int elementsPerChunk) {
+        this.writer = new ObjWriter(floatFormat);
+        this.pool = pool;
+        this.elementsPerChunk = elementsPerChunk;
+    }
+
+    /**
+     * Записывает модель в файл, существующий файл перезаписывается
+     * @param model модель для записи
+     * @param path путь к OBJ файлу
+     */
+    public void write(Model model, Path path) throws IOException {
+        try (FileChannel channel = open(path)) {
+            write(model, channel);
+        }
+    }
+
+    public void write(PackedModel model, Path path) throws IOException {
+        try (FileChannel channel = open(path)) {
+            write(model, channel);
+        }
+    }
+
+    /**
+     * Записывает модель в канал. Канал не закрывается
+     * @param model модель для записи
+     * @param channel канал для записи
+     */
+    public void write(Model model, WritableByteChannel channel) throws IOException {
+        if (pool.getParallelism() == 1) {
+            writer.write(model, channel);
+            return;
+        }
+        write(channel, new SectionFormatter() {
+            @Override
+            public int getSectionSize(ObjWriter.Section section) {
+                return ObjWriter.getSectionSize(model, section);
+            }
+
+            @Override
+            public void appendSection(ObjWriter.Section section, int from, int to, ObjOutputBuffer out) {
+                writer.appendSection(model, section, from, to, out);
+            }
+        });
+    }
+
+    public void write(PackedModel model, WritableByteChannel channel) throws IOException {
+        if (pool.getParallelism() == 1) {
+            writer.write(model, channel);
+            return;
+        }
+        write(channel, new SectionFormatter() {
+            @Override
+            public int getSectionSize(ObjWriter.Section section) {
+                return ObjWriter.getSectionSize(model, section);
+            }
+
+            @Override
+            public void appendSection(ObjWriter.Section section, int from, int to, ObjOutputBuffer out) {
+                writer.appendSection(model, section, from, to, out);
+            }
+        });
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void write(WritableByteChannel channel, SectionFormatter formatter) throws IOException {
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (ObjWriter.Section section : ObjWriter.Section.values()) {
+            final int size = formatter.getSectionSize(section);
+            for (int from = 0; from < size; from += elementsPerChunk) {
+                tasks.add(new ChunkTask(section, from, Math.min(size, from + elementsPerChunk)));
+            }
+        }
+
+        // Отработавшие буферы переиспользуются следующими кусками
+        ConcurrentLinkedQueue<ObjOutputBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+        final int maxInFlight = pool.getParallelism() * CHUNKS_IN_FLIGHT_PER_THREAD;
+        Deque<Future<ObjOutputBuffer>> inFlight = new ArrayDeque<>();
+        int nextTask = 0;
+        try {
+            while (nextTask < tasks.size() || !inFlight.isEmpty()) {
+                while (nextTask < tasks.size() && inFlight.size() < maxInFlight) {
+                    final ChunkTask task = tasks.get(nextTask++);
+                    inFlight.add(pool.submit(() -> {
+                        ObjOutputBuffer out = freeBuffers.poll();
+                        if (out == null) {
+                            out = new ObjOutputBuffer(CHUNK_BUFFER_SIZE);
+                        }
+                        formatter.appendSection(task.section, task.from, task.to, out);
+                        return out;
+                    }));
+                }
+
+                ObjOutputBuffer out = inFlight.poll().get();
+                out.writeTo(channel);
+                out.clear();
+                freeBuffers.add(out);
+            }
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException exception) {
+                throw exception;
+            }
+            throw new IllegalStateException(e.getCause());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing OBJ file");
+
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private interface SectionFormatter {
+        int getSectionSize(ObjWriter.Section section);
+
+        void appendSection(ObjWriter.Section section, int from, int to, ObjOutputBuffer out);
+    }
+
+    private static class ChunkTask {
+        private final ObjWriter.Section section;
+        private final int from;
+        private final int to;
+
+        private ChunkTask(ObjWriter.Section section, int from, int to) {
+            this.section = section;
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
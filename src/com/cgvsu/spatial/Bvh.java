@@ -0,0 +1,754 @@
+package com.cgvsu.spatial;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.IndexedMesh;
+import com.cgvsu.model.IntArray;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Triangulator;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Иерархия ограничивающих объемов над треугольниками модели. Полигоны разбиваются на треугольники
+// Triangulator, дерево строится по эвристике площадей поверхностей (SAH) с разбиением центров на корзины.
+// Все хранится в плоских массивах: у узла есть границы (6 float), начало и количество треугольников.
+// У внутреннего узла количество равно нулю, а начало указывает на левого потомка, правый лежит сразу за ним.
+// Потомки всегда записаны после родителя, поэтому refit пересчитывает границы одним обратным проходом
+public class Bvh {
+    /**
+     * Количество треугольников, начиная с которого поддеревья строятся параллельно
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 12;
+
+    private static final int BIN_COUNT = 12;
+    private static final int MAX_LEAF_SIZE = 8;
+    // Стоимость обхода узла относительно стоимости проверки одного треугольника
+    private static final float TRAVERSAL_COST = 1;
+    private static final float RAY_EPS = 1e-7f;
+
+    private final Model model;
+    private final float[] positions;
+    // Вершины треугольников в порядке листьев и полигоны, из которых треугольники получены
+    private final int[] triangleVertices;
+    private final int[] trianglePolygons;
+
+    private float[] nodeBounds;
+    private int[] nodeStarts;
+    private int[] nodeCounts;
+    private int nodeCount;
+    // Глубина самого глубокого листа, по ней выделяются стеки обхода
+    private int depth;
+
+    private Bvh(Model model, int[] triangleVertices, int[] trianglePolygons) {
+        this.model = model;
+        this.positions = new float[model.vertices.size() * 3];
+        this.triangleVertices = triangleVertices;
+        this.trianglePolygons = trianglePolygons;
+        readPositions();
+    }
+
+    /**
+     * Строит иерархию последовательно
+     * @param model модель, вершины которой потом можно обновить через refit
+     * @return построенная иерархия
+     */
+    public static Bvh build(Model model) {
+        return build(model, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Строит иерархию, разбирая поддеревья больше DEFAULT_PARALLEL_THRESHOLD треугольников в пуле потоков
+     * @param model модель
+     * @param pool пул потоков
+     * @return построенная иерархия
+     */
+    public static Bvh build(Model model, ForkJoinPool pool) {
+        return build(model, pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public static Bvh build(Model model, ForkJoinPool pool, int threshold) {
+        final IndexedMesh mesh = Triangulator.getIndexedMesh(model);
+        final int[] meshIndices = mesh.getTriangleIndices();
+        final int[] sourceVertexIndices = mesh.getSourceVertexIndices();
+        final int triangleCount = mesh.getTriangleCount();
+
+        final Bvh bvh = new Bvh(model, new int[triangleCount * 3], new int[triangleCount]);
+        final int[] sourceTriangleVertices = new int[triangleCount * 3];
+        for (int i = 0; i < sourceTriangleVertices.length; i++) {
+            sourceTriangleVertices[i] = sourceVertexIndices[meshIndices[i]];
+        }
+
+        final Builder builder = new Builder(bvh.positions, sourceTriangleVertices, triangleCount);
+        if (triangleCount > 0) {
+            builder.nextNode.set(1);
+            if (pool == null || pool.getParallelism() == 1 || triangleCount <= threshold) {
+                new BuildTask(builder, 0, 0, 0, triangleCount, Integer.MAX_VALUE).compute();
+            } else {
+                pool.invoke(new BuildTask(builder, 0, 0, 0, triangleCount, threshold));
+            }
+        }
+
+        // Треугольники переписываются в порядке листьев, чтобы проверка листа читала их подряд
+        final int[] trianglePolygonIndices = mesh.getTrianglePolygonIndices();
+        for (int i = 0; i < triangleCount; i++) {
+            final int triangle = builder.order[i];
+            System.arraycopy(sourceTriangleVertices, triangle * 3, bvh.triangleVertices, i * 3, 3);
+            bvh.trianglePolygons[i] = trianglePolygonIndices[triangle];
+        }
+        bvh.nodeCount = builder.nextNode.get();
+        bvh.depth = builder.depth.get();
+        bvh.nodeBounds = Arrays.copyOf(builder.nodeBounds, bvh.nodeCount * 6);
+        bvh.nodeStarts = Arrays.copyOf(builder.nodeStarts, bvh.nodeCount);
+        bvh.nodeCounts = Arrays.copyOf(builder.nodeCounts, bvh.nodeCount);
+        return bvh;
+    }
+
+    public int getTriangleCount() {
+        return trianglePolygons.length;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Перечитывает вершины модели и пересчитывает границы узлов, не меняя структуру дерева.
+     * Подходит после applyToModel и других изменений вершин без изменения полигонов.
+     * При сильных деформациях качество дерева падает, и его лучше построить заново
+     */
+    public void refit() {
+        if (model.vertices.size() * 3 != positions.length) {
+            throw new IllegalStateException("Количество вершин модели изменилось, иерархию нужно построить заново");
+        }
+        readPositions();
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            final int offset = node * 6;
+            if (nodeCounts[node] > 0) {
+                setEmpty(nodeBounds, offset);
+                final int end = nodeStarts[node] + nodeCounts[node];
+                for (int i = nodeStarts[node] * 3; i < end * 3; i++) {
+                    includePoint(nodeBounds, offset, positions, triangleVertices[i] * 3);
+                }
+            } else {
+                final int left = nodeStarts[node] * 6;
+                for (int k = 0; k < 3; k++) {
+                    nodeBounds[offset + k] = Math.min(nodeBounds[left + k], nodeBounds[left + 6 + k]);
+                    nodeBounds[offset + 3 + k] = Math.max(nodeBounds[left + 3 + k], nodeBounds[left + 9 + k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ищет ближайшее пересечение луча с моделью. Грани пересекаются с обеих сторон
+     * @param origin начало луча
+     * @param direction направление луча, длина не важна
+     * @return ближайшее пересечение или null
+     */
+    public RayHit intersectRay(Vector3f origin, Vector3f direction) {
+        if (nodeCount == 0) {
+            return null;
+        }
+        final float originX = origin.getX(), originY = origin.getY(), originZ = origin.getZ();
+        final float directionX = direction.getX(), directionY = direction.getY(), directionZ = direction.getZ();
+        final float inverseX = 1 / directionX, inverseY = 1 / directionY, inverseZ = 1 / directionZ;
+
+        float closest = Float.POSITIVE_INFINITY;
+        int closestTriangle = -1;
+        float closestU = 0;
+        float closestV = 0;
+        final int[] stack = new int[depth + 1];
+        int stackSize = 0;
+        int node = 0;
+        while (true) {
+            if (nodeCounts[node] > 0) {
+                final int end = nodeStarts[node] + nodeCounts[node];
+                for (int triangle = nodeStarts[node]; triangle < end; triangle++) {
+                    final int a = triangleVertices[triangle * 3] * 3;
+                    final int b = triangleVertices[triangle * 3 + 1] * 3;
+                    final int c = triangleVertices[triangle * 3 + 2] * 3;
+                    // Алгоритм Мёллера - Трумбора
+                    final float edge1X = positions[b] - positions[a];
+                    final float edge1Y = positions[b + 1] - positions[a + 1];
+                    final float edge1Z = positions[b + 2] - positions[a + 2];
+                    final float edge2X = positions[c] - positions[a];
+                    final float edge2Y = positions[c + 1] - positions[a + 1];
+                    final float edge2Z = positions[c + 2] - positions[a + 2];
+                    final float pX = directionY * edge2Z - directionZ * edge2Y;
+                    final float pY = directionZ * edge2X - directionX * edge2Z;
+                    final float pZ = directionX * edge2Y - directionY * edge2X;
+                    final float determinant = edge1X * pX + edge1Y * pY + edge1Z * pZ;
+                    if (Math.abs(determinant) < RAY_EPS) {
+                        continue;
+                    }
+                    final float inverseDeterminant = 1 / determinant;
+                    final float tX = originX - positions[a];
+                    final float tY = originY - positions[a + 1];
+                    final float tZ = originZ - positions[a + 2];
+                    final float u = (tX * pX + tY * pY + tZ * pZ) * inverseDeterminant;
+                    if (u < 0 || u > 1) {
+                        continue;
+                    }
+                    final float qX = tY * edge1Z - tZ * edge1Y;
+                    final float qY = tZ * edge1X - tX * edge1Z;
+                    final float qZ = tX * edge1Y - tY * edge1X;
+                    final float v = (directionX * qX + directionY * qY + directionZ * qZ) * inverseDeterminant;
+                    if (v < 0 || u + v > 1) {
+                        continue;
+                    }
+                    final float distance = (edge2X * qX + edge2Y * qY + edge2Z * qZ) * inverseDeterminant;
+                    if (distance >= 0 && distance < closest) {
+                        closest = distance;
+                        closestTriangle = triangle;
+                        closestU = u;
+                        closestV = v;
+                    }
+                }
+            } else {
+                // Сначала идем в ближнего потомка, дальнего откладываем, пока он может дать пересечение ближе найденного
+                final int left = nodeStarts[node];
+                final float leftDistance = intersectBox(left, originX, originY, originZ, inverseX, inverseY, inverseZ, closest);
+                final float rightDistance = intersectBox(left + 1, originX, originY, originZ, inverseX, inverseY, inverseZ, closest);
+                if (leftDistance <= rightDistance) {
+                    if (rightDistance != Float.POSITIVE_INFINITY) {
+                        stack[stackSize++] = left + 1;
+                    }
+                    if (leftDistance != Float.POSITIVE_INFINITY) {
+                        node = left;
+                        continue;
+                    }
+                } else {
+                    if (leftDistance != Float.POSITIVE_INFINITY) {
+                        stack[stackSize++] = left;
+                    }
+                    node = left + 1;
+                    continue;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            node = stack[--stackSize];
+        }
+        return closestTriangle < 0 ? null : new RayHit(trianglePolygons[closestTriangle], closest, closestU, closestV);
+    }
+
+    // Расстояние вдоль луча до входа в границы узла или бесконечность, если луч проходит мимо или дальше limit
+    private float intersectBox(int node, float originX, float originY, float originZ,
+                               float inverseX, float inverseY, float inverseZ, float limit) {
+        final int offset = node * 6;
+        float t1 = (nodeBounds[offset] - originX) * inverseX;
+        float t2 = (nodeBounds[offset + 3] - originX) * inverseX;
+        float near = t1 < t2 ? t1 : t2;
+        float far = t1 < t2 ? t2 : t1;
+        t1 = (nodeBounds[offset + 1] - originY) * inverseY;
+        t2 = (nodeBounds[offset + 4] - originY) * inverseY;
+        near = Math.max(near, t1 < t2 ? t1 : t2);
+        far = Math.min(far, t1 < t2 ? t2 : t1);
+        t1 = (nodeBounds[offset + 2] - originZ) * inverseZ;
+        t2 = (nodeBounds[offset + 5] - originZ) * inverseZ;
+        near = Math.max(near, t1 < t2 ? t1 : t2);
+        far = Math.min(far, t1 < t2 ? t2 : t1);
+        // NaN получается, когда начало луча лежит на грани коробки, а луч ей параллелен; такой узел не отбрасываем
+        if (far >= Math.max(near, 0) && near < limit || Float.isNaN(near) || Float.isNaN(far)) {
+            return Math.max(near, 0);
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Ищет полигоны, хотя бы один треугольник которых своими границами пересекает коробку
+     * @param min минимальный угол коробки
+     * @param max максимальный угол коробки
+     * @return номера полигонов по возрастанию, без повторов
+     */
+    public int[] queryBox(Vector3f min, Vector3f max) {
+        final float[] box = {min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ()};
+        final IntArray result = new IntArray();
+        if (nodeCount == 0) {
+            return result.toArray();
+        }
+        final float[] triangleBounds = new float[6];
+        final int[] stack = new int[depth + 2];
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            final int node = stack[--stackSize];
+            if (!overlaps(nodeBounds, node * 6, box, 0)) {
+                continue;
+            }
+            if (nodeCounts[node] == 0) {
+                stack[stackSize++] = nodeStarts[node];
+                stack[stackSize++] = nodeStarts[node] + 1;
+                continue;
+            }
+            final int end = nodeStarts[node] + nodeCounts[node];
+            for (int triangle = nodeStarts[node]; triangle < end; triangle++) {
+                setEmpty(triangleBounds, 0);
+                for (int k = 0; k < 3; k++) {
+                    includePoint(triangleBounds, 0, positions, triangleVertices[triangle * 3 + k] * 3);
+                }
+                if (overlaps(triangleBounds, 0, box, 0)) {
+                    result.add(trianglePolygons[triangle]);
+                }
+            }
+        }
+
+        final int[] polygons = result.toArray();
+        Arrays.sort(polygons);
+        int unique = 0;
+        for (int i = 0; i < polygons.length; i++) {
+            if (i == 0 || polygons[i] != polygons[i - 1]) {
+                polygons[unique++] = polygons[i];
+            }
+        }
+        return Arrays.copyOf(polygons, unique);
+    }
+
+    /**
+     * Ищет ближайшую к точке точку поверхности модели
+     * @param point точка запроса
+     * @return ближайшая точка или null, если в модели нет треугольников
+     */
+    public ClosestPoint closestPoint(Vector3f point) {
+        if (nodeCount == 0) {
+            return null;
+        }
+        final float[] query = {point.getX(), point.getY(), point.getZ()};
+        final float[] candidate = new float[3];
+        final float[] closest = new float[3];
+        float closestDistance = Float.POSITIVE_INFINITY;
+        int closestTriangle = -1;
+
+        final int[] stack = new int[depth + 2];
+        final float[] stackDistances = new float[depth + 2];
+        int stackSize = 0;
+        stack[stackSize] = 0;
+        stackDistances[stackSize++] = boxDistanceSquared(0, query);
+        while (stackSize > 0) {
+            stackSize--;
+            final int node = stack[stackSize];
+            if (stackDistances[stackSize] >= closestDistance) {
+                continue;
+            }
+            if (nodeCounts[node] > 0) {
+                final int end = nodeStarts[node] + nodeCounts[node];
+                for (int triangle = nodeStarts[node]; triangle < end; triangle++) {
+                    closestPointOnTriangle(query, triangle, candidate);
+                    final float dx = candidate[0] - query[0], dy = candidate[1] - query[1], dz = candidate[2] - query[2];
+                    final float distance = dx * dx + dy * dy + dz * dz;
+                    if (distance < closestDistance) {
+                        closestDistance = distance;
+                        closestTriangle = triangle;
+                        System.arraycopy(candidate, 0, closest, 0, 3);
+                    }
+                }
+                continue;
+            }
+            // Ближний потомок кладется последним, чтобы быть проверенным первым
+            final int left = nodeStarts[node];
+            final float leftDistance = boxDistanceSquared(left, query);
+            final float rightDistance = boxDistanceSquared(left + 1, query);
+            final int near = leftDistance <= rightDistance ? left : left + 1;
+            final int far = near == left ? left + 1 : left;
+            stack[stackSize] = far;
+            stackDistances[stackSize++] = Math.max(leftDistance, rightDistance);
+            stack[stackSize] = near;
+            stackDistances[stackSize++] = Math.min(leftDistance, rightDistance);
+        }
+        return new ClosestPoint(trianglePolygons[closestTriangle],
+                new Vector3f(closest[0], closest[1], closest[2]), (float) Math.sqrt(closestDistance));
+    }
+
+    private float boxDistanceSquared(int node, float[] point) {
+        float result = 0;
+        for (int k = 0; k < 3; k++) {
+            final float d = Math.max(Math.max(nodeBounds[node * 6 + k] - point[k], 0), point[k] - nodeBounds[node * 6 + 3 + k]);
+            result += d * d;
+        }
+        return result;
+    }
+
+    // Ближайшая точка треугольника по областям Вороного его вершин, ребер и грани (Ericson, Real-Time Collision Detection)
+    private void closestPointOnTriangle(float[] p, int triangle, float[] result) {
+        final int a = triangleVertices[triangle * 3] * 3;
+        final int b = triangleVertices[triangle * 3 + 1] * 3;
+        final int c = triangleVertices[triangle * 3 + 2] * 3;
+        final float abX = positions[b] - positions[a], abY = positions[b + 1] - positions[a + 1], abZ = positions[b + 2] - positions[a + 2];
+        final float acX = positions[c] - positions[a], acY = positions[c + 1] - positions[a + 1], acZ = positions[c + 2] - positions[a + 2];
+        final float apX = p[0] - positions[a], apY = p[1] - positions[a + 1], apZ = p[2] - positions[a + 2];
+
+        final float d1 = abX * apX + abY * apY + abZ * apZ;
+        final float d2 = acX * apX + acY * apY + acZ * apZ;
+        if (d1 <= 0 && d2 <= 0) {
+            setPoint(result, a, 0, 0, 0, 0);
+            return;
+        }
+        final float bpX = p[0] - positions[b], bpY = p[1] - positions[b + 1], bpZ = p[2] - positions[b + 2];
+        final float d3 = abX * bpX + abY * bpY + abZ * bpZ;
+        final float d4 = acX * bpX + acY * bpY + acZ * bpZ;
+        if (d3 >= 0 && d4 <= d3) {
+            setPoint(result, b, 0, 0, 0, 0);
+            return;
+        }
+        final float vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            final float v = d1 / (d1 - d3);
+            setPoint(result, a, v, abX, abY, abZ);
+            return;
+        }
+        final float cpX = p[0] - positions[c], cpY = p[1] - positions[c + 1], cpZ = p[2] - positions[c + 2];
+        final float d5 = abX * cpX + abY * cpY + abZ * cpZ;
+        final float d6 = acX * cpX + acY * cpY + acZ * cpZ;
+        if (d6 >= 0 && d5 <= d6) {
+            setPoint(result, c, 0, 0, 0, 0);
+            return;
+        }
+        final float vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            final float w = d2 / (d2 - d6);
+            setPoint(result, a, w, acX, acY, acZ);
+            return;
+        }
+        final float va = d3 * d6 - d5 * d4;
+        if (va <= 0 && (d4 - d3) >= 0 && (d5 - d6) >= 0) {
+            final float w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+            setPoint(result, b, w, positions[c] - positions[b], positions[c + 1] - positions[b + 1],
+                    positions[c + 2] - positions[b + 2]);
+            return;
+        }
+        final float denominator = 1 / (va + vb + vc);
+        final float v = vb * denominator;
+        final float w = vc * denominator;
+        result[0] = positions[a] + v * abX + w * acX;
+        result[1] = positions[a + 1] + v * abY + w * acY;
+        result[2] = positions[a + 2] + v * abZ + w * acZ;
+    }
+
+    // result = positions[origin] + t * (x, y, z)
+    private void setPoint(float[] result, int origin, float t, float x, float y, float z) {
+        result[0] = positions[origin] + t * x;
+        result[1] = positions[origin + 1] + t * y;
+        result[2] = positions[origin + 2] + t * z;
+    }
+
+    private void readPositions() {
+        for (int i = 0; i < model.vertices.size(); i++) {
+            Vector3f vertex = model.vertices.get(i);
+            positions[i * 3] = vertex.getX();
+            positions[i * 3 + 1] = vertex.getY();
+            positions[i * 3 + 2] = vertex.getZ();
+        }
+    }
+
+    private static void setEmpty(float[] bounds, int offset) {
+        Arrays.fill(bounds, offset, offset + 3, Float.POSITIVE_INFINITY);
+        Arrays.fill(bounds, offset + 3, offset + 6, Float.NEGATIVE_INFINITY);
+    }
+
+    // Сравнения вместо Math.min и Math.max: тем приходится отдельно проверять NaN и -0, а здесь это лишнее
+    private static void includePoint(float[] bounds, int offset, float[] points, int pointOffset) {
+        for (int k = 0; k < 3; k++) {
+            final float value = points[pointOffset + k];
+            if (value < bounds[offset + k]) {
+                bounds[offset + k] = value;
+            }
+            if (value > bounds[offset + 3 + k]) {
+                bounds[offset + 3 + k] = value;
+            }
+        }
+    }
+
+    private static void includeBounds(float[] bounds, int offset, float[] other, int otherOffset) {
+        for (int k = 0; k < 3; k++) {
+            if (other[otherOffset + k] < bounds[offset + k]) {
+                bounds[offset + k] = other[otherOffset + k];
+            }
+            if (other[otherOffset + 3 + k] > bounds[offset + 3 + k]) {
+                bounds[offset + 3 + k] = other[otherOffset + 3 + k];
+            }
+        }
+    }
+
+    private static boolean overlaps(float[] bounds, int offset, float[] other, int otherOffset) {
+        for (int k = 0; k < 3; k++) {
+            if (bounds[offset + k] > other[otherOffset + 3 + k] || bounds[offset + 3 + k] < other[otherOffset + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static float halfArea(float[] bounds, int offset) {
+        final float x = bounds[offset + 3] - bounds[offset];
+        final float y = bounds[offset + 4] - bounds[offset + 1];
+        final float z = bounds[offset + 5] - bounds[offset + 2];
+        return x * y + y * z + z * x;
+    }
+
+    // Общее состояние построения. Границы и центры треугольников переставляются вместе с order,
+    // поэтому узел читает свои треугольники подряд. Задачи работают с непересекающимися диапазонами
+    // и разными узлами, а номера узлов выдаются парами через атомарный счетчик
+    private static class Builder {
+        private final float[] triangleBounds;
+        private final float[] centroids;
+        private final int[] order;
+        private final float[] nodeBounds;
+        private final int[] nodeStarts;
+        private final int[] nodeCounts;
+        private final AtomicInteger nextNode = new AtomicInteger();
+        private final AtomicInteger depth = new AtomicInteger();
+
+        private Builder(float[] positions, int[] triangleVertices, int triangleCount) {
+            triangleBounds = new float[triangleCount * 6];
+            centroids = new float[triangleCount * 3];
+            order = new int[triangleCount];
+            for (int i = 0; i < triangleCount; i++) {
+                setEmpty(triangleBounds, i * 6);
+                for (int k = 0; k < 3; k++) {
+                    includePoint(triangleBounds, i * 6, positions, triangleVertices[i * 3 + k] * 3);
+                }
+                for (int k = 0; k < 3; k++) {
+                    centroids[i * 3 + k] = (triangleBounds[i * 6 + k] + triangleBounds[i * 6 + 3 + k]) / 2;
+                }
+                order[i] = i;
+            }
+            final int maxNodeCount = Math.max(1, triangleCount * 2 - 1);
+            nodeBounds = new float[maxNodeCount * 6];
+            nodeStarts = new int[maxNodeCount];
+            nodeCounts = new int[maxNodeCount];
+        }
+    }
+
+    private static class BuildTask extends RecursiveAction {
+        private final Builder builder;
+        private final int node;
+        private final int depth;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private BuildTask(Builder builder, int node, int depth, int start, int end, int threshold) {
+            this.builder = builder;
+            this.node = node;
+            this.depth = depth;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            final int split = buildNode(builder, node, start, end);
+            if (split < 0) {
+                builder.depth.accumulateAndGet(depth, Math::max);
+                return;
+            }
+            final int left = builder.nodeStarts[node];
+            final BuildTask leftTask = new BuildTask(builder, left, depth + 1, start, split, threshold);
+            final BuildTask rightTask = new BuildTask(builder, left + 1, depth + 1, split, end, threshold);
+            if (end - start > threshold) {
+                invokeAll(leftTask, rightTask);
+            } else {
+                leftTask.compute();
+                rightTask.compute();
+            }
+        }
+    }
+
+    // Считает границы узла и выбирает разбиение. Возвращает границу между потомками в order
+    // или -1, если узел остался листом
+    private static int buildNode(Builder builder, int node, int start, int end) {
+        final float[] triangleBounds = builder.triangleBounds;
+        final float[] centroids = builder.centroids;
+        final int offset = node * 6;
+        final float[] centroidBounds = new float[6];
+        setEmpty(builder.nodeBounds, offset);
+        setEmpty(centroidBounds, 0);
+        for (int i = start; i < end; i++) {
+            includeBounds(builder.nodeBounds, offset, triangleBounds, i * 6);
+            includePoint(centroidBounds, 0, centroids, i * 3);
+        }
+
+        final int count = end - start;
+        builder.nodeStarts[node] = start;
+        builder.nodeCounts[node] = count;
+        if (count <= 2) {
+            return -1;
+        }
+
+        int axis = 0;
+        for (int k = 1; k < 3; k++) {
+            if (centroidBounds[3 + k] - centroidBounds[k] > centroidBounds[3 + axis] - centroidBounds[axis]) {
+                axis = k;
+            }
+        }
+        final float axisMin = centroidBounds[axis];
+        final float extent = centroidBounds[3 + axis] - axisMin;
+
+        int split;
+        if (extent > 0) {
+            // Корзины по центрам вдоль самой длинной оси и лучшая по SAH граница между ними
+            final float[] binBounds = new float[BIN_COUNT * 6];
+            final int[] binCounts = new int[BIN_COUNT];
+            for (int bin = 0; bin < BIN_COUNT; bin++) {
+                setEmpty(binBounds, bin * 6);
+            }
+            final float scale = BIN_COUNT / extent;
+            for (int i = start; i < end; i++) {
+                final int bin = binOf(centroids[i * 3 + axis], axisMin, scale);
+                binCounts[bin]++;
+                includeBounds(binBounds, bin * 6, triangleBounds, i * 6);
+            }
+
+            final float[] rightAreas = new float[BIN_COUNT];
+            final float[] accumulated = new float[6];
+            setEmpty(accumulated, 0);
+            for (int bin = BIN_COUNT - 1; bin > 0; bin--) {
+                includeBounds(accumulated, 0, binBounds, bin * 6);
+                rightAreas[bin] = halfArea(accumulated, 0);
+            }
+
+            setEmpty(accumulated, 0);
+            int leftCount = 0;
+            float bestCost = Float.POSITIVE_INFINITY;
+            int bestBin = -1;
+            for (int bin = 0; bin < BIN_COUNT - 1; bin++) {
+                includeBounds(accumulated, 0, binBounds, bin * 6);
+                leftCount += binCounts[bin];
+                if (leftCount == 0 || leftCount == count) {
+                    continue;
+                }
+                final float cost = halfArea(accumulated, 0) * leftCount + rightAreas[bin + 1] * (count - leftCount);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestBin = bin;
+                }
+            }
+
+            final float parentArea = halfArea(builder.nodeBounds, offset);
+            final float splitCost = TRAVERSAL_COST + (parentArea > 0 ? bestCost / parentArea : count);
+            // Крайние центры попадают в первую и последнюю корзины, поэтому граница bestBin найдется всегда
+            if (splitCost >= count && count <= MAX_LEAF_SIZE) {
+                return -1;
+            }
+            split = partition(builder, axis, axisMin, scale, bestBin, start, end);
+        } else {
+            // Все центры совпадают, поделить по SAH нельзя, делим пополам в любом порядке
+            if (count <= MAX_LEAF_SIZE) {
+                return -1;
+            }
+            split = (start + end) >>> 1;
+        }
+
+        final int left = builder.nextNode.getAndAdd(2);
+        builder.nodeStarts[node] = left;
+        builder.nodeCounts[node] = 0;
+        return split;
+    }
+
+    private static int binOf(float centroid, float axisMin, float scale) {
+        return Math.min(BIN_COUNT - 1, (int) ((centroid - axisMin) * scale));
+    }
+
+    private static int partition(Builder builder, int axis, float axisMin, float scale, int bestBin, int start, int end) {
+        final float[] centroids = builder.centroids;
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if (binOf(centroids[i * 3 + axis], axisMin, scale) <= bestBin) {
+                i++;
+            } else {
+                swap(builder.order, i, j, 1);
+                swap(builder.triangleBounds, i, j, 6);
+                swap(centroids, i, j, 3);
+                j--;
+            }
+        }
+        return i;
+    }
+
+    private static void swap(int[] values, int i, int j, int stride) {
+        for (int k = 0; k < stride; k++) {
+            final int swap = values[i * stride + k];
+            values[i * stride + k] = values[j * stride + k];
+            values[j * stride + k] = swap;
+        }
+    }
+
+    private static void swap(float[] values, int i, int j, int stride) {
+        for (int k = 0; k < stride; k++) {
+            final float swap = values[i * stride + k];
+            values[i * stride + k] = values[j * stride + k];
+            values[j * stride + k] = swap;
+        }
+    }
+
+    /**
+     * Пересечение луча с моделью
+     */
+    public static class RayHit {
+        private final int polygonIndex;
+        private final float distance;
+        private final float u;
+        private final float v;
+
+        private RayHit(int polygonIndex, float distance, float u, float v) {
+            this.polygonIndex = polygonIndex;
+            this.distance = distance;
+            this.u = u;
+            this.v = v;
+        }
+
+        public int getPolygonIndex() {
+            return polygonIndex;
+        }
+
+        /**
+         * Расстояние вдоль луча в длинах вектора направления
+         */
+        public float getDistance() {
+            return distance;
+        }
+
+        /**
+         * Барицентрические координаты точки в треугольнике полигона, на который пришлось пересечение
+         */
+        public float getU() {
+            return u;
+        }
+
+        public float getV() {
+            return v;
+        }
+    }
+
+    /**
+     * Ближайшая точка поверхности модели
+     */
+    public static class ClosestPoint {
+        private final int polygonIndex;
+        private final Vector3f point;
+        private final float distance;
+
+        private ClosestPoint(int polygonIndex, Vector3f point, float distance) {
+            this.polygonIndex = polygonIndex;
+            this.point = point;
+            this.distance = distance;
+        }
+
+        public int getPolygonIndex() {
+            return polygonIndex;
+        }
+
+        public Vector3f getPoint() {
+            return point;
+        }
+
+        public float getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.cgvsu.animation;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.math.Quaternion;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.PackedModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class InstancedModelTest {
+    private static final float EPS = 0.0001f;
+
+    @Test
+    void testStaticInstancesMatchApplyToModel() {
+        PackedModel model = createModel();
+        InstancedModel instanced = new InstancedModel(model);
+        AffineTransformations[] transformations = {
+                new AffineTransformations(),
+                new AffineTransformations().translation(1, 2, 3),
+                new AffineTransformations().rotationY(30).scaling(2, 1, 1)
+        };
+        for (AffineTransformations transformation : transformations) {
+            instanced.addInstance(transformation);
+        }
+
+        instanced.update(0);
+
+        for (int i = 0; i < transformations.length; i++) {
+            PackedModel expected = createModel();
+            transformations[i].applyToModel(expected);
+            float[] positions = instanced.getInstances().get(i).getPositions();
+            for (int j = 0; j < positions.length; j++) {
+                assertEquals(expected.vertices.get(j), positions[j], 0);
+            }
+        }
+        assertEquals(1, model.vertices.get(3), 0);
+    }
+
+    @Test
+    void testAnimatedInstancesInterpolateKeyframes() {
+        KeyframeTrack track = new KeyframeTrack(List.of(
+                new Keyframe(0, new Vector3f(0, 0, 0), Quaternion.identity(), new Vector3f(1, 1, 1)),
+                new Keyframe(2, new Vector3f(4, 0, 0), Quaternion.fromAxisAngle(new Vector3f(0, 0, 1), 90),
+                        new Vector3f(3, 3, 3))), true);
+        InstancedModel instanced = new InstancedModel(createModel());
+        for (int i = 0; i < 200; i++) {
+            instanced.addInstance(track, i % 2);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        float[] buffer = instanced.getInstances().get(0).getPositions();
+        try {
+            instanced.update(1, pool);
+            // Вершина (1, 0, 0) при t = 0.5: масштаб 2, поворот на 45 градусов, сдвиг на 2 по X
+            float[] positions = instanced.getInstances().get(0).getPositions();
+            assertEquals(2 + (float) Math.sqrt(2), positions[3], EPS);
+            assertEquals((float) Math.sqrt(2), positions[4], EPS);
+            // Второй экземпляр сдвинут на секунду: конец анимации совпадает с ее началом
+            positions = instanced.getInstances().get(1).getPositions();
+            assertEquals(1, positions[3], EPS);
+            assertEquals(0, positions[4], EPS);
+
+            // По кругу анимация повторяется
+            instanced.update(5, pool);
+            assertEquals(2 + (float) Math.sqrt(2), instanced.getInstances().get(0).getPositions()[3], EPS);
+        } finally {
+            pool.shutdown();
+        }
+        assertSame(buffer, instanced.getInstances().get(0).getPositions());
+    }
+
+    @Test
+    void testVertexCountChangeIsRejected() {
+        PackedModel model = createModel();
+        InstancedModel instanced = new InstancedModel(model);
+        instanced.addInstance(new AffineTransformations().translation(1, 0, 0));
+        instanced.update(0);
+
+        model.addVertex(1, 1, 1);
+        instanced.invalidateVertices();
+        assertThrows(IllegalStateException.class, () -> instanced.update(0));
+        assertThrows(IllegalStateException.class, () -> instanced.addInstance(new AffineTransformations()));
+    }
+
+    private static PackedModel createModel() {
+        PackedModel model = new PackedModel();
+        model.addVertex(0, 0, 0);
+        model.addVertex(1, 0, 0);
+        model.addVertex(0, 1, 0);
+        model.addVertex(0, 0, 1);
+        return model;
+    }
+}
@@ -1,7 +1,14 @@
 package com.cgvsu.math;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class AffineTransformationsTest {
     private static final float EPS= 0.0001f;
@@ -233,4 +240,93 @@ public class AffineTransformationsTest {
         assertEquals(3, resultVector.y, EPS);
         assertEquals(6, resultVector.z, EPS);
     }
+
+    @Test
+    void testParallelApplyToModel() {
+        transform.rotationZ(25).scaling(2, 1, 0.5f).translation(1, -1, 3);
+        Model sequential = new Model();
+        Model parallel = new Model();
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            Vector3f vertex = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            sequential.vertices.add(vertex);
+            parallel.vertices.add(vertex);
+            sequential.normals.add(vertex);
+            parallel.normals.add(vertex);
+        }
+        PackedModel packed = PackedModel.fromModel(parallel);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            transform.applyToModel(sequential);
+            transform.applyToModel(parallel, pool, 64);
+            transform.applyToModel(packed, pool, 64);
+            assertThrows(IllegalArgumentException.class, () -> transform.applyToModel(parallel, pool, 0));
+            assertThrows(IllegalArgumentException.class, () -> transform.applyToModel(packed, pool, -1));
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < sequential.vertices.size(); i++) {
+            Vector3f expected = sequential.vertices.get(i);
+            Vector3f packedVertex = packed.vertexList().get(i);
+            assertEquals(expected.x, parallel.vertices.get(i).x, 0);
+            assertEquals(expected.y, parallel.vertices.get(i).y, 0);
+            assertEquals(expected.z, parallel.vertices.get(i).z, 0);
+            assertEquals(expected.x, packedVertex.x, 0);
+            assertEquals(expected.y, packedVertex.y, 0);
+            assertEquals(expected.z, packedVertex.z, 0);
+        }
+        for (int i = 0; i < sequential.normals.size(); i++) {
+            Vector3f expected = sequential.normals.get(i);
+            Vector3f packedNormal = packed.normalList().get(i);
+            assertEquals(expected.x, parallel.normals.get(i).x, 0);
+            assertEquals(expected.y, parallel.normals.get(i).y, 0);
+            assertEquals(expected.z, parallel.normals.get(i).z, 0);
+            assertEquals(expected.x, packedNormal.x, 0);
+            assertEquals(expected.y, packedNormal.y, 0);
+            assertEquals(expected.z, packedNormal.z, 0);
+        }
+    }
+
+    @Test
+    void testNormalStaysPerpendicularAfterNonUniformScaling() {
+        transform.scaling(2, 1, 1).translation(5, 5, 5);
+        Vector3f normal = transform.applyToNormal(new Vector3f(1, -1, 0));
+
+        assertEquals(1 / (float) Math.sqrt(5), normal.x, EPS);
+        assertEquals(-2 / (float) Math.sqrt(5), normal.y, EPS);
+        assertEquals(0, normal.z, EPS);
+
+        transform.reset();
+        normal = transform.normalizeNormals(false).applyToNormal(new Vector3f(1, -1, 0));
+
+        assertEquals(1, normal.x, EPS);
+        assertEquals(-1, normal.y, EPS);
+    }
+
+    @Test
+    void testKindTracksAppliedTransformations() {
+        assertEquals(AffineTransformations.Kind.IDENTITY, transform.getKind());
+        transform.translation(1, 2, 3);
+        assertEquals(AffineTransformations.Kind.TRANSLATION, transform.getKind());
+        transform.scaleByRatio(2);
+        assertEquals(AffineTransformations.Kind.AFFINE, transform.getKind());
+        transform.reset();
+        assertEquals(AffineTransformations.Kind.IDENTITY, transform.getKind());
+
+        Matrix4f projective = new Matrix4f();
+        projective.set(3, 2, 0.5f);
+        AffineTransformations other = new AffineTransformations(projective);
+        assertEquals(AffineTransformations.Kind.PROJECTIVE, other.getKind());
+        assertEquals(AffineTransformations.Kind.PROJECTIVE, transform.translationByX(1).combination(other).getKind());
+    }
+
+    @Test
+    void testConstructorCopiesMatrix() {
+        Matrix4f matrix = new Matrix4f();
+        new AffineTransformations(matrix).translation(1, 2, 3);
+
+        assertEquals(0, matrix.get(0, 3), 0);
+    }
 }
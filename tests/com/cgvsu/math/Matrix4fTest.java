@@ -0,0 +1,136 @@
+package com.cgvsu.math;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class Matrix4fTest {
+    private final Random random = new Random(3);
+
+    @Test
+    void testMultiplicationMatchesDefinition() {
+        Matrix4f a = randomMatrix();
+        Matrix4f b = randomMatrix();
+        Matrix4f result = a.matrixMultiplication(b);
+
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                float expected = 0;
+                for (int k = 0; k < 4; k++) {
+                    expected += a.get(i, k) * b.get(k, j);
+                }
+                assertEquals(expected, result.get(i, j), 0);
+            }
+        }
+    }
+
+    @Test
+    void testMulIntoWithAliasedDestination() {
+        Matrix4f a = randomMatrix();
+        Matrix4f b = randomMatrix();
+        Matrix4f expected = a.matrixMultiplication(b);
+
+        Matrix4f left = new Matrix4f(a);
+        Matrix4f.mulInto(left, b, left);
+        Matrix4f right = new Matrix4f(b);
+        Matrix4f.mulInto(a, right, right);
+        Matrix4f square = new Matrix4f(a);
+        square.mul(square);
+
+        assertMatrixEquals(expected, left);
+        assertMatrixEquals(expected, right);
+        assertMatrixEquals(a.matrixMultiplication(a), square);
+    }
+
+    @Test
+    void testTransformMatchesMultiplyByVector() {
+        Matrix4f matrix = randomMatrix();
+        Vector3f vector = new Vector3f(1.5f, -2, 0.25f);
+        Vector3f expected = matrix.multiplyMatrixByVector(vector);
+
+        Vector3f dest = new Vector3f(0, 0, 0);
+        matrix.transform(vector.x, vector.y, vector.z, dest);
+        float[] array = new float[5];
+        matrix.transform(vector.x, vector.y, vector.z, array, 2);
+
+        assertEquals(expected.x, dest.x, 0);
+        assertEquals(expected.y, dest.y, 0);
+        assertEquals(expected.z, dest.z, 0);
+        assertEquals(expected.x, array[2], 0);
+        assertEquals(expected.y, array[3], 0);
+        assertEquals(expected.z, array[4], 0);
+    }
+
+    @Test
+    void testTransformPointsMatchesTransform() {
+        Matrix4f affine = new AffineTransformations().rotationX(40).scaling(2, 3, 4).translation(5, 6, 7).getMatrix();
+        Matrix4f projective = randomMatrix();
+        for (Matrix4f matrix : new Matrix4f[] {affine, projective}) {
+            float[] points = new float[3 * 100 + 1];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = random.nextFloat() * 20 - 10;
+            }
+            float[] expected = points.clone();
+            for (int i = 1; i < expected.length; i += 3) {
+                matrix.transform(expected[i], expected[i + 1], expected[i + 2], expected, i);
+            }
+            FloatBuffer direct = ByteBuffer.allocateDirect(points.length * Float.BYTES)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer().put(points);
+
+            matrix.transformPoints(points, 1, 100);
+            matrix.transformPoints(direct, 1, 100);
+
+            for (int i = 0; i < points.length; i++) {
+                assertEquals(expected[i], points[i], 0);
+                assertEquals(expected[i], direct.get(i), 0);
+            }
+        }
+    }
+
+    @Test
+    void testSpecializedMultiplicationMatchesGeneral() {
+        Matrix4f matrix = randomMatrix();
+        float sin = 0.6f;
+        float cos = 0.8f;
+
+        assertMatrixEquals(matrix.matrixMultiplication(new Matrix4f(new float[][] {
+                {1, 0, 0, 2}, {0, 1, 0, -3}, {0, 0, 1, 4}, {0, 0, 0, 1}})),
+                new Matrix4f(matrix).mulTranslation(2, -3, 4));
+        assertMatrixEquals(matrix.matrixMultiplication(new Matrix4f(new float[][] {
+                {2, 0, 0, 0}, {0, 0.5f, 0, 0}, {0, 0, -1, 0}, {0, 0, 0, 1}})),
+                new Matrix4f(matrix).mulScaling(2, 0.5f, -1));
+        assertMatrixEquals(matrix.matrixMultiplication(new Matrix4f(new float[][] {
+                {1, 0, 0, 0}, {0, cos, -sin, 0}, {0, sin, cos, 0}, {0, 0, 0, 1}})),
+                new Matrix4f(matrix).mulRotationX(sin, cos));
+        assertMatrixEquals(matrix.matrixMultiplication(new Matrix4f(new float[][] {
+                {cos, 0, sin, 0}, {0, 1, 0, 0}, {-sin, 0, cos, 0}, {0, 0, 0, 1}})),
+                new Matrix4f(matrix).mulRotationY(sin, cos));
+        assertMatrixEquals(matrix.matrixMultiplication(new Matrix4f(new float[][] {
+                {cos, -sin, 0, 0}, {sin, cos, 0, 0}, {0, 0, 1, 0}, {0, 0, 0, 1}})),
+                new Matrix4f(matrix).mulRotationZ(sin, cos));
+        Quaternion rotation = Quaternion.fromAxisAngle(new Vector3f(1, -2, 3), 40);
+        assertMatrixEquals(matrix.matrixMultiplication(rotation.toMatrix4f()), new Matrix4f(matrix).mulRotation(rotation));
+    }
+
+    private Matrix4f randomMatrix() {
+        Matrix4f matrix = new Matrix4f();
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                matrix.set(i, j, random.nextFloat() * 2 - 1);
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertMatrixEquals(Matrix4f expected, Matrix4f actual) {
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                assertEquals(expected.get(i, j), actual.get(i, j), 0);
+            }
+        }
+    }
+}
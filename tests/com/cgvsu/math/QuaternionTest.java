@@ -0,0 +1,80 @@
+package com.cgvsu.math;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QuaternionTest {
+    private static final float EPS = 0.0001f;
+
+    @Test
+    void testAxisAngleMatchesRotationMatrices() {
+        Vector3f vector = new Vector3f(1, 2, 3);
+        assertVectorEquals(new AffineTransformations().rotationX(30).applyToVector(vector),
+                Quaternion.fromAxisAngle(new Vector3f(1, 0, 0), 30).rotate(vector));
+        assertVectorEquals(new AffineTransformations().rotationY(-70).applyToVector(vector),
+                Quaternion.fromAxisAngle(new Vector3f(0, 2, 0), -70).rotate(vector));
+        assertVectorEquals(new AffineTransformations().rotationZ(135).applyToVector(vector),
+                new AffineTransformations().rotation(new Vector3f(0, 0, 5), 135).applyToVector(vector));
+    }
+
+    @Test
+    void testCompositionMatchesMatrixProduct() {
+        Quaternion first = Quaternion.fromAxisAngle(new Vector3f(1, 1, 0), 40);
+        Quaternion second = Quaternion.fromAxisAngle(new Vector3f(0, -1, 2), 75);
+        Vector3f vector = new Vector3f(-2, 0.5f, 4);
+
+        Vector3f expected = new AffineTransformations().rotation(second).rotation(first).applyToVector(vector);
+
+        assertVectorEquals(expected, second.multiply(first).rotate(vector));
+        assertVectorEquals(second.rotate(first.rotate(vector)), second.multiply(first).rotate(vector));
+    }
+
+    @Test
+    void testRotateMatchesMatrix() {
+        // Длина кватерниона не равна единице: поворот все равно должен остаться чистым
+        Quaternion rotation = new Quaternion(1.5f, -0.5f, 2, 0.25f);
+        Vector3f vector = new Vector3f(-1, 4, 2.5f);
+        Vector3f expected = new Vector3f(0, 0, 0);
+        rotation.toMatrix4f().transform(vector.x, vector.y, vector.z, expected);
+
+        assertVectorEquals(expected, rotation.rotate(vector));
+        assertVectorEquals(vector, new Quaternion(0, 0, 0, 0).rotate(vector));
+    }
+
+    @Test
+    void testSlerp() {
+        Quaternion from = Quaternion.identity();
+        Quaternion to = Quaternion.fromAxisAngle(new Vector3f(0, 1, 0), 90);
+        Vector3f vector = new Vector3f(1, 0, 0);
+
+        assertVectorEquals(Quaternion.fromAxisAngle(new Vector3f(0, 1, 0), 45).rotate(vector),
+                from.slerp(to, 0.5f).rotate(vector));
+        assertVectorEquals(to.rotate(vector), from.slerp(to, 1).rotate(vector));
+        // -q задает тот же поворот, интерполяция должна пойти по короткой дуге
+        Quaternion negated = new Quaternion(-to.w, -to.x, -to.y, -to.z);
+        assertVectorEquals(from.slerp(to, 0.3f).rotate(vector), from.slerp(negated, 0.3f).rotate(vector));
+    }
+
+    @Test
+    void testIncrementalRotationStaysRigid() {
+        Quaternion step = Quaternion.fromAxisAngle(new Vector3f(1, 2, 3), 0.1f);
+        Quaternion accumulated = Quaternion.identity();
+        for (int i = 0; i < 3600; i++) {
+            accumulated = step.multiply(accumulated);
+        }
+        Vector3f vector = new Vector3f(3, -1, 2);
+
+        assertVectorEquals(Quaternion.fromAxisAngle(new Vector3f(1, 2, 3), 360).rotate(vector),
+                accumulated.rotate(vector), 0.001f);
+    }
+
+    private static void assertVectorEquals(Vector3f expected, Vector3f actual) {
+        assertVectorEquals(expected, actual, EPS);
+    }
+
+    private static void assertVectorEquals(Vector3f expected, Vector3f actual, float eps) {
+        assertEquals(expected.x, actual.x, eps);
+        assertEquals(expected.y, actual.y, eps);
+        assertEquals(expected.z, actual.z, eps);
+    }
+}
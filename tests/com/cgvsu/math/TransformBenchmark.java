@@ -0,0 +1,64 @@
+package com.cgvsu.math;
+
+import com.cgvsu.model.PackedModel;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Замер скорости преобразования вершин: пакетное и параллельное преобразование компактной модели
+// против поточечного multiplyMatrixByVector. Запускается как обычная программа, первые прогоны идут на прогрев JIT
+public class TransformBenchmark {
+    private static final int[] VERTEX_COUNTS = {1_000_000, 10_000_000};
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        AffineTransformations affine = new AffineTransformations().rotationY(30).scaleByRatio(1.5f).translation(1, 2, 3);
+        Matrix4f projective = new Matrix4f(affine.getMatrix());
+        projective.set(3, 2, 0.01f);
+
+        for (int vertexCount : VERTEX_COUNTS) {
+            PackedModel model = generateModel(vertexCount);
+            report("batch affine", vertexCount, () -> affine.applyToModel(model));
+            report("parallel affine", vertexCount, () -> affine.applyToModel(model, ForkJoinPool.commonPool()));
+            report("batch projective", vertexCount,
+                    () -> projective.transformPoints(model.vertices.buffer(), 0, model.getVertexCount()));
+            report("per vertex", vertexCount, () -> {
+                float[] data = model.vertices.buffer().array();
+                for (int i = 0; i < data.length; i += 3) {
+                    Vector3f result = affine.applyToVector(new Vector3f(data[i], data[i + 1], data[i + 2]));
+                    data[i] = result.x;
+                    data[i + 1] = result.y;
+                    data[i + 2] = result.z;
+                }
+            });
+        }
+    }
+
+    private static void report(String name, int vertexCount, Runnable transform) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            transform.run();
+        }
+
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            transform.run();
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        System.out.printf(Locale.ROOT, "%s, %d vertices, best of %d runs: %.1f ms, %.0f vertices/sec%n",
+                name, vertexCount, MEASURED_RUNS, bestTime / 1e6, vertexCount / (bestTime / 1e9));
+    }
+
+    private static PackedModel generateModel(int vertexCount) {
+        Random random = new Random(42);
+        PackedModel model = new PackedModel();
+        model.vertices.ensureCapacity(vertexCount * PackedModel.VERTEX_STRIDE);
+        for (int i = 0; i < vertexCount; i++) {
+            model.addVertex(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,67 @@
+package com.cgvsu.math;
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransformedModelTest {
+    private static final float EPS = 0.0001f;
+
+    @Test
+    void testLazyChainMatchesEagerApply() {
+        Model eager = createModel();
+        Model lazy = createModel();
+        AffineTransformations[] steps = {
+                new AffineTransformations().rotationX(30),
+                new AffineTransformations().translation(1, 2, 3),
+                new AffineTransformations().scaling(2, 0.5f, 3),
+                new AffineTransformations().rotationZ(-45).translationByY(4)
+        };
+
+        TransformedModel transformed = new TransformedModel(lazy);
+        for (AffineTransformations step : steps) {
+            step.applyToModel(eager);
+            transformed.apply(step);
+        }
+
+        assertTrue(transformed.hasPendingTransformations());
+        assertEquals(1, lazy.vertices.get(1).x, 0);
+        for (int i = 0; i < eager.vertices.size(); i++) {
+            Vector3f vertex = transformed.getVertex(i);
+            assertEquals(eager.vertices.get(i).x, vertex.x, EPS);
+            assertEquals(eager.vertices.get(i).y, vertex.y, EPS);
+            assertEquals(eager.vertices.get(i).z, vertex.z, EPS);
+        }
+
+        assertSame(lazy, transformed.getModel());
+        assertFalse(transformed.hasPendingTransformations());
+        for (int i = 0; i < eager.vertices.size(); i++) {
+            assertEquals(eager.vertices.get(i).x, lazy.vertices.get(i).x, EPS);
+            assertEquals(eager.vertices.get(i).y, lazy.vertices.get(i).y, EPS);
+            assertEquals(eager.vertices.get(i).z, lazy.vertices.get(i).z, EPS);
+        }
+    }
+
+    @Test
+    void testBakeResetsPendingTransform() {
+        Model model = createModel();
+        TransformedModel transformed = new TransformedModel(model);
+        transformed.apply(new AffineTransformations().translationByX(1));
+        transformed.bake();
+        transformed.bake();
+
+        assertEquals(2, model.vertices.get(1).x, EPS);
+    }
+
+    private static Model createModel() {
+        Model model = new Model();
+        model.vertices.add(new Vector3f(0, 0, 0));
+        model.vertices.add(new Vector3f(1, 0, 0));
+        model.vertices.add(new Vector3f(0, 1, -2));
+        model.vertices.add(new Vector3f(3, -1, 0.5f));
+        return model;
+    }
+}
@@ -0,0 +1,96 @@
+package com.cgvsu.meshcache;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.model.PackedModel;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+class MeshCacheTest {
+    private static final String CONTENT = """
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            vt 0.5 0.5
+            vn 0 0 1
+            f 1/1/1 2/1/1 3/1/1
+            f 3 2 1
+            """;
+
+    private static void assertSameModel(PackedModel expected, PackedModel result) {
+        Assertions.assertArrayEquals(expected.vertices.toArray(), result.vertices.toArray());
+        Assertions.assertArrayEquals(expected.textureVertices.toArray(), result.textureVertices.toArray());
+        Assertions.assertArrayEquals(expected.normals.toArray(), result.normals.toArray());
+        Assertions.assertArrayEquals(expected.polygonVertexOffsets.toArray(), result.polygonVertexOffsets.toArray());
+        Assertions.assertArrayEquals(expected.polygonVertexIndices.toArray(), result.polygonVertexIndices.toArray());
+        Assertions.assertArrayEquals(expected.polygonTextureVertexOffsets.toArray(), result.polygonTextureVertexOffsets.toArray());
+        Assertions.assertArrayEquals(expected.polygonTextureVertexIndices.toArray(), result.polygonTextureVertexIndices.toArray());
+        Assertions.assertArrayEquals(expected.polygonNormalOffsets.toArray(), result.polygonNormalOffsets.toArray());
+        Assertions.assertArrayEquals(expected.polygonNormalIndices.toArray(), result.polygonNormalIndices.toArray());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        PackedModel expected = ObjReader.readPacked(CONTENT);
+        Path file = Files.createTempFile("model", ".mesh");
+        try {
+            BinaryMeshWriter.write(expected, file);
+            PackedModel result = BinaryMeshReader.read(file);
+
+            assertSameModel(expected, result);
+            Assertions.assertTrue(result.vertices.buffer().isReadOnly());
+            result.vertices.set(0, 42);
+            result.normals.clear();
+            result.normals.add(0, 1, 0);
+            new AffineTransformations().translation(1, 2, 3).applyToModel(result);
+            Assertions.assertEquals(43, result.vertices.get(0));
+            Assertions.assertEquals(1, result.normals.get(1));
+            assertSameModel(expected, BinaryMeshReader.read(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCacheIsUsedUntilObjChanges() throws IOException {
+        Path directory = Files.createTempDirectory("cache");
+        Path objFile = directory.resolve("model.obj");
+        Path cacheFile = MeshCache.getCachePath(objFile);
+        try {
+            Files.writeString(objFile, CONTENT);
+            Files.setLastModifiedTime(objFile, FileTime.from(Instant.now().minusSeconds(60)));
+            assertSameModel(ObjReader.readPacked(CONTENT), MeshCache.load(objFile));
+            Assertions.assertTrue(Files.exists(cacheFile));
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(2, files.count());
+            }
+
+            PackedModel cached = MeshCache.load(objFile);
+            assertSameModel(ObjReader.readPacked(CONTENT), cached);
+            Assertions.assertTrue(cached.vertices.buffer().isDirect());
+
+            final String changedContent = CONTENT + "v 2 2 2\n";
+            Files.writeString(objFile, changedContent);
+            Files.setLastModifiedTime(objFile, FileTime.from(Instant.now().plusSeconds(60)));
+            assertSameModel(ObjReader.readPacked(changedContent), MeshCache.load(objFile));
+
+            // OBJ изменен, но остался старше кэша, как при правке во время разбора: кэш все равно не подходит
+            final String editedContent = CONTENT + "v 3 3 3\nv 4 4 4\n";
+            Files.writeString(objFile, editedContent);
+            Files.setLastModifiedTime(objFile, FileTime.from(Instant.now().minusSeconds(120)));
+            assertSameModel(ObjReader.readPacked(editedContent), MeshCache.load(objFile));
+            assertSameModel(ObjReader.readPacked(editedContent), MeshCache.load(objFile));
+        } finally {
+            Files.deleteIfExists(cacheFile);
+            Files.deleteIfExists(objFile);
+            Files.delete(directory);
+        }
+    }
+}
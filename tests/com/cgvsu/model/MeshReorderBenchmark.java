@@ -0,0 +1,64 @@
+package com.cgvsu.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Замер выигрыша от перестановки: проход, собирающий нормали вершин из граней, на перемешанной сетке
+// и на той же сетке после MeshReorderer.optimize. Запускается как обычная программа, первые прогоны идут на прогрев JIT
+public class MeshReorderBenchmark {
+    private static final int GRID_SIZE = 1000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        PackedModel model = PackedModel.fromModel(MeshReordererTest.createShuffledGrid(GRID_SIZE));
+        report("shuffled", model);
+
+        long start = System.nanoTime();
+        MeshReorderer.optimize(model);
+        System.out.printf(Locale.ROOT, "optimize: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        report("optimized", model);
+    }
+
+    private static void report(String name, PackedModel model) {
+        float[] normals = new float[model.getVertexCount() * 3];
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            accumulateNormals(model, normals);
+        }
+
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            accumulateNormals(model, normals);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        System.out.printf(Locale.ROOT, "%s, %d polygons, ACMR %.3f, best of %d runs: %.1f ms, %.0f polygons/sec%n",
+                name, model.getPolygonCount(), MeshReorderer.getAverageCacheMissRatio(model, MeshReorderer.DEFAULT_CACHE_SIZE),
+                MEASURED_RUNS, bestTime / 1e6, model.getPolygonCount() / (bestTime / 1e9));
+    }
+
+    // Нормаль каждой грани по первым трем вершинам прибавляется ко всем ее вершинам
+    private static void accumulateNormals(PackedModel model, float[] normals) {
+        final float[] vertices = model.vertices.buffer().array();
+        final int[] offsets = model.polygonVertexOffsets.buffer().array();
+        final int[] indices = model.polygonVertexIndices.buffer().array();
+        Arrays.fill(normals, 0);
+        for (int polygonIndex = 0; polygonIndex < model.getPolygonCount(); polygonIndex++) {
+            final int start = offsets[polygonIndex];
+            final int end = offsets[polygonIndex + 1];
+            final int a = indices[start] * 3, b = indices[start + 1] * 3, c = indices[start + 2] * 3;
+            final float abX = vertices[b] - vertices[a], abY = vertices[b + 1] - vertices[a + 1], abZ = vertices[b + 2] - vertices[a + 2];
+            final float acX = vertices[c] - vertices[a], acY = vertices[c + 1] - vertices[a + 1], acZ = vertices[c + 2] - vertices[a + 2];
+            final float x = abY * acZ - abZ * acY;
+            final float y = abZ * acX - abX * acZ;
+            final float z = abX * acY - abY * acX;
+            for (int i = start; i < end; i++) {
+                final int offset = indices[i] * 3;
+                normals[offset] += x;
+                normals[offset + 1] += y;
+                normals[offset + 2] += z;
+            }
+        }
+    }
+}
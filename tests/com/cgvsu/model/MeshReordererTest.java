@@ -0,0 +1,91 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class MeshReordererTest {
+    @Test
+    public void testReducesCacheMisses() {
+        PackedModel model = PackedModel.fromModel(createShuffledGrid(64));
+        float before = MeshReorderer.getAverageCacheMissRatio(model, MeshReorderer.DEFAULT_CACHE_SIZE);
+        MeshReorderer.optimize(model);
+        float after = MeshReorderer.getAverageCacheMissRatio(model, MeshReorderer.DEFAULT_CACHE_SIZE);
+
+        Assertions.assertTrue(before > 1.5f);
+        Assertions.assertTrue(after < 0.9f);
+    }
+
+    @Test
+    public void testKeepsPolygons() {
+        Model model = createShuffledGrid(16);
+        Set<List<Vector3f>> expected = polygonCoordinates(model);
+        Triangulator.getIndexedMesh(model);
+        MeshReorderer.optimize(model);
+
+        Assertions.assertEquals(expected, polygonCoordinates(model));
+        Assertions.assertEquals(List.of(0, 1, 2, 3), model.polygons.get(0).getVertexIndices());
+        Assertions.assertArrayEquals(Triangulator.buildIndexedMesh(model).getSourceVertexIndices(),
+                Triangulator.getIndexedMesh(model).getSourceVertexIndices());
+    }
+
+    @Test
+    public void testPackedModelMatchesModel() {
+        Model model = createShuffledGrid(16);
+        PackedModel packed = PackedModel.fromModel(model);
+        MeshReorderer.optimize(model);
+        MeshReorderer.optimize(packed);
+
+        Assertions.assertArrayEquals(PackedModel.fromModel(model).vertices.toArray(), packed.vertices.toArray());
+        Assertions.assertArrayEquals(PackedModel.fromModel(model).polygonVertexIndices.toArray(),
+                packed.polygonVertexIndices.toArray());
+    }
+
+    // Сетка из квадов, у которой перемешаны и вершины, и полигоны, как после неудачного экспорта
+    static Model createShuffledGrid(int size) {
+        Random random = new Random(7);
+        List<Integer> vertexOrder = new ArrayList<>();
+        for (int i = 0; i < (size + 1) * (size + 1); i++) {
+            vertexOrder.add(i);
+        }
+        Collections.shuffle(vertexOrder, random);
+
+        Model model = new Model();
+        int[] positions = new int[vertexOrder.size()];
+        for (int i = 0; i < vertexOrder.size(); i++) {
+            final int gridIndex = vertexOrder.get(i);
+            model.vertices.add(new Vector3f(gridIndex % (size + 1), gridIndex / (size + 1), 0));
+            positions[gridIndex] = i;
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int corner = y * (size + 1) + x;
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(new ArrayList<>(List.of(positions[corner], positions[corner + 1],
+                        positions[corner + size + 2], positions[corner + size + 1])));
+                model.polygons.add(polygon);
+            }
+        }
+        Collections.shuffle(model.polygons, random);
+        return model;
+    }
+
+    private static Set<List<Vector3f>> polygonCoordinates(Model model) {
+        Set<List<Vector3f>> result = new HashSet<>();
+        for (Polygon polygon : model.polygons) {
+            List<Vector3f> coordinates = new ArrayList<>();
+            for (int index : polygon.getVertexIndices()) {
+                coordinates.add(model.vertices.get(index));
+            }
+            result.add(coordinates);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+class MeshSimplifierTest {
+    @Test
+    public void testSimplifiesClosedSurface() {
+        Model sphere = createSphere(32, 64);
+        final int triangleCount = Triangulator.getIndexedMesh(sphere).getTriangleCount();
+        Model simplified = MeshSimplifier.simplify(sphere, triangleCount / 4);
+
+        Assertions.assertEquals(triangleCount / 4, simplified.polygons.size(), 1);
+        for (Polygon polygon : simplified.polygons) {
+            Assertions.assertEquals(3, polygon.getVertexIndices().size());
+            // Центр сферы в начале координат, поэтому у неперевернутой грани нормаль смотрит туда же, куда ее центр
+            Vector3f a = simplified.vertices.get(polygon.getVertexIndices().get(0));
+            Vector3f b = simplified.vertices.get(polygon.getVertexIndices().get(1));
+            Vector3f c = simplified.vertices.get(polygon.getVertexIndices().get(2));
+            final float abX = b.getX() - a.getX(), abY = b.getY() - a.getY(), abZ = b.getZ() - a.getZ();
+            final float acX = c.getX() - a.getX(), acY = c.getY() - a.getY(), acZ = c.getZ() - a.getZ();
+            final float normalX = abY * acZ - abZ * acY;
+            final float normalY = abZ * acX - abX * acZ;
+            final float normalZ = abX * acY - abY * acX;
+            Assertions.assertTrue(normalX * (a.getX() + b.getX() + c.getX()) + normalY * (a.getY() + b.getY() + c.getY())
+                    + normalZ * (a.getZ() + b.getZ() + c.getZ()) > 0);
+        }
+    }
+
+    @Test
+    public void testKeepsBoundaryAndPlane() {
+        Model grid = createGrid(16, false);
+        Model simplified = MeshSimplifier.simplify(grid, 0);
+
+        // Внутренние вершины плоской сетки стягиваются без ошибки, граничные остаются на месте
+        Set<List<Float>> boundary = new HashSet<>();
+        for (Vector3f vertex : grid.vertices) {
+            if (vertex.getX() == 0 || vertex.getX() == 16 || vertex.getY() == 0 || vertex.getY() == 16) {
+                boundary.add(List.of(vertex.getX(), vertex.getY(), vertex.getZ()));
+            }
+        }
+        Set<List<Float>> remaining = new HashSet<>();
+        for (Vector3f vertex : simplified.vertices) {
+            remaining.add(List.of(vertex.getX(), vertex.getY(), vertex.getZ()));
+        }
+        Assertions.assertEquals(boundary, remaining);
+        Assertions.assertTrue(simplified.polygons.size() < 2 * 16 * 16 / 4);
+    }
+
+    @Test
+    public void testKeepsTextureSeam() {
+        Model grid = createGrid(16, true);
+        Model simplified = MeshSimplifier.simplify(grid, 0);
+
+        int seamVertexCount = 0;
+        for (Vector3f vertex : simplified.vertices) {
+            if (vertex.getX() == 8) {
+                seamVertexCount++;
+            }
+        }
+        Assertions.assertEquals(17, seamVertexCount);
+        for (Polygon polygon : simplified.polygons) {
+            Assertions.assertEquals(3, polygon.getTextureVertexIndices().size());
+        }
+    }
+
+    @Test
+    public void testLodChain() {
+        Model sphere = createSphere(32, 64);
+        List<Model> chain = MeshSimplifier.buildLodChain(sphere, 2000, 500, 100);
+
+        Assertions.assertEquals(3, chain.size());
+        Assertions.assertEquals(2000, chain.get(0).polygons.size(), 1);
+        Assertions.assertEquals(500, chain.get(1).polygons.size(), 1);
+        Assertions.assertEquals(100, chain.get(2).polygons.size(), 1);
+        Assertions.assertTrue(chain.get(1).vertices.size() < chain.get(0).vertices.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MeshSimplifier.buildLodChain(sphere, 100, 200));
+    }
+
+    // Сфера из квадов с веерами треугольников у полюсов, замкнутая по долготе
+    private static Model createSphere(int rings, int segments) {
+        Model model = new Model();
+        model.vertices.add(new Vector3f(0, 1, 0));
+        for (int ring = 1; ring < rings; ring++) {
+            final double theta = Math.PI * ring / rings;
+            for (int segment = 0; segment < segments; segment++) {
+                final double phi = 2 * Math.PI * segment / segments;
+                model.vertices.add(new Vector3f((float) (Math.sin(theta) * Math.cos(phi)), (float) Math.cos(theta),
+                        (float) (Math.sin(theta) * Math.sin(phi))));
+            }
+        }
+        model.vertices.add(new Vector3f(0, -1, 0));
+        final int south = model.vertices.size() - 1;
+
+        for (int segment = 0; segment < segments; segment++) {
+            final int next = (segment + 1) % segments;
+            addPolygon(model, 0, 1 + next, 1 + segment);
+            for (int ring = 1; ring + 1 < rings; ring++) {
+                final int row = 1 + (ring - 1) * segments;
+                final int nextRow = row + segments;
+                addPolygon(model, row + segment, row + next, nextRow + next, nextRow + segment);
+            }
+            final int lastRow = 1 + (rings - 2) * segments;
+            addPolygon(model, lastRow + segment, lastRow + next, south);
+        }
+        return model;
+    }
+
+    // Плоская сетка из квадов. С текстурой у столбца x = size / 2 две разные текстурные вершины: слева и справа
+    private static Model createGrid(int size, boolean withSeam) {
+        Model model = new Model();
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                model.vertices.add(new Vector3f(x, y, 0));
+                model.textureVertices.add(new Vector2f(x, y));
+            }
+        }
+        final int seamStart = model.textureVertices.size();
+        for (int y = 0; y <= size; y++) {
+            model.textureVertices.add(new Vector2f(size / 2f + 100, y));
+        }
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int corner = y * (size + 1) + x;
+                Polygon polygon = new Polygon();
+                polygon.setVertexIndices(new ArrayList<>(List.of(corner, corner + 1, corner + size + 2, corner + size + 1)));
+                if (withSeam) {
+                    // Квады справа от шва ссылаются на отдельные текстурные вершины шва
+                    final boolean seam = x == size / 2;
+                    polygon.setTextureVertexIndices(new ArrayList<>(List.of(
+                            seam ? seamStart + y : corner,
+                            corner + 1,
+                            corner + size + 2,
+                            seam ? seamStart + y + 1 : corner + size + 1)));
+                }
+                model.polygons.add(polygon);
+            }
+        }
+        return model;
+    }
+
+    private static void addPolygon(Model model, Integer... indices) {
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(List.of(indices)));
+        model.polygons.add(polygon);
+    }
+}
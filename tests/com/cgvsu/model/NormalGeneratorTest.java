@@ -0,0 +1,151 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class NormalGeneratorTest {
+    private static final String CUBE = """
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            v 0 1 0
+            v 0 0 1
+            v 1 0 1
+            v 1 1 1
+            v 0 1 1
+            f 1 4 3 2
+            f 5 6 7 8
+            f 1 2 6 5
+            f 3 4 8 7
+            f 1 5 8 4
+            f 2 3 7 6
+            """;
+
+    @Test
+    public void testSmoothCube() {
+        Model model = ObjReader.read(CUBE);
+        Assertions.assertEquals(0, Triangulator.getIndexedMesh(model).getNormals().length);
+        new NormalGenerator().generate(model);
+
+        Assertions.assertEquals(8, model.normals.size());
+        Assertions.assertEquals(List.of(0, 3, 2, 1), model.polygons.get(0).getNormalIndices());
+        Assertions.assertEquals(24, Triangulator.getIndexedMesh(model).getNormals().length);
+        // В каждой вершине сходятся три грани под прямыми углами, нормаль смотрит по диагонали наружу
+        final float expected = (float) (1 / Math.sqrt(3));
+        assertNormal(model.normals.get(0), -expected, -expected, -expected);
+        assertNormal(model.normals.get(6), expected, expected, expected);
+    }
+
+    @Test
+    public void testCreaseAngleSplitsNormals() {
+        Model model = ObjReader.read(CUBE);
+        new NormalGenerator(60).generate(model);
+
+        Assertions.assertEquals(24, model.normals.size());
+        for (Polygon polygon : model.polygons) {
+            Vector3f first = model.normals.get(polygon.getNormalIndices().get(0));
+            for (int index : polygon.getNormalIndices()) {
+                Assertions.assertTrue(first.equals(model.normals.get(index)));
+            }
+        }
+        Vector3f bottom = model.normals.get(model.polygons.get(0).getNormalIndices().get(0));
+        assertNormal(bottom, 0, 0, -1);
+    }
+
+    @Test
+    public void testCreaseAngleKeepsSmoothSurface() {
+        // У икосаэдра угол между нормалями соседних граней около 41.8 градуса
+        final float t = (float) ((1 + Math.sqrt(5)) / 2);
+        StringBuilder content = new StringBuilder();
+        for (float[] vertex : new float[][] {
+                {-1, t, 0}, {1, t, 0}, {-1, -t, 0}, {1, -t, 0}, {0, -1, t}, {0, 1, t},
+                {0, -1, -t}, {0, 1, -t}, {t, 0, -1}, {t, 0, 1}, {-t, 0, -1}, {-t, 0, 1}}) {
+            content.append("v ").append(vertex[0]).append(' ').append(vertex[1]).append(' ').append(vertex[2]).append('\n');
+        }
+        for (int[] face : new int[][] {
+                {0, 11, 5}, {0, 5, 1}, {0, 1, 7}, {0, 7, 10}, {0, 10, 11}, {1, 5, 9}, {5, 11, 4}, {11, 10, 2},
+                {10, 7, 6}, {7, 1, 8}, {3, 9, 4}, {3, 4, 2}, {3, 2, 6}, {3, 6, 8}, {3, 8, 9}, {4, 9, 5},
+                {2, 4, 11}, {6, 2, 10}, {8, 6, 7}, {9, 8, 1}}) {
+            content.append("f ").append(face[0] + 1).append(' ').append(face[1] + 1).append(' ').append(face[2] + 1).append('\n');
+        }
+
+        Model model = ObjReader.read(content.toString());
+        new NormalGenerator(45).generate(model);
+        Assertions.assertEquals(12, model.normals.size());
+        final float length = (float) Math.sqrt(1 + t * t);
+        assertNormal(model.normals.get(model.polygons.get(0).getNormalIndices().get(0)), -1 / length, t / length, 0);
+
+        // Ниже угла между гранями каждая грань получает свои нормали
+        new NormalGenerator(40).generate(model);
+        Assertions.assertEquals(60, model.normals.size());
+    }
+
+    @Test
+    public void testAreaWeighting() {
+        // Две грани у общего ребра: большая горизонтальная и маленькая вертикальная
+        Model model = ObjReader.read("""
+                v 0 0 0
+                v 4 0 0
+                v 4 4 0
+                v 0 4 0
+                v 0 0 1
+                f 1 2 3 4
+                f 1 5 4
+                """);
+        new NormalGenerator(NormalGenerator.NO_CREASE, NormalGenerator.Weighting.AREA, null, 1).generate(model);
+
+        // Площади 16 и 2: нормаль (-2, 0, 16) после нормировки
+        final float length = (float) Math.sqrt(4 + 256);
+        assertNormal(model.normals.get(0), -2 / length, 0, 16 / length);
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        Model model = createWave();
+        Model parallel = createWave();
+        new NormalGenerator(30).generate(model);
+        new NormalGenerator(30, NormalGenerator.Weighting.ANGLE, new ForkJoinPool(4), 16).generate(parallel);
+
+        Assertions.assertEquals(model.normals.size(), parallel.normals.size());
+        for (int i = 0; i < model.normals.size(); i++) {
+            Assertions.assertTrue(model.normals.get(i).equals(parallel.normals.get(i)));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new NormalGenerator(30, NormalGenerator.Weighting.ANGLE, new ForkJoinPool(4), 0));
+    }
+
+    @Test
+    public void testPackedModelMatchesModel() {
+        Model model = ObjReader.read(CUBE);
+        PackedModel packed = PackedModel.fromModel(model);
+        new NormalGenerator(60).generate(model);
+        new NormalGenerator(60).generate(packed);
+
+        Assertions.assertEquals(model.normals.size(), packed.getNormalCount());
+        for (int i = 0; i < model.normals.size(); i++) {
+            Assertions.assertTrue(model.normals.get(i).equals(packed.normalList().get(i)));
+        }
+        Assertions.assertEquals(model.polygons.get(3).getNormalIndices(), packed.polygonList().get(3).getNormalIndices());
+    }
+
+    // Перемешанная сетка, изогнутая волной, чтобы часть ребер была острее угла излома
+    private static Model createWave() {
+        Model model = MeshReordererTest.createShuffledGrid(64);
+        for (int i = 0; i < model.vertices.size(); i++) {
+            Vector3f vertex = model.vertices.get(i);
+            model.vertices.set(i, new Vector3f(vertex.getX(), vertex.getY(), (float) Math.sin(vertex.getX() * 0.8) * 2));
+        }
+        return model;
+    }
+
+    private static void assertNormal(Vector3f normal, float x, float y, float z) {
+        Assertions.assertEquals(x, normal.getX(), 1e-6f);
+        Assertions.assertEquals(y, normal.getY(), 1e-6f);
+        Assertions.assertEquals(z, normal.getZ(), 1e-6f);
+    }
+}
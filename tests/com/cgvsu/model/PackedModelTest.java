@@ -0,0 +1,160 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.objreader.ObjReader;
+import com.cgvsu.objwriter.ObjWriter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class PackedModelTest {
+    private static final String CONTENT = """
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            v 0 1 0.5
+            vt 0 0
+            vt 1 0
+            vt 1 1
+            vn 0 0 1
+            f 1/1/1 2/2/1 3/3/1 4/3/1
+            f 1//1 3//1 4//1
+            f 2/1 3/2 4/3
+            """;
+
+    @Test
+    public void testReadPackedMatchesModel() {
+        Model model = ObjReader.read(CONTENT);
+        PackedModel packed = ObjReader.readPacked(CONTENT);
+
+        Assertions.assertEquals(model.vertices.size(), packed.getVertexCount());
+        Assertions.assertEquals(model.textureVertices.size(), packed.getTextureVertexCount());
+        Assertions.assertEquals(model.normals.size(), packed.getNormalCount());
+        Assertions.assertEquals(model.polygons.size(), packed.getPolygonCount());
+        for (int i = 0; i < model.vertices.size(); i++) {
+            Assertions.assertTrue(model.vertices.get(i).equals(packed.vertexList().get(i)));
+        }
+        for (int i = 0; i < model.polygons.size(); i++) {
+            Polygon expected = model.polygons.get(i);
+            Polygon result = packed.polygonList().get(i);
+            Assertions.assertEquals(expected.getVertexIndices(), result.getVertexIndices());
+            Assertions.assertEquals(expected.getTextureVertexIndices(), result.getTextureVertexIndices());
+            Assertions.assertEquals(expected.getNormalIndices(), result.getNormalIndices());
+        }
+    }
+
+    @Test
+    public void testVertexViewWritesThrough() {
+        PackedModel packed = ObjReader.readPacked(CONTENT);
+        packed.vertexList().set(1, new Vector3f(5, 6, 7));
+
+        Assertions.assertEquals(5, packed.vertices.get(3), 0);
+        Assertions.assertEquals(6, packed.vertices.get(4), 0);
+        Assertions.assertEquals(7, packed.vertices.get(5), 0);
+    }
+
+    @Test
+    public void testApplyToModelMatchesModel() {
+        Model model = ObjReader.read(CONTENT);
+        PackedModel packed = PackedModel.fromModel(model);
+        AffineTransformations transformations = new AffineTransformations().rotationY(30).translation(1, 2, 3);
+
+        transformations.applyToModel(model);
+        transformations.applyToModel(packed);
+
+        for (int i = 0; i < model.vertices.size(); i++) {
+            Assertions.assertTrue(model.vertices.get(i).equals(packed.vertexList().get(i)));
+        }
+    }
+
+    @Test
+    public void testWriterOutputMatchesModel() throws IOException {
+        Path directory = Files.createTempDirectory("packed");
+        Path modelFile = directory.resolve("model.obj");
+        Path packedFile = directory.resolve("packed.obj");
+        try {
+            new ObjWriter().write(ObjReader.read(CONTENT), modelFile.toString());
+            new ObjWriter().write(ObjReader.readPacked(CONTENT), packedFile.toString());
+
+            Assertions.assertEquals(Files.readString(modelFile), Files.readString(packedFile));
+        } finally {
+            Files.deleteIfExists(modelFile);
+            Files.deleteIfExists(packedFile);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testOffHeapStorages() throws IOException {
+        PackedModel expected = ObjReader.readPacked(CONTENT);
+        Path directory = Files.createTempDirectory("storage");
+        Path file = directory.resolve("model.obj");
+        try {
+            Files.writeString(file, CONTENT);
+            for (MeshStorage storage : new MeshStorage[] {MeshStorage.DIRECT, MeshStorage.mapped(directory)}) {
+                PackedModel result = ObjReader.readPacked(file, storage);
+                new AffineTransformations().scaleByRatio(2).applyToModel(result);
+
+                Assertions.assertFalse(result.vertices.buffer().hasArray());
+                Assertions.assertArrayEquals(expected.polygonVertexIndices.toArray(), result.polygonVertexIndices.toArray());
+                for (int i = 0; i < expected.vertices.size(); i++) {
+                    Assertions.assertEquals(expected.vertices.get(i) * 2, result.vertices.get(i), 0);
+                }
+            }
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> MeshStorage.DIRECT.allocateFloats(Integer.MAX_VALUE / 2));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> MeshStorage.DIRECT.allocateInts(Integer.MAX_VALUE / 2));
+            Assertions.assertEquals(Integer.MAX_VALUE / Float.BYTES, MeshStorage.DIRECT.getMaxCapacity(Float.BYTES));
+            Assertions.assertEquals(Integer.MAX_VALUE / Integer.BYTES, MeshStorage.mapped(directory).getMaxCapacity(Integer.BYTES));
+        } finally {
+            Files.delete(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testGrowthStopsAtStorageLimit() {
+        // Хранилище с маленьким пределом вместо гигабайтных буферов: удвоение 64 элементов упирается в 100
+        List<Integer> requested = new ArrayList<>();
+        MeshStorage storage = new MeshStorage() {
+            @Override
+            public FloatBuffer allocateFloats(int capacity) {
+                requested.add(capacity);
+                return FloatBuffer.allocate(capacity);
+            }
+
+            @Override
+            public IntBuffer allocateInts(int capacity) {
+                requested.add(capacity);
+                return IntBuffer.allocate(capacity);
+            }
+
+            @Override
+            public int getMaxCapacity(int elementBytes) {
+                return 400 / elementBytes;
+            }
+        };
+        FloatArray floats = new FloatArray(storage, 64);
+        IntArray ints = new IntArray(storage, 64);
+        for (int i = 0; i < 100; i++) {
+            floats.add(i);
+            ints.add(i);
+        }
+        Assertions.assertEquals(List.of(64, 64, 100, 100), requested);
+        Assertions.assertEquals(99, floats.get(99));
+        Assertions.assertEquals(99, ints.get(99));
+
+        // Запрос больше предела передается хранилищу как есть
+        floats.add(100);
+        Assertions.assertEquals(101, (int) requested.get(requested.size() - 1));
+    }
+}
@@ -0,0 +1,131 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TriangulatorTest {
+    @Test
+    public void testConvexQuadIsFan() {
+        int[] corners = Triangulator.triangulate(List.of(
+                new Vector3f(0, 0, 0), new Vector3f(1, 0, 0), new Vector3f(1, 1, 0), new Vector3f(0, 1, 0)));
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, corners);
+    }
+
+    @Test
+    public void testConcavePolygonKeepsArea() {
+        // Буква L в плоскости XZ: веер из первой вершины вышел бы за пределы полигона
+        List<Vector3f> vertices = List.of(
+                new Vector3f(2, 0, 1), new Vector3f(1, 0, 1), new Vector3f(1, 0, 2),
+                new Vector3f(0, 0, 2), new Vector3f(0, 0, 0), new Vector3f(2, 0, 0));
+        int[] corners = Triangulator.triangulate(vertices);
+
+        Assertions.assertEquals(12, corners.length);
+        float area = 0;
+        for (int i = 0; i < corners.length; i += 3) {
+            Vector3f a = vertices.get(corners[i]);
+            Vector3f b = vertices.get(corners[i + 1]);
+            Vector3f c = vertices.get(corners[i + 2]);
+            // Площадь со знаком в проекции на XZ: все треугольники обходятся как исходный полигон
+            float triangleArea = ((b.getX() - a.getX()) * (c.getZ() - a.getZ())
+                    - (b.getZ() - a.getZ()) * (c.getX() - a.getX())) / 2;
+            Assertions.assertTrue(triangleArea > 0);
+            area += triangleArea;
+        }
+        Assertions.assertEquals(3, area, 1e-6f);
+    }
+
+    @Test
+    public void testUnifiesVertexTuples() {
+        Model model = ObjReader.read("""
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                v 0 1 0
+                vt 0 0
+                vt 1 0
+                vt 1 1
+                vt 0 1
+                vt 0.5 0.5
+                f 1/1 2/2 3/3 4/4
+                f 1/1 3/3 4/5
+                """);
+        IndexedMesh mesh = Triangulator.buildIndexedMesh(model);
+
+        Assertions.assertEquals(3, mesh.getTriangleCount());
+        Assertions.assertEquals(5, mesh.getVertexCount());
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3, 0, 2, 4}, mesh.getTriangleIndices());
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3, 3}, mesh.getSourceVertexIndices());
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 3, 4}, mesh.getSourceTextureVertexIndices());
+        Assertions.assertArrayEquals(new int[]{-1, -1, -1, -1, -1}, mesh.getSourceNormalIndices());
+        Assertions.assertEquals(0, mesh.getNormals().length);
+        Assertions.assertEquals(0.5f, mesh.getTextureVertices()[8]);
+        Assertions.assertEquals(1f, mesh.getPositions()[13]);
+    }
+
+    @Test
+    public void testCachedUntilInvalidated() {
+        Model model = ObjReader.read("""
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                f 1 2 3
+                """);
+        IndexedMesh mesh = Triangulator.getIndexedMesh(model);
+        Assertions.assertSame(mesh, Triangulator.getIndexedMesh(model));
+
+        Triangulator.invalidate(model);
+        Assertions.assertNotSame(mesh, Triangulator.getIndexedMesh(model));
+    }
+
+    @Test
+    public void testCacheFollowsModelChanges() {
+        Model model = ObjReader.read("""
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                v 1 0 0
+                v 0 1 0
+                f 1 2 3
+                f 1 4 5
+                """);
+        IndexedMesh mesh = Triangulator.getIndexedMesh(model);
+        Assertions.assertEquals(5, mesh.getVertexCount());
+
+        // Склейка заменяет список вершин, сетка со старыми индексами больше не годится
+        VertexWelder.weld(model);
+        mesh = Triangulator.getIndexedMesh(model);
+        Assertions.assertEquals(4, mesh.getVertexCount());
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 0, 1, 3}, mesh.getTriangleIndices());
+
+        // Добавление полигона без вызова invalidate
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(List.of(1, 2, 3)));
+        model.polygons.add(polygon);
+        Assertions.assertEquals(3, Triangulator.getIndexedMesh(model).getTriangleCount());
+
+        AffineTransformations transformation = new AffineTransformations();
+        transformation.translation(0, 0, 2);
+        transformation.applyToModel(model);
+        Assertions.assertEquals(2f, Triangulator.getIndexedMesh(model).getPositions()[2]);
+
+        // Новые координаты без каких-либо вызовов: разбиение прежнее, значения свежие
+        mesh = Triangulator.getIndexedMesh(model);
+        Assertions.assertSame(mesh, Triangulator.getIndexedMesh(model));
+        model.vertices.set(0, new Vector3f(5, 5, 5));
+        IndexedMesh moved = Triangulator.getIndexedMesh(model);
+        Assertions.assertEquals(5f, moved.getPositions()[0]);
+        Assertions.assertSame(mesh.getTriangleIndices(), moved.getTriangleIndices());
+
+        // Индексы полигона изменены на месте, об этом сообщает markModified
+        model.polygons.get(2).getVertexIndices().set(0, 0);
+        model.markModified();
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 0, 1, 3, 0, 2, 3},
+                Triangulator.getIndexedMesh(model).getTriangleIndices());
+    }
+}
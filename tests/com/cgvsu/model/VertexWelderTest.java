@@ -0,0 +1,99 @@
+package com.cgvsu.model;
+
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.objreader.ObjReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class VertexWelderTest {
+    // Два треугольника, у которых каждая вершина записана отдельно для каждого угла
+    private static final String CONTENT = """
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            v 0 0 0
+            v 1 1 0
+            v 0.00000001 1 0
+            f 1 2 3
+            f 4 5 6
+            """;
+
+    @Test
+    public void testWeldModel() {
+        Model model = ObjReader.read(CONTENT);
+        VertexWelder.WeldResult result = VertexWelder.weld(model);
+
+        Assertions.assertEquals(6, result.getOriginalVertexCount());
+        Assertions.assertEquals(4, result.getVertexCount());
+        Assertions.assertEquals(2, result.getRemovedVertexCount());
+        Assertions.assertEquals(4, model.vertices.size());
+        Assertions.assertEquals(List.of(0, 1, 2), model.polygons.get(0).getVertexIndices());
+        Assertions.assertEquals(List.of(0, 2, 3), model.polygons.get(1).getVertexIndices());
+    }
+
+    @Test
+    public void testWeldPackedModelMatchesModel() {
+        Model model = ObjReader.read(CONTENT);
+        PackedModel packed = PackedModel.fromModel(model);
+        VertexWelder.weld(model, 0.5f);
+        VertexWelder.WeldResult result = VertexWelder.weld(packed, 0.5f);
+
+        Assertions.assertEquals(4, result.getVertexCount());
+        Assertions.assertEquals(model.vertices.size(), packed.getVertexCount());
+        for (int i = 0; i < model.vertices.size(); i++) {
+            Assertions.assertTrue(model.vertices.get(i).equals(packed.vertexList().get(i)));
+        }
+        Assertions.assertArrayEquals(new int[] {0, 1, 2, 0, 2, 3}, packed.polygonVertexIndices.toArray());
+    }
+
+    @Test
+    public void testWeldMatchesBruteForce() {
+        Random random = new Random(11);
+        final int count = 5000;
+        final float eps = 0.01f;
+        float[] coordinates = new float[count * 3];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextInt(40) * 0.0075f - 0.15f;
+        }
+
+        int[] indexMap = VertexWelder.buildIndexMap(coordinates, count, eps);
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            Vector3f vertex = new Vector3f(coordinates[i * 3], coordinates[i * 3 + 1], coordinates[i * 3 + 2]);
+            if (indexMap[i] == kept) {
+                kept++;
+                continue;
+            }
+            Assertions.assertTrue(indexMap[i] < kept);
+            int representative = Arrays.stream(indexMap).limit(i).boxed().toList().indexOf(indexMap[i]);
+            Vector3f other = new Vector3f(coordinates[representative * 3],
+                    coordinates[representative * 3 + 1], coordinates[representative * 3 + 2]);
+            Assertions.assertTrue(vertex.equals(other, eps));
+        }
+    }
+
+    @Test
+    public void testHugeAndInfiniteCoordinates() {
+        // 1e39 не помещается во float и читается как бесконечность, а 5e12 дает номер ячейки больше Long.MAX_VALUE
+        Model model = ObjReader.read("""
+                v 1e39 0 0
+                v 1e39 0 0
+                v 5e12 0 0
+                v 5e12 0 0
+                v -5e12 0 0
+                v 0 0 0
+                f 1 3 6
+                f 2 4 5
+                """);
+        VertexWelder.WeldResult result = VertexWelder.weld(model);
+
+        Assertions.assertEquals(5, result.getVertexCount());
+        Assertions.assertArrayEquals(new int[] {0, 1, 2, 2, 3, 4}, result.getIndexMap());
+        Assertions.assertEquals(List.of(1, 2, 3), model.polygons.get(1).getVertexIndices());
+    }
+}
@@ -0,0 +1,136 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class IncrementalObjReaderTest {
+    private static final int LINE_COUNT = 2000;
+
+    // Маленькие куски, чтобы в тестовом файле их было много
+    private static IncrementalObjReader createReader() {
+        return new IncrementalObjReader(256, 4096, 7);
+    }
+
+    private static String createContent(int vertexCount) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < vertexCount; i++) {
+            content.append("v ").append(i).append(" ").append(i * 0.5f).append(" -").append(i).append("\n");
+            content.append("vt 0.").append(i).append(" 0.25\n");
+        }
+        content.append("vn 0 0 1\n");
+        for (int i = 1; i + 2 <= vertexCount; i++) {
+            content.append("f ").append(i).append("/").append(i).append("/1 ")
+                    .append(i + 1).append("/").append(i + 1).append("/1 ")
+                    .append(i + 2).append("/").append(i + 2).append("/1\n");
+        }
+        return content.toString();
+    }
+
+    private static void assertSameModel(Model expected, Model result) {
+        Assertions.assertEquals(expected.vertices.size(), result.vertices.size());
+        for (int i = 0; i < expected.vertices.size(); i++) {
+            Assertions.assertTrue(expected.vertices.get(i).equals(result.vertices.get(i)));
+        }
+        Assertions.assertEquals(expected.textureVertices.size(), result.textureVertices.size());
+        for (int i = 0; i < expected.textureVertices.size(); i++) {
+            Assertions.assertEquals(expected.textureVertices.get(i).getX(), result.textureVertices.get(i).getX());
+            Assertions.assertEquals(expected.textureVertices.get(i).getY(), result.textureVertices.get(i).getY());
+        }
+        Assertions.assertEquals(expected.normals.size(), result.normals.size());
+        Assertions.assertEquals(expected.polygons.size(), result.polygons.size());
+        for (int i = 0; i < expected.polygons.size(); i++) {
+            Assertions.assertEquals(expected.polygons.get(i).getVertexIndices(), result.polygons.get(i).getVertexIndices());
+            Assertions.assertEquals(expected.polygons.get(i).getTextureVertexIndices(), result.polygons.get(i).getTextureVertexIndices());
+            Assertions.assertEquals(expected.polygons.get(i).getNormalIndices(), result.polygons.get(i).getNormalIndices());
+        }
+    }
+
+    @Test
+    public void testChangedVertexReparsesOneChunk() {
+        IncrementalObjReader reader = createReader();
+        final String content = createContent(LINE_COUNT);
+        Model model = reader.read(content);
+        final int chunkCount = reader.getLastParsedChunkCount();
+        Assertions.assertTrue(chunkCount > 10);
+
+        final String edited = content.replace("v 1000 500.0 -1000\n", "v 1000 700.0 -1000\n");
+        Assertions.assertSame(model, reader.read(edited));
+        Assertions.assertEquals(1, reader.getLastParsedChunkCount());
+        assertSameModel(ObjReader.read(edited), model);
+    }
+
+    @Test
+    public void testInsertedAndDeletedLinesShiftFollowingElements() {
+        IncrementalObjReader reader = createReader();
+        final String content = createContent(LINE_COUNT);
+        Model model = reader.read(content);
+
+        final String inserted = content.replace("v 10 5.0 -10\n", "v 10 5.0 -10\nv 1 1 1\nvn 1 0 0\nf 1 2 3\n");
+        reader.read(inserted);
+        Assertions.assertTrue(reader.getLastParsedChunkCount() <= 2);
+        assertSameModel(ObjReader.read(inserted), model);
+
+        final String deleted = inserted.replace("vn 1 0 0\n", "").replace("f 100/100/1 101/101/1 102/102/1\n", "");
+        reader.read(deleted);
+        Assertions.assertTrue(reader.getLastParsedChunkCount() <= 4);
+        assertSameModel(ObjReader.read(deleted), model);
+    }
+
+    @Test
+    public void testRelativeIndicesFollowInsertedVertices() {
+        IncrementalObjReader reader = createReader();
+        final String content = createContent(LINE_COUNT) + "v 0 0 0\nv 1 0 0\nv 0 1 0\nf -3 -2 -1\n";
+        Model model = reader.read(content);
+
+        final String inserted = content.replace("v 10 5.0 -10\n", "v 10 5.0 -10\nv 1 1 1\n");
+        reader.read(inserted);
+        assertSameModel(ObjReader.read(inserted), model);
+        Assertions.assertEquals(List.of(2001, 2002, 2003), model.polygons.get(model.polygons.size() - 1).getVertexIndices());
+    }
+
+    @Test
+    public void testLargeChangeFallsBackToFullParse() {
+        IncrementalObjReader reader = createReader();
+        Model model = reader.read(createContent(LINE_COUNT));
+
+        final String content = createContent(LINE_COUNT / 2).replace(" 0.25\n", " 0.75\n");
+        reader.read(content);
+        assertSameModel(ObjReader.read(content), model);
+    }
+
+    @Test
+    public void testErrorKeepsPreviousModel() {
+        IncrementalObjReader reader = createReader();
+        final String content = createContent(LINE_COUNT);
+        Model model = reader.read(content);
+
+        final String broken = content.replace("v 1000 500.0 -1000\n", "v 1000 500.0\n");
+        try {
+            reader.read(broken);
+            Assertions.fail();
+
+        } catch (ObjReaderException exception) {
+            String expectedError = "Error parsing OBJ file on line: 2001. Too few vertex arguments.";
+            Assertions.assertEquals(expectedError, exception.getMessage());
+        }
+        assertSameModel(ObjReader.read(content), model);
+
+        // Последняя грань не меняется, но после удаления текстурной вершины ссылается за конец списка
+        try {
+            reader.read(content.replace("vt 0.1500 0.25\n", ""));
+            Assertions.fail();
+
+        } catch (ObjIndexException exception) {
+            Assertions.assertArrayEquals(new int[] {5998}, exception.getFaceLineIndices());
+        }
+        assertSameModel(ObjReader.read(content), model);
+
+        final String edited = content.replace("vt 0.5 0.25\n", "vt 0.5 0.5\n");
+        reader.read(edited);
+        Assertions.assertEquals(1, reader.getLastParsedChunkCount());
+        assertSameModel(ObjReader.read(edited), model);
+    }
+}
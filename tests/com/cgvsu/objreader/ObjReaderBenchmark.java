@@ -0,0 +1,56 @@
+package com.cgvsu.objreader;
+
+import java.util.Locale;
+import java.util.Random;
+
+// Простой замер скорости разбора: генерируем OBJ текст и считаем, сколько строк в секунду читает ObjReader.
+// Запускается как обычная программа, первые прогоны идут на прогрев JIT
+public class ObjReaderBenchmark {
+    private static final int VERTEX_COUNT = 500_000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) {
+        final String content = generateContent(VERTEX_COUNT);
+        final long lineCount = content.chars().filter(c -> c == '\n').count();
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            ObjReader.read(content);
+        }
+
+        long bestTime = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            ObjReader.read(content);
+            bestTime = Math.min(bestTime, System.nanoTime() - start);
+        }
+
+        System.out.printf(Locale.ROOT, "%d lines, best of %d runs: %.1f ms, %.0f lines/sec%n",
+                lineCount, MEASURED_RUNS, bestTime / 1e6, lineCount / (bestTime / 1e9));
+    }
+
+    static String generateContent(int vertexCount) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(vertexCount * 100);
+        for (int i = 0; i < vertexCount; i++) {
+            builder.append(String.format(Locale.ROOT, "v %.6f %.6f %.6f%n",
+                    random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100));
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            builder.append(String.format(Locale.ROOT, "vt %.6f %.6f%n", random.nextFloat(), random.nextFloat()));
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            builder.append(String.format(Locale.ROOT, "vn %.6f %.6f %.6f%n",
+                    random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1));
+        }
+        for (int i = 0; i + 2 < vertexCount; i++) {
+            builder.append("f");
+            for (int j = 1; j <= 3; j++) {
+                int index = i + j;
+                builder.append(' ').append(index).append('/').append(index).append('/').append(index);
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -1,9 +1,15 @@
 package com.cgvsu.objreader;
 
 import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -57,4 +63,82 @@ class ObjReaderTest {
             Assertions.assertEquals(expectedError, exception.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReadFromPath() throws IOException {
+        final String content = "v 1 2 3\nv 4 5 6\nv 7 8 9\nvt 0.5 0.5\nvn 0 0 1\nf 1/1/1 2/1/1 3/1/1\n";
+        Path file = Files.createTempFile("model", ".obj");
+        try {
+            Files.writeString(file, content);
+            Model fromString = ObjReader.read(content);
+            Model fromFile = ObjReader.read(file);
+
+            Assertions.assertEquals(fromString.vertices.size(), fromFile.vertices.size());
+            for (int i = 0; i < fromString.vertices.size(); i++) {
+                Assertions.assertTrue(fromString.vertices.get(i).equals(fromFile.vertices.get(i)));
+            }
+            Assertions.assertEquals(1, fromFile.textureVertices.size());
+            Assertions.assertEquals(1, fromFile.normals.size());
+            Assertions.assertEquals(fromString.polygons.get(0).getVertexIndices(), fromFile.polygons.get(0).getVertexIndices());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReadFromStreamKeepsLineNumbers() {
+        final String content = "v 1 2 3\n\nv 4 5\n";
+        try {
+            ObjReader.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+            Assertions.fail();
+
+        } catch (ObjReaderException exception) {
+            String expectedError = "Error parsing OBJ file on line: 3. Too few vertex arguments.";
+            Assertions.assertEquals(expectedError, exception.getMessage());
+
+        } catch (IOException exception) {
+            Assertions.fail();
+        }
+    }
+
+    @Test
+    public void testNegativeIndicesAreRelativeToReadElements() {
+        final String content = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvt 0 0\nvn 0 0 1\nf -3/-1/-1 -2/1/1 -1/-1/1\nv 1 1 0\nf 2 -3 -1\n";
+        Model model = ObjReader.read(content);
+
+        Assertions.assertEquals(Arrays.asList(0, 1, 2), model.polygons.get(0).getVertexIndices());
+        Assertions.assertEquals(Arrays.asList(0, 0, 0), model.polygons.get(0).getTextureVertexIndices());
+        Assertions.assertEquals(Arrays.asList(0, 0, 0), model.polygons.get(0).getNormalIndices());
+        Assertions.assertEquals(Arrays.asList(1, 1, 3), model.polygons.get(1).getVertexIndices());
+    }
+
+    @Test
+    public void testAllInvalidFacesAreReported() {
+        final String content = "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 3\nf 1 2 4\nvt 0 0\nf 1/1 2/2 3/1\nf 0 1 2\nf -4 -3 -2\n";
+        try {
+            ObjReader.read(content);
+            Assertions.fail();
+
+        } catch (ObjIndexException exception) {
+            String expectedError = "Error parsing OBJ file on line: 5. Vertex index out of range. Faces with invalid indices: 4.";
+            Assertions.assertEquals(expectedError, exception.getMessage());
+            Assertions.assertArrayEquals(new int[] {5, 7, 8, 9}, exception.getFaceLineIndices());
+        }
+    }
+
+    @Test
+    public void testLineFormatErrorIsReportedBeforeIndexErrors() {
+        final String content = "v 0 0 0\nf 1 2 3\nv 1 2\n";
+        try {
+            ObjReader.read(content);
+            Assertions.fail();
+
+        } catch (ObjIndexException exception) {
+            Assertions.fail();
+
+        } catch (ObjReaderException exception) {
+            String expectedError = "Error parsing OBJ file on line: 3. Too few vertex arguments.";
+            Assertions.assertEquals(expectedError, exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class ObjSceneIndexTest {
+    // Два объекта, у второго две группы и смена материала. Грань в конце ссылается на вершину первого объекта
+    private static final String SCENE = """
+            # сцена
+            mtllib scene.mtl
+            o Cube
+            v 0 0 0
+            v 1 0 0
+            v 1 1 0
+            v 0 1 0
+            vt 0 0\r
+            vn 0 0 1\r
+            usemtl Red
+            f 1/1/1 2/1/1 3/1/1 4/1/1
+
+            o Плоскость
+               \t
+            g left
+            v 5 0 0
+            v 6 0 0
+            v 6 1 0
+            f -3 -2 -1
+            g right
+            usemtl Blue
+            v 7 0 0
+            v 7 1 0
+            f 6 8 9
+            f 9 8 3
+            """;
+
+    private static Path writeScene(String content) throws IOException {
+        Path file = Files.createTempFile("scene", ".obj");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    public void testIndexDescribesSubMeshes() throws IOException {
+        Path file = writeScene(SCENE);
+        try {
+            ObjSceneIndex index = ObjSceneIndex.build(file);
+
+            Assertions.assertEquals(List.of("scene.mtl"), index.getMaterialLibraries());
+            List<ObjSceneIndex.SubMesh> subMeshes = index.getSubMeshes();
+            Assertions.assertEquals(4, subMeshes.size());
+
+            Assertions.assertEquals("Cube", subMeshes.get(0).getObjectName());
+            Assertions.assertNull(subMeshes.get(0).getMaterialName());
+            Assertions.assertEquals(4, subMeshes.get(0).getVertexCount());
+            Assertions.assertEquals(1, subMeshes.get(0).getTextureVertexCount());
+            Assertions.assertEquals(1, subMeshes.get(0).getNormalCount());
+            Assertions.assertEquals(0, subMeshes.get(0).getPolygonCount());
+
+            Assertions.assertEquals("Red", subMeshes.get(1).getMaterialName());
+            Assertions.assertEquals(1, subMeshes.get(1).getPolygonCount());
+
+            Assertions.assertEquals("Плоскость", subMeshes.get(2).getObjectName());
+            Assertions.assertEquals("left", subMeshes.get(2).getGroupName());
+            Assertions.assertEquals("Red", subMeshes.get(2).getMaterialName());
+            Assertions.assertEquals(3, subMeshes.get(2).getVertexCount());
+
+            Assertions.assertEquals("right", subMeshes.get(3).getGroupName());
+            Assertions.assertEquals("Blue", subMeshes.get(3).getMaterialName());
+            Assertions.assertEquals(2, subMeshes.get(3).getPolygonCount());
+            Assertions.assertEquals(Files.size(file), subMeshes.get(3).getEnd());
+            for (int i = 0; i + 1 < subMeshes.size(); i++) {
+                Assertions.assertTrue(subMeshes.get(i).getEnd() <= subMeshes.get(i + 1).getStart());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLoadObjectUsesOwnIndices() throws IOException {
+        Path file = writeScene(SCENE);
+        try {
+            ObjSceneIndex index = ObjSceneIndex.build(file);
+
+            Model cube = index.loadObject("Cube");
+            Assertions.assertEquals(4, cube.vertices.size());
+            Assertions.assertEquals(1, cube.polygons.size());
+            Assertions.assertEquals(List.of(0, 1, 2, 3), cube.polygons.get(0).getVertexIndices());
+            Assertions.assertEquals(List.of(0, 0, 0, 0), cube.polygons.get(0).getNormalIndices());
+
+            // Вершина первого объекта, на которую ссылается последняя грань, добавляется в конец списка
+            Model plane = index.loadObject("Плоскость");
+            Assertions.assertEquals(6, plane.vertices.size());
+            Assertions.assertEquals(3, plane.polygons.size());
+            Assertions.assertEquals(List.of(0, 1, 2), plane.polygons.get(0).getVertexIndices());
+            Assertions.assertEquals(List.of(1, 3, 4), plane.polygons.get(1).getVertexIndices());
+            Assertions.assertEquals(List.of(4, 3, 5), plane.polygons.get(2).getVertexIndices());
+            Assertions.assertTrue(plane.vertices.get(5).equals(ObjReader.read(SCENE).vertices.get(2)));
+
+            Model right = index.loadGroup("right");
+            Assertions.assertEquals(2, right.polygons.size());
+            Assertions.assertEquals(List.of(2, 0, 1), right.polygons.get(0).getVertexIndices());
+            Assertions.assertEquals(List.of(1, 0, 3), right.polygons.get(1).getVertexIndices());
+            Assertions.assertEquals(4, right.vertices.size());
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> index.loadObject("Sphere"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testErrorsKeepFileLineNumbers() throws IOException {
+        final String brokenLine = SCENE.replace("v 7 1 0", "v 7 1");
+        Path file = writeScene(brokenLine);
+        try {
+            ObjSceneIndex index = ObjSceneIndex.build(file);
+            // Части первого объекта не содержат ошибок и читаются
+            Assertions.assertEquals(4, index.loadObject("Cube").vertices.size());
+
+            try {
+                index.loadGroup("right");
+                Assertions.fail();
+
+            } catch (ObjReaderException exception) {
+                String expectedError = "Error parsing OBJ file on line: 22. Too few vertex arguments.";
+                Assertions.assertEquals(expectedError, exception.getMessage());
+                Assertions.assertEquals(
+                        Assertions.assertThrows(ObjReaderException.class, () -> ObjReader.read(brokenLine)).getMessage(),
+                        exception.getMessage());
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        final String brokenIndex = SCENE.replace("f 6 8 9", "f 6 8 19");
+        file = writeScene(brokenIndex);
+        try {
+            try {
+                ObjSceneIndex.build(file).loadGroup("right");
+                Assertions.fail();
+
+            } catch (ObjIndexException exception) {
+                Assertions.assertArrayEquals(new int[] {23}, exception.getFaceLineIndices());
+                Assertions.assertArrayEquals(Assertions.assertThrows(ObjIndexException.class,
+                        () -> ObjReader.read(brokenIndex)).getFaceLineIndices(), exception.getFaceLineIndices());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.cgvsu.objreader;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+class ObjTokenizerTest {
+    private static float parseFloat(String value) {
+        return new ObjTokenizer(value).parseFloat(0, value.length());
+    }
+
+    private static int parseInt(String value) {
+        return new ObjTokenizer(value).parseInt(0, value.length());
+    }
+
+    // Результат сравнивается по битам, чтобы различать -0 и 0 и проверять NaN
+    private static void assertSameFloat(String value) {
+        float expected;
+        try {
+            expected = Float.parseFloat(value);
+        } catch (NumberFormatException exception) {
+            Assertions.assertThrows(NumberFormatException.class, () -> parseFloat(value), value);
+            return;
+        }
+        Assertions.assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(parseFloat(value)), value);
+    }
+
+    private static void assertSameInt(String value) {
+        int expected;
+        try {
+            expected = Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            Assertions.assertThrows(NumberFormatException.class, () -> parseInt(value), value);
+            return;
+        }
+        Assertions.assertEquals(expected, parseInt(value), value);
+    }
+
+    @Test
+    public void testParseFloatMatchesJdk() {
+        final String[] values = {
+                "0", "-0", "+0", "0.0", "-0.0", "1", "-1", "+1", "12.5", "-12.5", ".5", "-.5", "5.", "0.1", "0.3",
+                // Больше 7 значащих цифр, в том числе больше 18, когда мантисса не помещается в long
+                "3.14159265", "0.123456789012", "1.00000005960464477539", "16777217", "123456789012345678",
+                "1234567890123456789012345", "0.000000000000000000000000001",
+                // Границы точного пути: степень десяти до 22 и мантисса до 2^53
+                "1e22", "1e23", "1e-22", "1e-23", "9007199254740992", "9007199254740993", "4.5e15",
+                // Большие экспоненты, переполнение и субнормальные числа
+                "3.4028235e38", "3.4028236e38", "1e39", "-1e39", "1e-38", "1.4e-45", "7e-46", "1e-46", "1e-400",
+                "1e0400", "2.5E+10", "2.5e-0010", "1e0", "1E5",
+                // Значения ровно посередине между соседними float
+                "1.000000059604644775390625", "0.50000002980232238769531250",
+                "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "0x1p3", "1f", "2.5d",
+                "", "-", "+", ".", "e5", "1e", "1e+", "1..2", "1.2.3", "--1", "1 ", "abc", "1,5"
+        };
+        for (String value : values) {
+            assertSameFloat(value);
+        }
+    }
+
+    @Test
+    public void testRandomFloatsMatchJdk() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            final double magnitude = Math.pow(10, random.nextInt(90) - 50);
+            final double value = (random.nextDouble() - 0.5) * magnitude;
+            assertSameFloat(Double.toString(value));
+            assertSameFloat(Float.toString((float) value));
+            assertSameFloat(String.format(Locale.ROOT, "%." + random.nextInt(20) + "f", value));
+            assertSameFloat(String.format(Locale.ROOT, "%." + random.nextInt(12) + "e", value));
+
+            // Произвольные цифры с точкой и экспонентой
+            StringBuilder digits = new StringBuilder();
+            final int digitCount = 1 + random.nextInt(25);
+            final int point = random.nextInt(digitCount + 1);
+            for (int k = 0; k < digitCount; k++) {
+                if (k == point) {
+                    digits.append('.');
+                }
+                digits.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                digits.append('e').append(random.nextInt(100) - 50);
+            }
+            assertSameFloat(digits.toString());
+        }
+    }
+
+    @Test
+    public void testParseIntMatchesJdk() {
+        final String[] values = {
+                "0", "-0", "+0", "7", "-7", "+7", "007", "2147483647", "-2147483648", "2147483648", "-2147483649",
+                "99999999999", "-99999999999999999999", "", "-", "+", "1-", "1.0", "1e3", " 1", "--1",
+                // Integer.parseInt понимает и не-ASCII цифры
+                "\u0663\u0664", "-\u0661"
+        };
+        for (String value : values) {
+            assertSameInt(value);
+        }
+    }
+
+    // Каждая строка описывается как "признак|слова": B - строка из одних пробелов, W - строка начинается с пробела
+    private static List<String> readLines(String content, int bufferSize) throws IOException {
+        ObjTokenizer tokenizer = new ObjTokenizer(new StringReader(content), bufferSize);
+        List<String> lines = new ArrayList<>();
+        while (tokenizer.nextLine()) {
+            StringBuilder line = new StringBuilder();
+            line.append(tokenizer.isBlankLine() ? "B" : "").append(tokenizer.startsWithWhitespace() ? "W" : "").append('|');
+            while (tokenizer.nextWord()) {
+                for (int i = tokenizer.wordStart(); i < tokenizer.wordEnd(); i++) {
+                    line.append(tokenizer.charAt(i));
+                }
+                line.append(';');
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    @Test
+    public void testLinesAndWords() throws IOException {
+        // Неразрывный пробел не разделяет слова, как и в split("\\s+")
+        final String content = "v 1 2\r\n\r\n   \n\tf 1\rvt  0.5\t0.25 \n\u000B\f\nvn\u00A01 2\r\r\n# end";
+        final List<String> expected = List.of(
+                "|v;1;2;", "|", "BW|", "W|f;1;", "|vt;0.5;0.25;", "BW|", "|vn\u00A01;2;", "|", "|#;end;");
+        // Маленькие буферы проверяют '\r' и '\n' на границе чтения и рост буфера под длинную строку
+        for (int bufferSize = 1; bufferSize <= 16; bufferSize++) {
+            Assertions.assertEquals(expected, readLines(content, bufferSize), "buffer " + bufferSize);
+        }
+
+        Assertions.assertEquals(List.of("|a;", "|b;"), readLines("a\nb\n", 4));
+        Assertions.assertEquals(List.of("|a;", "|"), readLines("a\n\r", 4));
+        Assertions.assertEquals(List.of(), readLines("", 4));
+    }
+
+    @Test
+    public void testLineNumbersSkipOnlyWhitespaceLines() {
+        // Пустая строка учитывается, строка из пробелов - нет, строка с пробелом в начале учитывается и пропускается
+        for (String lineEnd : new String[] {"\n", "\r\n", "\r"}) {
+            final String content = String.join(lineEnd, "v 1 2 3", "", "   ", "  v 1", "\t", "v 1 2", "");
+            try {
+                ObjReader.read(content);
+                Assertions.fail();
+
+            } catch (ObjReaderException exception) {
+                String expectedError = "Error parsing OBJ file on line: 4. Too few vertex arguments.";
+                Assertions.assertEquals(expectedError, exception.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.cgvsu.objreader;
+
+import com.cgvsu.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelObjReaderTest {
+    private static final int SMALL_CHUNK_SIZE = 64;
+
+    private static Model readInSmallChunks(String content) throws IOException {
+        Path file = Files.createTempFile("model", ".obj");
+        try {
+            Files.writeString(file, content);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return ParallelObjReader.read(channel, new ForkJoinPool(4), SMALL_CHUNK_SIZE);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSameModelAsSequentialReader() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("v ").append(i).append(" ").append(i * 0.5f).append(" -").append(i).append("\r\n");
+            content.append("vt 0.").append(i).append(" 0.25\n");
+        }
+        content.append("vn 0 0 1\n");
+        for (int i = 1; i + 2 <= 200; i++) {
+            content.append("f ").append(i).append("/").append(i).append("/1 ")
+                    .append(i + 1).append("/").append(i + 1).append("/1 ")
+                    .append(i + 2).append("/").append(i + 2).append("/1\n");
+        }
+
+        Model expected = ObjReader.read(content.toString());
+        Model result = readInSmallChunks(content.toString());
+
+        Assertions.assertEquals(expected.vertices.size(), result.vertices.size());
+        for (int i = 0; i < expected.vertices.size(); i++) {
+            Assertions.assertTrue(expected.vertices.get(i).equals(result.vertices.get(i)));
+        }
+        Assertions.assertEquals(expected.textureVertices.size(), result.textureVertices.size());
+        Assertions.assertEquals(expected.polygons.size(), result.polygons.size());
+        for (int i = 0; i < expected.polygons.size(); i++) {
+            Assertions.assertEquals(expected.polygons.get(i).getVertexIndices(), result.polygons.get(i).getVertexIndices());
+            Assertions.assertEquals(expected.polygons.get(i).getTextureVertexIndices(), result.polygons.get(i).getTextureVertexIndices());
+        }
+    }
+
+    @Test
+    public void testErrorLineIsGlobal() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("v 1.0 2.0 3.0\n");
+        }
+        content.append("v 1.0 2.0\n");
+
+        try {
+            readInSmallChunks(content.toString());
+            Assertions.fail();
+
+        } catch (ObjReaderException exception) {
+            String expectedError = "Error parsing OBJ file on line: 101. Too few vertex arguments.";
+            Assertions.assertEquals(expectedError, exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testRelativeIndicesAcrossChunks() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            content.append("v ").append(i).append(" 0 0\n");
+            if (i >= 2) {
+                content.append("f -3 -2 -1\n");
+            }
+        }
+
+        Model expected = ObjReader.read(content.toString());
+        Model result = readInSmallChunks(content.toString());
+
+        Assertions.assertEquals(expected.polygons.size(), result.polygons.size());
+        for (int i = 0; i < expected.polygons.size(); i++) {
+            Assertions.assertEquals(expected.polygons.get(i).getVertexIndices(), result.polygons.get(i).getVertexIndices());
+        }
+        Assertions.assertEquals(List.of(197, 198, 199), result.polygons.get(result.polygons.size() - 1).getVertexIndices());
+    }
+
+    @Test
+    public void testInvalidFacesFromAllChunksAreReported() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append("v 1.0 2.0 3.0\n");
+        }
+        content.append("f 1 2 101\n");
+        for (int i = 0; i < 100; i++) {
+            content.append("f 1 2 3\n");
+        }
+        content.append("f -101 1 2\n");
+
+        try {
+            readInSmallChunks(content.toString());
+            Assertions.fail();
+
+        } catch (ObjIndexException exception) {
+            Assertions.assertArrayEquals(new int[] {101, 202}, exception.getFaceLineIndices());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.math.Vector2f;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
+import com.cgvsu.model.Polygon;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+class ObjWriterTest {
+    @Test
+    public void testOutputMatchesToString() throws IOException {
+        Model model = createModel();
+        ObjWriter writer = new ObjWriter();
+        StringBuilder expected = new StringBuilder();
+        model.vertices.forEach(v -> expected.append(writer.vertexToString(v)).append(System.lineSeparator()));
+        model.textureVertices.forEach(v -> expected.append(writer.textureVertexToString(v)).append(System.lineSeparator()));
+        model.normals.forEach(v -> expected.append(writer.normalToString(v)).append(System.lineSeparator()));
+        model.polygons.forEach(v -> expected.append(writer.polygonToString(v)).append(System.lineSeparator()));
+
+        ByteArrayOutputStream modelOutput = new ByteArrayOutputStream();
+        writer.write(model, modelOutput);
+        ByteArrayOutputStream packedOutput = new ByteArrayOutputStream();
+        writer.write(PackedModel.fromModel(model), packedOutput);
+
+        Assertions.assertEquals(expected.toString(), modelOutput.toString(StandardCharsets.US_ASCII));
+        Assertions.assertEquals(expected.toString(), packedOutput.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testShortestFormatMatchesFloatToString() {
+        Random random = new Random(7);
+        ObjOutputBuffer out = new ObjOutputBuffer(16);
+        for (int i = 0; i < 1_000_000; i++) {
+            float value = Float.intBitsToFloat(random.nextInt());
+            out.clear();
+            FloatFormat.SHORTEST.append(out, value);
+            Assertions.assertEquals(Float.toString(value), toString(out));
+        }
+    }
+
+    @Test
+    public void testFixedFormat() {
+        ObjOutputBuffer out = new ObjOutputBuffer(16);
+        float[] values = {0, -0.0f, 1.5f, -2.25f, 0.0004f, 123.456f, 1e20f};
+        String[] expected = {"0.000", "-0.000", "1.500", "-2.250", "0.000", "123.456", "100000002004087734272.000"};
+        for (int i = 0; i < values.length; i++) {
+            out.clear();
+            FloatFormat.fixed(3).append(out, values[i]);
+            Assertions.assertEquals(expected[i], toString(out));
+        }
+    }
+
+    private static String toString(ObjOutputBuffer buffer) {
+        return new String(buffer.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    static Model createModel() {
+        Random random = new Random(42);
+        Model model = new Model();
+        float[] special = {0, -0.0f, 1, -1, 0.001f, 1e7f, 1e-10f, 3.4e38f, Float.MIN_VALUE, 0.1f, 0.3f, 123456.79f};
+        for (float value : special) {
+            model.vertices.add(new Vector3f(value, -value, value * 3));
+        }
+        for (int i = 0; i < 1000; i++) {
+            float scale = (float) Math.pow(10, random.nextInt(12) - 6);
+            model.vertices.add(new Vector3f(
+                    (random.nextFloat() - 0.5f) * scale, random.nextFloat() * scale, -random.nextFloat() * scale));
+            model.textureVertices.add(new Vector2f(random.nextFloat(), random.nextFloat()));
+            model.normals.add(new Vector3f(random.nextFloat(), -random.nextFloat(), random.nextFloat()));
+        }
+        for (int i = 0; i < 300; i++) {
+            Polygon polygon = new Polygon();
+            ArrayList<Integer> indices = new ArrayList<>(Arrays.asList(i, i + 1, i + 2, i + 3));
+            polygon.setVertexIndices(indices);
+            if (i % 3 != 0) {
+                polygon.setTextureVertexIndices(indices);
+            }
+            if (i % 3 != 1) {
+                polygon.setNormalIndices(indices);
+            }
+            model.polygons.add(polygon);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,51 @@
+package com.cgvsu.objwriter;
+
+import com.cgvsu.model.Model;
+import com.cgvsu.model.PackedModel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelObjWriterTest {
+    @Test
+    public void testOutputMatchesSequentialWriter() throws IOException {
+        Model model = ObjWriterTest.createModel();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new ObjWriter().write(model, expected);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelObjWriter writer = new ParallelObjWriter(FloatFormat.SHORTEST, pool, 37);
+            ByteArrayOutputStream modelOutput = new ByteArrayOutputStream();
+            writer.write(model, Channels.newChannel(modelOutput));
+            ByteArrayOutputStream packedOutput = new ByteArrayOutputStream();
+            writer.write(PackedModel.fromModel(model), Channels.newChannel(packedOutput));
+
+            Assertions.assertArrayEquals(expected.toByteArray(), modelOutput.toByteArray());
+            Assertions.assertArrayEquals(expected.toByteArray(), packedOutput.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFixedFormat() throws IOException {
+        Model model = ObjWriterTest.createModel();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new ObjWriter(FloatFormat.fixed(4)).write(model, expected);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            new ParallelObjWriter(FloatFormat.fixed(4), pool, 100).write(model, Channels.newChannel(result));
+
+            Assertions.assertArrayEquals(expected.toByteArray(), result.toByteArray());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.cgvsu.spatial;
+
+import com.cgvsu.math.AffineTransformations;
+import com.cgvsu.math.Vector3f;
+import com.cgvsu.model.Model;
+import com.cgvsu.model.Polygon;
+import com.cgvsu.model.VertexWelder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+class BvhTest {
+    @Test
+    public void testRayMatchesBruteForce() {
+        Model model = createRandomModel(2000);
+        Bvh bvh = Bvh.build(model);
+        List<Bvh> polygons = buildPerPolygon(model);
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            Vector3f origin = randomPoint(random, 15);
+            Vector3f direction = randomPoint(random, 1);
+            Bvh.RayHit hit = bvh.intersectRay(origin, direction);
+            float expected = bruteForceRay(polygons, origin, direction);
+            if (hit == null) {
+                Assertions.assertEquals(Float.POSITIVE_INFINITY, expected);
+            } else {
+                Assertions.assertEquals(expected, hit.getDistance(), 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void testRayHitsQuadPolygon() {
+        Model model = new Model();
+        model.vertices.add(new Vector3f(0, 0, 0));
+        model.vertices.add(new Vector3f(2, 0, 0));
+        model.vertices.add(new Vector3f(2, 2, 0));
+        model.vertices.add(new Vector3f(0, 2, 0));
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(List.of(0, 1, 2, 3)));
+        model.polygons.add(polygon);
+
+        Bvh bvh = Bvh.build(model);
+        Bvh.RayHit hit = bvh.intersectRay(new Vector3f(0.5f, 1.5f, 5), new Vector3f(0, 0, -2));
+        Assertions.assertEquals(0, hit.getPolygonIndex());
+        Assertions.assertEquals(2.5f, hit.getDistance(), 1e-6f);
+        Assertions.assertNull(bvh.intersectRay(new Vector3f(3, 1, 5), new Vector3f(0, 0, -1)));
+    }
+
+    @Test
+    public void testClosestPointMatchesBruteForce() {
+        Model model = createRandomModel(2000);
+        Bvh bvh = Bvh.build(model);
+        List<Bvh> polygons = buildPerPolygon(model);
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            Vector3f point = randomPoint(random, 15);
+            Bvh.ClosestPoint closest = bvh.closestPoint(point);
+            Assertions.assertEquals(bruteForceDistance(polygons, point), closest.getDistance(), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testClosestPointOnTriangle() {
+        Model model = new Model();
+        model.vertices.add(new Vector3f(0, 0, 0));
+        model.vertices.add(new Vector3f(4, 0, 0));
+        model.vertices.add(new Vector3f(0, 4, 0));
+        Polygon polygon = new Polygon();
+        polygon.setVertexIndices(new ArrayList<>(List.of(0, 1, 2)));
+        model.polygons.add(polygon);
+        Bvh bvh = Bvh.build(model);
+
+        // Над гранью, у вершины, у ребра и у гипотенузы
+        assertClosest(bvh, new Vector3f(1, 1, 3), 1, 1, 0);
+        assertClosest(bvh, new Vector3f(-2, -1, 0), 0, 0, 0);
+        assertClosest(bvh, new Vector3f(2, -3, 1), 2, 0, 0);
+        assertClosest(bvh, new Vector3f(3, 3, 0), 2, 2, 0);
+        assertClosest(bvh, new Vector3f(6, -1, 0), 4, 0, 0);
+    }
+
+    @Test
+    public void testQueryBox() {
+        Model model = createRandomModel(500);
+        Bvh bvh = Bvh.build(model);
+        Vector3f min = new Vector3f(-3, -2, -4);
+        Vector3f max = new Vector3f(2, 3, 1);
+
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < model.polygons.size(); i++) {
+            boolean overlaps = true;
+            for (int axis = 0; axis < 3; axis++) {
+                float low = Float.POSITIVE_INFINITY;
+                float high = Float.NEGATIVE_INFINITY;
+                for (int index : model.polygons.get(i).getVertexIndices()) {
+                    low = Math.min(low, coordinate(model.vertices.get(index), axis));
+                    high = Math.max(high, coordinate(model.vertices.get(index), axis));
+                }
+                overlaps &= low <= coordinate(max, axis) && high >= coordinate(min, axis);
+            }
+            if (overlaps) {
+                expected.add(i);
+            }
+        }
+        Assertions.assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), bvh.queryBox(min, max));
+    }
+
+    @Test
+    public void testParallelBuildMatchesSequential() {
+        Model model = createRandomModel(5000);
+        Bvh sequential = Bvh.build(model);
+        Bvh parallel = Bvh.build(model, new ForkJoinPool(4), 64);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            Vector3f point = randomPoint(random, 15);
+            Assertions.assertEquals(sequential.closestPoint(point).getDistance(), parallel.closestPoint(point).getDistance());
+        }
+    }
+
+    @Test
+    public void testRefitAfterTransformation() {
+        Model model = createRandomModel(1000);
+        Bvh bvh = Bvh.build(model);
+        new AffineTransformations().rotationY(40).scaleByRatio(2).translation(5, -3, 1).applyToModel(model);
+        bvh.refit();
+        List<Bvh> polygons = buildPerPolygon(model);
+
+        Random random = new Random(4);
+        for (int i = 0; i < 100; i++) {
+            Vector3f point = randomPoint(random, 30);
+            Assertions.assertEquals(bruteForceDistance(polygons, point), bvh.closestPoint(point).getDistance(), 1e-3f);
+        }
+    }
+
+    @Test
+    public void testRebuildAfterWelding() {
+        Model model = createRandomModel(200);
+        // Копии вершин с теми же координатами, после склейки индексов вершин станет меньше
+        for (int i = 0; i < 30; i++) {
+            model.vertices.add(model.vertices.get(i));
+            model.polygons.get(i / 3 + 100).getVertexIndices().set(i % 3, model.vertices.size() - 1);
+        }
+        Bvh.build(model);
+        VertexWelder.weld(model);
+        Bvh bvh = Bvh.build(model);
+        List<Bvh> polygons = buildPerPolygon(model);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            Vector3f point = randomPoint(random, 15);
+            Assertions.assertEquals(bruteForceDistance(polygons, point), bvh.closestPoint(point).getDistance(), 1e-4f);
+        }
+    }
+
+    @Test
+    public void testEmptyModel() {
+        Bvh bvh = Bvh.build(new Model());
+        Assertions.assertNull(bvh.intersectRay(new Vector3f(0, 0, 0), new Vector3f(1, 0, 0)));
+        Assertions.assertNull(bvh.closestPoint(new Vector3f(0, 0, 0)));
+        Assertions.assertEquals(0, bvh.queryBox(new Vector3f(-1, -1, -1), new Vector3f(1, 1, 1)).length);
+    }
+
+    private static Model createRandomModel(int triangleCount) {
+        Random random = new Random(42);
+        Model model = new Model();
+        for (int i = 0; i < triangleCount; i++) {
+            Vector3f center = randomPoint(random, 10);
+            for (int k = 0; k < 3; k++) {
+                Vector3f offset = randomPoint(random, 1);
+                model.vertices.add(new Vector3f(center.getX() + offset.getX(), center.getY() + offset.getY(),
+                        center.getZ() + offset.getZ()));
+            }
+            Polygon polygon = new Polygon();
+            polygon.setVertexIndices(new ArrayList<>(List.of(i * 3, i * 3 + 1, i * 3 + 2)));
+            model.polygons.add(polygon);
+        }
+        return model;
+    }
+
+    private static Vector3f randomPoint(Random random, float range) {
+        return new Vector3f((random.nextFloat() * 2 - 1) * range, (random.nextFloat() * 2 - 1) * range,
+                (random.nextFloat() * 2 - 1) * range);
+    }
+
+    private static float coordinate(Vector3f vector, int axis) {
+        return axis == 0 ? vector.getX() : axis == 1 ? vector.getY() : vector.getZ();
+    }
+
+    private static void assertClosest(Bvh bvh, Vector3f point, float x, float y, float z) {
+        Vector3f closest = bvh.closestPoint(point).getPoint();
+        Assertions.assertEquals(x, closest.getX(), 1e-6f);
+        Assertions.assertEquals(y, closest.getY(), 1e-6f);
+        Assertions.assertEquals(z, closest.getZ(), 1e-6f);
+    }
+
+    // Отдельная иерархия на каждый полигон: перебор всех полигонов без общего дерева
+    private static List<Bvh> buildPerPolygon(Model model) {
+        List<Bvh> result = new ArrayList<>();
+        for (Polygon polygon : model.polygons) {
+            Model single = new Model();
+            Polygon copy = new Polygon();
+            ArrayList<Integer> indices = new ArrayList<>();
+            for (int index : polygon.getVertexIndices()) {
+                indices.add(single.vertices.size());
+                single.vertices.add(model.vertices.get(index));
+            }
+            copy.setVertexIndices(indices);
+            single.polygons.add(copy);
+            result.add(Bvh.build(single));
+        }
+        return result;
+    }
+
+    private static float bruteForceRay(List<Bvh> polygons, Vector3f origin, Vector3f direction) {
+        float closest = Float.POSITIVE_INFINITY;
+        for (Bvh polygon : polygons) {
+            Bvh.RayHit hit = polygon.intersectRay(origin, direction);
+            if (hit != null) {
+                closest = Math.min(closest, hit.getDistance());
+            }
+        }
+        return closest;
+    }
+
+    private static float bruteForceDistance(List<Bvh> polygons, Vector3f point) {
+        float closest = Float.POSITIVE_INFINITY;
+        for (Bvh polygon : polygons) {
+            closest = Math.min(closest, polygon.closestPoint(point).getDistance());
+        }
+        return closest;
+    }
+}